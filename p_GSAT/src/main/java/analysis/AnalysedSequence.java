@@ -1,5 +1,6 @@
 package analysis;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
 
@@ -31,30 +32,10 @@ public class AnalysedSequence extends Sequence {
   private LinkedList<ProblematicComment> problems = new LinkedList<ProblematicComment>();
 
   /**
-   * Channel A information (retrieved from AB1 files), as an array.
+   * Channel information and basecalls (retrieved from AB1 files). They are loaded lazily and may be
+   * discarded while they are not used.
    */
-  private int[] channelA;
-
-  /**
-   * Channel C information (retrieved from AB1 files), as an array.
-   */
-  private int[] channelC;
-
-  /**
-   * Channel G information (retrieved from AB1 files), as an array.
-   */
-  private int[] channelG;
-
-  /**
-   * Channel T information (retrieved from AB1 files), as an array.
-   */
-  private int[] channelT;
-
-
-  /**
-   * Basecalls information (retrieved from AB1 files), as an array.
-   */
-  private int[] baseCalls;
+  private TraceData traces = TraceData.NONE;
 
   /**
    * The name of the file this sequence was obtained from. This is used to create the name of the
@@ -85,8 +66,14 @@ public class AnalysedSequence extends Sequence {
 
   /**
    * Array containing the quality information for the sequence (i.e. for each nucleotide position).
+   * Phred qualities fit into a byte, so they are stored as unsigned bytes.
    */
-  private int[] qualities;
+  private byte[] qualities;
+
+  /**
+   * The quality information if a value doesn't fit into a byte, otherwise null.
+   */
+  private int[] wideQualities;
 
   /**
    * The gene this sequence was formed from.
@@ -110,6 +97,11 @@ public class AnalysedSequence extends Sequence {
    */
   private int hisTagPosition = -1;
 
+  /**
+   * Indicates whether a reading frame error was detected while searching for mutations.
+   */
+  private boolean readingFrameError = false;
+
   /**
    * Constructor calling the super constructor (which sets all given attributes).
    * 
@@ -123,7 +115,7 @@ public class AnalysedSequence extends Sequence {
   public AnalysedSequence(String sequence, String researcher, String fileName, int[] qualities) {
     super(sequence, researcher);
     this.fileName = fileName;
-    this.qualities = qualities;
+    setQuality(qualities);
   }
 
   /**
@@ -199,7 +191,7 @@ public class AnalysedSequence extends Sequence {
    * @author Jannis Blueml
    */
   public int length() {
-    return sequence.length();
+    return nucleotides.length();
   }
 
 
@@ -209,14 +201,20 @@ public class AnalysedSequence extends Sequence {
    * @author jannis blueml
    */
   public void reverseQuality() {
-    if (qualities == null) {
-      qualities = new int[0];
+    if (wideQualities != null) {
+      int[] reversed = new int[wideQualities.length];
+      for (int i = 0; i < reversed.length; i++) {
+        reversed[i] = wideQualities[wideQualities.length - 1 - i];
+      }
+      wideQualities = reversed;
+      return;
     }
-    int[] qualities2 = new int[qualities.length];
-    for (int i = qualities.length - 1; i >= 0; i--) {
-      qualities2[qualities.length - 1 - i] = qualities[i];
+    // the compact qualities are reversed without converting them
+    byte[] reversed = new byte[qualities == null ? 0 : qualities.length];
+    for (int i = 0; i < reversed.length; i++) {
+      reversed[i] = qualities[qualities.length - 1 - i];
     }
-    this.qualities = qualities2;
+    qualities = reversed;
   }
 
   /**
@@ -231,12 +229,43 @@ public class AnalysedSequence extends Sequence {
    * @author Jannis Blueml
    */
   public void trimQualityArray(int startIndex, int endIndex) {
-    int[] trimmed = new int[endIndex - startIndex];
-    for (int i = startIndex; i < Math.min(endIndex, this.getQuality().length); i++) {
-      trimmed[i - startIndex] = qualities[i];
+    // missing qualities at the end are 0
+    int from = Math.min(startIndex, getQualityLength());
+    int to = from + endIndex - startIndex;
+    if (wideQualities != null) {
+      wideQualities = Arrays.copyOfRange(wideQualities, from, to);
+    } else {
+      qualities = Arrays.copyOfRange(qualities, from, to);
     }
+  }
 
-    this.qualities = trimmed;
+  /**
+   * Returns the quality of a single nucleotide without converting the whole quality array.
+   * 
+   * @param index the position of the nucleotide
+   * @return the phred quality of the nucleotide
+   * 
+   * @author Kevin Otto
+   */
+  public int getQuality(int index) {
+    if (wideQualities != null) {
+      return wideQualities[index];
+    }
+    return qualities[index] & 0xFF;
+  }
+
+  /**
+   * Returns the number of quality values.
+   * 
+   * @return the length of the quality array, 0 if there are no qualities
+   * 
+   * @author Kevin Otto
+   */
+  public int getQualityLength() {
+    if (wideQualities != null) {
+      return wideQualities.length;
+    }
+    return qualities == null ? 0 : qualities.length;
   }
 
   /**
@@ -250,8 +279,7 @@ public class AnalysedSequence extends Sequence {
    * @author Ben Kohr
    */
   public void trimSequence(int startIndex, int endIndex) {
-    String trimmed = sequence.substring(startIndex, endIndex + 1);
-    this.sequence = trimmed;
+    setNucleotides(nucleotides.substring(startIndex, endIndex + 1));
   }
 
   /**
@@ -312,12 +340,63 @@ public class AnalysedSequence extends Sequence {
     this.offset = offset;
   }
 
+  /**
+   * Returns the qualities as int array. The array is a copy of the stored qualities, so every call
+   * allocates and fills a new array and changes to it don't change the sequence. Methods which
+   * read single values should use {@link #getQuality(int)} and {@link #getQualityLength()}.
+   * 
+   * @return the qualities, or null if there are none
+   */
   public int[] getQuality() {
-    return qualities;
+    if (wideQualities != null) {
+      return wideQualities.clone();
+    }
+    return qualities == null ? null : CompactArrays.fromUnsignedBytes(qualities);
   }
 
+  /**
+   * Sets the qualities. They are stored as unsigned bytes if all values fit into a byte, otherwise
+   * a copy of the array is stored. Later changes to the array don't change the sequence.
+   * 
+   * @param qualities the quality of each nucleotide
+   */
   public void setQuality(int[] qualities) {
+    this.qualities = CompactArrays.toUnsignedBytes(qualities);
+    if (this.qualities == null && qualities != null) {
+      this.wideQualities = qualities.clone();
+    } else {
+      this.wideQualities = null;
+    }
+  }
+
+  /**
+   * Returns the compact qualities without copying them, or null if they are stored as ints.
+   * 
+   * @return the qualities as unsigned bytes
+   */
+  byte[] getCompactQuality() {
+    return qualities;
+  }
+
+  /**
+   * Returns the qualities which don't fit into bytes without copying them, or null.
+   * 
+   * @return the qualities as ints
+   */
+  int[] getWideQuality() {
+    return wideQualities;
+  }
+
+  /**
+   * Sets the qualities as they were returned by {@link #getCompactQuality()} and
+   * {@link #getWideQuality()}. The arrays are not changed by this class, so they can be shared.
+   * 
+   * @param qualities the compact qualities, or null
+   * @param wideQualities the qualities as ints, or null
+   */
+  void setQuality(byte[] qualities, int[] wideQualities) {
     this.qualities = qualities;
+    this.wideQualities = wideQualities;
   }
 
   public int getAvgQuality() {
@@ -352,37 +431,45 @@ public class AnalysedSequence extends Sequence {
     this.hisTagPosition = hisTagPosition;
   }
 
+  public boolean isReadingFrameError() {
+    return readingFrameError;
+  }
+
+  public void setReadingFrameError(boolean readingFrameError) {
+    this.readingFrameError = readingFrameError;
+  }
+
 
   public int[] getChannelA() {
-    return channelA;
+    return traces.get(TraceData.CHANNEL_A);
   }
 
   public void setChannelA(int[] channelA) {
-    this.channelA = channelA;
+    traces = traces.with(TraceData.CHANNEL_A, channelA);
   }
 
   public int[] getChannelC() {
-    return channelC;
+    return traces.get(TraceData.CHANNEL_C);
   }
 
   public void setChannelC(int[] channelC) {
-    this.channelC = channelC;
+    traces = traces.with(TraceData.CHANNEL_C, channelC);
   }
 
   public int[] getChannelG() {
-    return channelG;
+    return traces.get(TraceData.CHANNEL_G);
   }
 
   public void setChannelG(int[] channelG) {
-    this.channelG = channelG;
+    traces = traces.with(TraceData.CHANNEL_G, channelG);
   }
 
   public int[] getChannelT() {
-    return channelT;
+    return traces.get(TraceData.CHANNEL_T);
   }
 
   public void setChannelT(int[] channelT) {
-    this.channelT = channelT;
+    traces = traces.with(TraceData.CHANNEL_T, channelT);
   }
 
   public LinkedList<ProblematicComment> getProblematicComments() {
@@ -390,11 +477,19 @@ public class AnalysedSequence extends Sequence {
   }
 
   public void setBaseCalls(int[] basecalls) {
-    this.baseCalls = basecalls;
+    traces = traces.with(TraceData.BASE_CALLS, basecalls);
   }
 
   public int[] getBaseCalls() {
-    return baseCalls;
+    return traces.get(TraceData.BASE_CALLS);
+  }
+
+  public TraceData getTraces() {
+    return traces;
+  }
+
+  public void setTraces(TraceData traces) {
+    this.traces = traces;
   }
 
   public String getPrimer() {
@@ -0,0 +1,345 @@
+package analysis;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.ConfigHandler;
+import io.FileSaver;
+import io.GeneHandler;
+import io.ResultCache;
+import io.ResultFileWriter;
+
+/**
+ * This class holds everything a single analysis run needs: the quality parameters, the alignment
+ * settings, the known genes and the state of the result files. Every run works with its own
+ * context, so several runs (or several sequences of one run) can be analysed at the same time
+ * without changing each other's parameters. Results of single sequences are stored in the
+ * {@link AnalysedSequence} objects.
+ *
+ * @category object
+ * @author jannis blueml
+ */
+public class AnalysisContext {
+
+  /**
+   * The minimal quality to start a sequence.
+   *
+   * @see QualityAnalysis#findLowQuality(AnalysedSequence, AnalysisContext)
+   */
+  private int avgApproximationStart;
+
+  /**
+   * The minimal quality to end a sequence.
+   */
+  private int avgApproximationEnd;
+
+  /**
+   * Number of bad quality nucleotides which are allowed before the sequence gets cut off.
+   */
+  private int breakcounter;
+
+  /**
+   * Number of nucleotides which are used for the average quality calculations.
+   */
+  private int numAverageNucleotides;
+
+  /**
+   * Number of good quality nucleotides which are needed before the sequence start gets detected.
+   */
+  private int startcounter;
+
+  /**
+   * Indicates whether differences are searched with the linear space alignment.
+   *
+   * @see MutationAnalysis#reportDifferencesLinearSpace(String, String)
+   * @see ConfigHandler#isLinearSpaceAlignment()
+   */
+  private boolean linearSpaceAlignment;
+
+  /**
+   * The index of all genes which is used to find the gene of a sequence automatically.
+   */
+  private GeneIndex geneIndex;
+
+  /**
+   * Placeholder gene for sequences which can't be analysed. It is created once per run, when it is
+   * needed the first time.
+   */
+  private Gene noGene;
+
+  /**
+   * The folder where the result files are created.
+   */
+  private File localPath;
+
+  /**
+   * The name of the result file (or the prefix of the result files, if separate files are used).
+   */
+  private String destinationFileName = "gsat_results";
+
+  /**
+   * Indicates whether one file per sequence shall be created.
+   */
+  private boolean separateFiles;
+
+  /**
+   * Indicates whether the header of the single result file still has to be written in this run.
+   */
+  private boolean firstCall = true;
+
+  /**
+   * The open single result file of this run, or null if it isn't open.
+   *
+   * @see FileSaver#closeResults(AnalysisContext)
+   */
+  private ResultFileWriter resultWriter;
+
+  /**
+   * Indicates whether the single result file is written by a dedicated writer thread.
+   */
+  private boolean writerThread;
+
+  /**
+   * The cache of analysis results, or null if results are not cached.
+   */
+  private ResultCache resultCache;
+
+  /**
+   * The digest of the genes of the index, it is computed once per run.
+   *
+   * @see CachedAnalysis#getKey(AnalysedSequence, Gene, AnalysisContext)
+   */
+  byte[] genesDigest;
+
+  /**
+   * Number of sequences of this run whose results were taken from the cache.
+   */
+  private final AtomicInteger cacheHits = new AtomicInteger();
+
+  /**
+   * Number of sequences of this run which were analysed and stored in the cache.
+   */
+  private final AtomicInteger cacheMisses = new AtomicInteger();
+
+  /**
+   * Creates a context with the current default settings, i.e. the parameters of
+   * {@link QualityAnalysis} and {@link MutationAnalysis}, the genes of {@link GeneHandler} and the
+   * output settings of {@link FileSaver}. Results are not cached unless a cache is set, e.g. by
+   * {@link #useConfiguredCache()}.
+   *
+   * @author jannis blueml
+   */
+  public AnalysisContext() {
+    this(true);
+  }
+
+  /**
+   * Creates a context with the current default parameters of {@link QualityAnalysis} and
+   * {@link MutationAnalysis}.
+   *
+   * @param outputSettings true if the genes and the output settings shall be taken as well
+   *
+   * @author jannis blueml
+   */
+  private AnalysisContext(boolean outputSettings) {
+    avgApproximationStart = QualityAnalysis.getAvgApproximationStart();
+    avgApproximationEnd = QualityAnalysis.getAvgApproximationEnd();
+    breakcounter = QualityAnalysis.getBreakcounter();
+    numAverageNucleotides = QualityAnalysis.getNumAverageNucleotides();
+    startcounter = QualityAnalysis.getStartcounter();
+    linearSpaceAlignment = ConfigHandler.isLinearSpaceAlignment();
+    if (!outputSettings) {
+      return;
+    }
+    geneIndex = GeneHandler.getGeneIndex();
+    localPath = FileSaver.getLocalPath();
+    setDestinationFileName(FileSaver.getDestFileName());
+    separateFiles = FileSaver.isSeparateFiles();
+  }
+
+  /**
+   * Creates a context which only holds the current default parameters of {@link QualityAnalysis}
+   * and {@link MutationAnalysis}. It is used by the static methods without a context, which are
+   * called once per sequence, so the genes and the output settings are not copied.
+   *
+   * @return a context without genes, output settings and cache
+   *
+   * @author jannis blueml
+   */
+  static AnalysisContext parameters() {
+    return new AnalysisContext(false);
+  }
+
+  /**
+   * Caches the results in {@link ResultCache#DEFAULT_FOLDER}, if it is enabled in the
+   * {@link ConfigHandler}. Only the entry points of analysis runs call this method, so other
+   * contexts (e.g. the ones of the tests) don't use the cache of the user.
+   *
+   * @author Kevin Otto
+   */
+  public void useConfiguredCache() {
+    if (ConfigHandler.isResultCache()) {
+      resultCache = ResultCache.open(ResultCache.DEFAULT_FOLDER,
+          ConfigHandler.getResultCacheSize() * 1024L * 1024L);
+    } else {
+      resultCache = null;
+    }
+  }
+
+  /**
+   * Marks the header of the single result file as written.
+   *
+   * @return true if this was the first call in this run, i.e. the header still has to be written
+   *
+   * @author jannis blueml
+   */
+  public synchronized boolean startWriting() {
+    boolean result = firstCall;
+    firstCall = false;
+    return result;
+  }
+
+  /**
+   * Counts a sequence whose result was taken from the cache (true) or which had to be analysed
+   * (false).
+   *
+   * @param hit true if the result was found in the cache
+   *
+   * @author Kevin Otto
+   */
+  void countCacheAccess(boolean hit) {
+    (hit ? cacheHits : cacheMisses).incrementAndGet();
+  }
+
+  // GETTERs and SETTERs:
+
+  public int getAvgApproximationStart() {
+    return avgApproximationStart;
+  }
+
+  public void setAvgApproximationStart(int avgApproximationStart) {
+    this.avgApproximationStart = avgApproximationStart;
+  }
+
+  public int getAvgApproximationEnd() {
+    return avgApproximationEnd;
+  }
+
+  public void setAvgApproximationEnd(int avgApproximationEnd) {
+    this.avgApproximationEnd = avgApproximationEnd;
+  }
+
+  public int getBreakcounter() {
+    return breakcounter;
+  }
+
+  public void setBreakcounter(int breakcounter) {
+    this.breakcounter = breakcounter;
+  }
+
+  public int getNumAverageNucleotides() {
+    return numAverageNucleotides;
+  }
+
+  public void setNumAverageNucleotides(int numAverageNucleotides) {
+    this.numAverageNucleotides = numAverageNucleotides;
+  }
+
+  public int getStartcounter() {
+    return startcounter;
+  }
+
+  public void setStartcounter(int startcounter) {
+    this.startcounter = startcounter;
+  }
+
+  public boolean isLinearSpaceAlignment() {
+    return linearSpaceAlignment;
+  }
+
+  public void setLinearSpaceAlignment(boolean linearSpaceAlignment) {
+    this.linearSpaceAlignment = linearSpaceAlignment;
+  }
+
+  public GeneIndex getGeneIndex() {
+    return geneIndex;
+  }
+
+  public void setGeneIndex(GeneIndex geneIndex) {
+    this.geneIndex = geneIndex;
+    genesDigest = null;
+  }
+
+  public synchronized Gene getNoGene() {
+    if (noGene == null) {
+      noGene = new Gene("", 0, "-", "", "-", "");
+    }
+    return noGene;
+  }
+
+  public File getLocalPath() {
+    return localPath;
+  }
+
+  public void setLocalPath(File localPath) {
+    this.localPath = localPath;
+  }
+
+  public String getDestinationFileName() {
+    return destinationFileName;
+  }
+
+  /**
+   * Sets the name of the result file. If the name is empty, the default name "gsat_results" is
+   * used.
+   *
+   * @param destinationFileName the name of the result file
+   */
+  public void setDestinationFileName(String destinationFileName) {
+    if (destinationFileName.isEmpty()) {
+      this.destinationFileName = "gsat_results";
+    } else {
+      this.destinationFileName = destinationFileName;
+    }
+  }
+
+  public boolean isSeparateFiles() {
+    return separateFiles;
+  }
+
+  public void setSeparateFiles(boolean separateFiles) {
+    this.separateFiles = separateFiles;
+  }
+
+  public ResultFileWriter getResultWriter() {
+    return resultWriter;
+  }
+
+  public void setResultWriter(ResultFileWriter resultWriter) {
+    this.resultWriter = resultWriter;
+  }
+
+  public boolean isWriterThread() {
+    return writerThread;
+  }
+
+  public void setWriterThread(boolean writerThread) {
+    this.writerThread = writerThread;
+  }
+
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
+
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  public int getCacheHits() {
+    return cacheHits.get();
+  }
+
+  public int getCacheMisses() {
+    return cacheMisses.get();
+  }
+}
@@ -0,0 +1,130 @@
+package analysis;
+
+import exceptions.CorruptedSequenceException;
+import exceptions.UndefinedTypeOfMutationException;
+import io.ProblematicComment;
+import io.ResultCache;
+
+/**
+ * This class runs the complete analysis of a single sequence: gene recognition, orientation,
+ * trimming, mutation search and quality statistics. It doesn't depend on the GUI, so it is used by
+ * the main window as well as by the console version.
+ *
+ * @see gui.GUIUtils#runAnalysis(java.util.LinkedList, String, String,
+ *      java.util.function.DoubleConsumer)
+ * @see core.ConsoleVersion
+ *
+ * @category DNA.Utils
+ * @author jannis blueml
+ */
+public final class AnalysisPipeline {
+
+  private AnalysisPipeline() {}
+
+  /**
+   * Runs the analysis pipeline for a single sequence. Sequences with problematic comments are not
+   * analysed, they only get the placeholder gene of the context. This method only changes the given
+   * sequence and takes all parameters from the given context, so it can be called for different
+   * sequences (and different runs) at the same time. Storing the results is left to the caller.
+   * 
+   * <p>
+   * If the context has a {@link ResultCache}, the result is taken from the cache if the same AB1
+   * file was already analysed with the same gene(s) and parameters. Otherwise, the result is stored
+   * in the cache after the analysis, unless an error occurred.
+   * </p>
+   * 
+   * @param analysedSequence the sequence to analyse
+   * @param gene the reference gene, or null if the gene is to be found automatically
+   * @param context the analysis run which provides the parameters and the gene index
+   * @return an error message if the whole analysis has to be stopped, otherwise null
+   * @author jannis blueml
+   */
+  public static String analyseSequence(AnalysedSequence analysedSequence, Gene gene,
+      AnalysisContext context) {
+
+    if (analysedSequence.getProblematicComments().size() > 0) {
+      analysedSequence.setReferencedGene(context.getNoGene());
+      return null;
+    }
+
+    ResultCache cache = context.getResultCache();
+    String key = cache == null ? null : CachedAnalysis.getKey(analysedSequence, gene, context);
+    if (key != null) {
+      byte[] entry = cache.get(key);
+      if (entry != null && CachedAnalysis.applyEntry(entry, analysedSequence, gene, context)) {
+        context.countCacheAccess(true);
+        return null;
+      }
+    }
+
+    String error = analyseUncached(analysedSequence, gene, context);
+    if (key != null) {
+      context.countCacheAccess(false);
+      if (error == null && !analysedSequence.getProblematicComments()
+          .contains(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED)) {
+        byte[] entry = CachedAnalysis.toEntry(analysedSequence, gene, context);
+        if (entry != null) {
+          cache.put(key, entry);
+        }
+      }
+    }
+    return error;
+  }
+
+  /**
+   * Runs the analysis pipeline for a single sequence without using the cache.
+   * 
+   * @author jannis blueml
+   */
+  private static String analyseUncached(AnalysedSequence analysedSequence, Gene gene,
+      AnalysisContext context) {
+    try {
+
+      // get Sequence
+      if (gene == null) {
+        gene = StringAnalysis.findRightGene(analysedSequence, context.getGeneIndex());
+      }
+      analysedSequence.setReferencedGene(gene);
+
+      // checks if complementary and reversed Sequence is better, then
+      // standard
+      try {
+        StringAnalysis.checkComplementAndReverse(analysedSequence);
+      } catch (CorruptedSequenceException e) {
+        return "Calculation of complementary sequence unsuccessful, analysing stops\n";
+      }
+
+      // cut out vector
+      StringAnalysis.trimVector(analysedSequence);
+
+      int lengthBeforeTrimmingQuality = analysedSequence.getSequence().length();
+      // cut out low Quality parts of sequence
+      QualityAnalysis.trimLowQuality(analysedSequence, context);
+
+      int stopcodonPosition = StringAnalysis.findStopcodonPosition(analysedSequence);
+      if (stopcodonPosition != -1) {
+        analysedSequence.trimSequence(0, stopcodonPosition * 3 + 2);
+      }
+
+      analysedSequence.setTrimPercentage(QualityAnalysis
+          .percentageOfTrimQuality(lengthBeforeTrimmingQuality, analysedSequence));
+
+      analysedSequence.setHisTagPosition(StringAnalysis.findHisTag(analysedSequence));
+      // find all Mutations
+      try {
+        MutationAnalysis.findMutations(analysedSequence, context);
+        MutationAnalysis.findPlasmidMix(analysedSequence);
+      } catch (UndefinedTypeOfMutationException | CorruptedSequenceException e) {
+        return "Mutation analysis was unsuccessful because of error in "
+            + analysedSequence.getFileName() + "\n";
+      }
+
+      // add average quality
+      analysedSequence.setAvgQuality(QualityAnalysis.getAvgQuality(analysedSequence));
+
+    } catch (Throwable e) {
+      analysedSequence.addProblematicComment(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,318 @@
+package analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import io.ProblematicComment;
+import io.ResultCache;
+
+/**
+ * This class converts analysis results to entries of the {@link ResultCache} and back. The key of
+ * an entry is a SHA-256 digest of everything the result depends on: the AB1 file, the read before
+ * the analysis, the reference gene (or all genes of the index if the gene is found automatically)
+ * and the analysis parameters of the context.
+ *
+ * @see AnalysisPipeline#analyseSequence(AnalysedSequence, Gene, AnalysisContext)
+ *
+ * @category DNA.Utils
+ * @author Kevin Otto
+ */
+final class CachedAnalysis {
+
+  /**
+   * The version of the analysis and of the entry format. It has to be increased whenever the
+   * analysis produces different results, so old entries are not used anymore.
+   */
+  static final int VERSION = 1;
+
+  private CachedAnalysis() {}
+
+  /**
+   * Computes the cache key of the analysis of the given read.
+   *
+   * @param sequence the read before the analysis
+   * @param gene the reference gene, or null if the gene is to be found automatically
+   * @param context the analysis run which provides the parameters and the gene index
+   * @return the hex encoded key, or null if the result can't be cached because the read has no AB1
+   *         file (anymore)
+   *
+   * @author Kevin Otto
+   */
+  static String getKey(AnalysedSequence sequence, Gene gene, AnalysisContext context) {
+    File source = sequence.getTraces().getSource();
+    if (source == null) {
+      return null;
+    }
+    MessageDigest digest = newDigest();
+    try (InputStream input = new DigestInputStream(Files.newInputStream(source.toPath()), digest)) {
+      byte[] buffer = new byte[8192];
+      while (input.read(buffer) != -1) {
+        // the stream updates the digest
+      }
+    } catch (IOException e) {
+      return null;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeInt(VERSION);
+      // the read may have been changed after reading the file
+      writeString(output, sequence.getSequence());
+      writeQualities(output, sequence);
+      writeString(output, sequence.getComments());
+
+      output.writeInt(context.getAvgApproximationStart());
+      output.writeInt(context.getAvgApproximationEnd());
+      output.writeInt(context.getBreakcounter());
+      output.writeInt(context.getNumAverageNucleotides());
+      output.writeInt(context.getStartcounter());
+      output.writeBoolean(context.isLinearSpaceAlignment());
+
+      output.writeBoolean(gene == null);
+      output.write(gene == null ? getGenesDigest(context) : getGeneDigest(gene));
+    } catch (IOException e) {
+      return null;
+    }
+    digest.update(bytes.toByteArray());
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Converts the result of an analysis to a cache entry.
+   *
+   * @param sequence the analysed sequence
+   * @param gene the reference gene, or null if the gene was found automatically
+   * @param context the analysis run which provides the gene index
+   * @return the content of the entry, or null if the referenced gene isn't one of the given genes
+   *
+   * @author Kevin Otto
+   */
+  static byte[] toEntry(AnalysedSequence sequence, Gene gene, AnalysisContext context) {
+    int geneIndex = indexOf(getCandidates(gene, context), sequence.getReferencedGene());
+    if (geneIndex == -1) {
+      return null;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeInt(VERSION);
+      writeString(output, sequence.getSequence());
+      writeQualities(output, sequence);
+      output.writeInt(sequence.getOffset());
+      output.writeInt(geneIndex);
+      output.writeInt(sequence.getMutations().size());
+      for (String mutation : sequence.getMutations()) {
+        writeString(output, mutation);
+      }
+      writeString(output, sequence.getComments());
+      output.writeInt(sequence.getProblematicComments().size());
+      for (ProblematicComment problem : sequence.getProblematicComments()) {
+        writeString(output, problem.name());
+      }
+      output.writeDouble(sequence.getTrimPercentage());
+      output.writeInt(sequence.getAvgQuality());
+      output.writeInt(sequence.getHisTagPosition());
+      output.writeBoolean(sequence.isReadingFrameError());
+    } catch (IOException e) {
+      return null;
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Applies a cached result to a read, as if it was analysed. The file name, researcher, date and
+   * traces of the read are kept.
+   *
+   * @param entry the content of the cache entry
+   * @param sequence the read to change
+   * @param gene the reference gene, or null if the gene is to be found automatically
+   * @param context the analysis run which provides the gene index
+   * @return true if the result was applied, false if the entry is invalid (the read is unchanged)
+   *
+   * @author Kevin Otto
+   */
+  static boolean applyEntry(byte[] entry, AnalysedSequence sequence, Gene gene,
+      AnalysisContext context) {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(entry))) {
+      if (input.readInt() != VERSION) {
+        return false;
+      }
+      String nucleotides = readString(input);
+      int[] qualities = readQualities(input);
+      int offset = input.readInt();
+      List<Gene> candidates = getCandidates(gene, context);
+      int geneIndex = input.readInt();
+      if (geneIndex < 0 || geneIndex >= candidates.size()) {
+        return false;
+      }
+      LinkedList<String> mutations = new LinkedList<String>();
+      for (int i = input.readInt(); i > 0; i--) {
+        mutations.add(readString(input));
+      }
+      String comments = readString(input);
+      LinkedList<ProblematicComment> problems = new LinkedList<ProblematicComment>();
+      for (int i = input.readInt(); i > 0; i--) {
+        problems.add(ProblematicComment.valueOf(readString(input)));
+      }
+      double trimPercentage = input.readDouble();
+      int avgQuality = input.readInt();
+      int hisTagPosition = input.readInt();
+      boolean readingFrameError = input.readBoolean();
+
+      sequence.setNucleotides(new PackedNucleotides(nucleotides));
+      sequence.setQuality(qualities);
+      sequence.setOffset(offset);
+      sequence.setReferencedGene(candidates.get(geneIndex));
+      sequence.setMutations(mutations);
+      sequence.setComments(comments);
+      for (ProblematicComment problem : problems) {
+        sequence.addProblematicComment(problem);
+      }
+      sequence.setTrimPercentage(trimPercentage);
+      sequence.setAvgQuality(avgQuality);
+      sequence.setHisTagPosition(hisTagPosition);
+      sequence.setReadingFrameError(readingFrameError);
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the genes a result can refer to: the given gene or all genes of the index.
+   */
+  private static List<Gene> getCandidates(Gene gene, AnalysisContext context) {
+    return gene == null ? context.getGeneIndex().getGenes() : Arrays.asList(gene);
+  }
+
+  /**
+   * Finds the position of the given gene object in a list of genes.
+   */
+  private static int indexOf(List<Gene> genes, Gene gene) {
+    int index = 0;
+    for (Gene candidate : genes) {
+      if (candidate == gene) {
+        return index;
+      }
+      index++;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the digest of all genes of the index of the context. It is computed once per context.
+   *
+   * @author Kevin Otto
+   */
+  private static byte[] getGenesDigest(AnalysisContext context) {
+    synchronized (context) {
+      if (context.genesDigest == null) {
+        MessageDigest digest = newDigest();
+        for (Gene gene : context.getGeneIndex().getGenes()) {
+          digest.update(getGeneDigest(gene));
+        }
+        context.genesDigest = digest.digest();
+      }
+      return context.genesDigest;
+    }
+  }
+
+  /**
+   * Returns the digest of a gene, including all values which are stored with the results.
+   *
+   * @author Kevin Otto
+   */
+  private static byte[] getGeneDigest(Gene gene) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeInt(gene.getId());
+      writeString(output, gene.getName());
+      writeString(output, gene.getResearcher());
+      writeString(output, gene.getOrganism());
+      writeString(output, gene.getComment());
+      writeString(output, gene.getSequence());
+    } catch (IOException e) {
+      // writing into memory doesn't fail
+    }
+    return newDigest().digest(bytes.toByteArray());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Writes a string which may be null or longer than the limit of
+   * {@link DataOutputStream#writeUTF(String)}.
+   */
+  private static void writeString(DataOutputStream output, String string) throws IOException {
+    if (string == null) {
+      output.writeInt(-1);
+    } else {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeQualities(DataOutputStream output, AnalysedSequence sequence)
+      throws IOException {
+    if (sequence.getCompactQuality() == null && sequence.getWideQuality() == null) {
+      output.writeInt(-1);
+    } else {
+      // the qualities are written without converting them into a new array
+      output.writeInt(sequence.getQualityLength());
+      for (int i = 0; i < sequence.getQualityLength(); i++) {
+        output.writeInt(sequence.getQuality(i));
+      }
+    }
+  }
+
+  private static int[] readQualities(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length == -1) {
+      return null;
+    }
+    int[] qualities = new int[length];
+    for (int i = 0; i < length; i++) {
+      qualities[i] = input.readInt();
+    }
+    return qualities;
+  }
+}
@@ -0,0 +1,91 @@
+package analysis;
+
+/**
+ * This class converts int arrays into smaller primitive arrays and back. Phred qualities always fit
+ * into a byte and trace amplitudes into 16 bits, so storing them as int arrays wastes two to four
+ * times the memory. Arrays with values which don't fit are not converted, so no information is
+ * lost.
+ *
+ * @category DNA.Utils
+ * @author Kevin Otto
+ */
+public final class CompactArrays {
+
+  private CompactArrays() {}
+
+  /**
+   * Stores values between 0 and 255 in a byte array.
+   *
+   * @param values the values to be stored
+   * @return the values as unsigned bytes, or null if a value is out of range (or values is null)
+   *
+   * @author Kevin Otto
+   */
+  public static byte[] toUnsignedBytes(int[] values) {
+    if (values == null) {
+      return null;
+    }
+    byte[] result = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      if ((values[i] & ~0xFF) != 0) {
+        return null;
+      }
+      result[i] = (byte) values[i];
+    }
+    return result;
+  }
+
+  /**
+   * Converts unsigned bytes back into an int array.
+   *
+   * @param values the unsigned bytes
+   * @return the values as ints
+   *
+   * @author Kevin Otto
+   */
+  public static int[] fromUnsignedBytes(byte[] values) {
+    int[] result = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      result[i] = values[i] & 0xFF;
+    }
+    return result;
+  }
+
+  /**
+   * Stores values between -32768 and 32767 in a short array.
+   *
+   * @param values the values to be stored
+   * @return the values as shorts, or null if a value is out of range (or values is null)
+   *
+   * @author Kevin Otto
+   */
+  public static short[] toShorts(int[] values) {
+    if (values == null) {
+      return null;
+    }
+    short[] result = new short[values.length];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != (short) values[i]) {
+        return null;
+      }
+      result[i] = (short) values[i];
+    }
+    return result;
+  }
+
+  /**
+   * Converts shorts back into an int array.
+   *
+   * @param values the shorts
+   * @return the values as ints
+   *
+   * @author Kevin Otto
+   */
+  public static int[] fromShorts(short[] values) {
+    int[] result = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      result[i] = values[i];
+    }
+    return result;
+  }
+}
@@ -85,7 +85,7 @@ public class Gene extends Sequence {
   public Gene(String sequence, int id, String name, String researcher, String organism,
       String comment, Date date) {
     super(sequence, researcher, date);
-    this.sequence = sequence;
+    storeSequence(sequence);
     this.name = name;
     this.id = id;
     this.organism = organism;
@@ -0,0 +1,208 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is an inverted k-mer index over a list of genes. It is used by the automatic gene
+ * recognition to compare a sequence only with the few genes that share the most k-mers (seeds)
+ * with it, instead of aligning it against every known gene.
+ *
+ * @category DNA.Utils
+ * @author jannis blueml
+ */
+public class GeneIndex {
+
+  /**
+   * Length of the k-mers (seeds). Each nucleotide is encoded with two bits, so a k-mer fits into
+   * an int.
+   */
+  public static final int K = 12;
+
+  /**
+   * The maximal number of genes that are aligned exactly with a sequence.
+   */
+  public static final int MAX_CANDIDATES = 4;
+
+  /**
+   * Genes with less than this fraction of the seed hits of the best gene are pruned.
+   */
+  private static final double MIN_SEED_FRACTION = 0.5;
+
+  /**
+   * Bit mask to keep the last K nucleotides of a rolling k-mer code.
+   */
+  private static final int KMER_MASK = (1 << (2 * K)) - 1;
+
+  /**
+   * All indexed genes. The position of a gene in this list is its index in the postings.
+   */
+  private final ArrayList<Gene> genes;
+
+  /**
+   * Sorted postings, each one is (k-mer code << 32 | gene index) and occurs at most once.
+   */
+  private final long[] postings;
+
+  /**
+   * Number of genes which were aligned exactly since this index was built.
+   */
+  private final AtomicLong scoredCandidates = new AtomicLong();
+
+  /**
+   * Number of genes which were skipped thanks to this index since it was built.
+   */
+  private final AtomicLong prunedCandidates = new AtomicLong();
+
+  /**
+   * Builds the index over the given genes. Later changes to the list do not affect the index.
+   *
+   * @param geneList the genes to be indexed
+   *
+   * @author jannis blueml
+   */
+  public GeneIndex(List<Gene> geneList) {
+    genes = new ArrayList<Gene>(geneList);
+
+    int size = 0;
+    for (Gene gene : genes) {
+      size += Math.max(0, gene.getNucleotides().length() - K + 1);
+    }
+
+    long[] entries = new long[size];
+    int count = 0;
+    for (int i = 0; i < genes.size(); i++) {
+      for (int code : kmers(genes.get(i).getSequence())) {
+        entries[count++] = ((long) code << 32) | i;
+      }
+    }
+
+    Arrays.sort(entries, 0, count);
+    // remove duplicates, so every gene counts a shared k-mer only once
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || entries[unique - 1] != entries[i]) {
+        entries[unique++] = entries[i];
+      }
+    }
+    postings = Arrays.copyOf(entries, unique);
+  }
+
+  /**
+   * Finds the genes which share the most k-mers with the given sequence. At most
+   * {@link #MAX_CANDIDATES} genes are returned, ordered by the number of shared k-mers. If no gene
+   * shares a k-mer with the sequence (e.g. because it is too short), all genes are returned.
+   *
+   * @param sequence the sequence to be compared with the genes
+   * @return the genes which are worth aligning with the sequence
+   *
+   * @author jannis blueml
+   */
+  public ArrayList<Gene> getCandidates(String sequence) {
+    int[] hits = new int[genes.size()];
+    int bestHits = 0;
+
+    int[] codes = kmers(sequence);
+    Arrays.sort(codes);
+    for (int i = 0; i < codes.length; i++) {
+      if (i > 0 && codes[i] == codes[i - 1]) {
+        continue;
+      }
+      long key = (long) codes[i] << 32;
+      // key is the posting of the first gene, otherwise the insertion point is the first posting
+      int position = Arrays.binarySearch(postings, key);
+      if (position < 0) {
+        position = -position - 1;
+      }
+      while (position < postings.length && (postings[position] >>> 32) == codes[i]) {
+        int gene = (int) postings[position];
+        hits[gene]++;
+        bestHits = Math.max(bestHits, hits[gene]);
+        position++;
+      }
+    }
+
+    ArrayList<Gene> candidates = new ArrayList<Gene>();
+    if (bestHits == 0) {
+      candidates.addAll(genes);
+    } else {
+      ArrayList<Integer> indices = new ArrayList<Integer>();
+      for (int i = 0; i < hits.length; i++) {
+        if (hits[i] > 0 && hits[i] >= bestHits * MIN_SEED_FRACTION) {
+          indices.add(i);
+        }
+      }
+      // stable sort, so genes with equal hits keep the order of the gene list
+      Collections.sort(indices, (first, second) -> hits[second] - hits[first]);
+      List<Integer> best = indices.subList(0, Math.min(indices.size(), MAX_CANDIDATES));
+      // restore the order of the gene list to get the same result as a full comparison on ties
+      Collections.sort(best);
+      for (int index : best) {
+        candidates.add(genes.get(index));
+      }
+    }
+
+    scoredCandidates.addAndGet(candidates.size());
+    prunedCandidates.addAndGet(genes.size() - candidates.size());
+    return candidates;
+  }
+
+  /**
+   * Encodes all k-mers of a sequence which only consist of A, C, G and T.
+   *
+   * @param sequence the sequence to be split into k-mers
+   * @return the codes of the k-mers in order of their occurrence
+   *
+   * @author jannis blueml
+   */
+  private static int[] kmers(String sequence) {
+    int[] codes = new int[Math.max(0, sequence.length() - K + 1)];
+    int count = 0;
+    int code = 0;
+    int valid = 0;
+    for (int i = 0; i < sequence.length(); i++) {
+      int nucleotide;
+      switch (Character.toUpperCase(sequence.charAt(i))) {
+        case 'A':
+          nucleotide = 0;
+          break;
+        case 'C':
+          nucleotide = 1;
+          break;
+        case 'G':
+          nucleotide = 2;
+          break;
+        case 'T':
+          nucleotide = 3;
+          break;
+        default:
+          // k-mers containing unknown bases (e.g. N) are not used as seeds
+          valid = 0;
+          continue;
+      }
+      code = ((code << 2) | nucleotide) & KMER_MASK;
+      valid++;
+      if (valid >= K) {
+        codes[count++] = code;
+      }
+    }
+    return Arrays.copyOf(codes, count);
+  }
+
+  // GETTERs and SETTERs:
+
+  public ArrayList<Gene> getGenes() {
+    return genes;
+  }
+
+  public long getScoredCandidates() {
+    return scoredCandidates.get();
+  }
+
+  public long getPrunedCandidates() {
+    return prunedCandidates.get();
+  }
+}
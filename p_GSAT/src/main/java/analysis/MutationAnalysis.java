@@ -18,19 +18,10 @@ import exceptions.UndefinedTypeOfMutationException;
 public class MutationAnalysis {
 
   /**
-   * boolean if there is a possible reading frame error is detected.
+   * Parts of the Levenshtein matrix with at most this number of rows are calculated completely by
+   * the linear space variant of reportDifferences.
    */
-  public static boolean readingFrameError = false;
-
-  /**
-   * how many bad qualtity nucleotides before we stop analysing.
-   */
-  public static int readingFrameErrorBorder = 100;
-
-  /**
-   * A Integer, that specifies the border for the "Reading Frame Error".
-   */
-  public static int warningReadingFrameError = 10;
+  private static final int LINEAR_SPACE_BLOCK_ROWS = 64;
 
   /**
    * Compares a sequence to a gene to find mutations. Returns a boolean if there was a reading frame
@@ -45,12 +36,34 @@ public class MutationAnalysis {
    * @throws UndefinedTypeOfMutationException if reportDifferences gives me a mutation that's not
    *         s,i,d
    * 
-   * @see #reportDifferences(AnalysedSequence)
+   * @see #reportDifferences(AnalysedSequence, boolean)
    * 
    * @author jannis blueml
    */
   public static boolean findMutations(AnalysedSequence toAnalyze)
       throws UndefinedTypeOfMutationException, CorruptedSequenceException {
+    return findMutations(toAnalyze, AnalysisContext.parameters());
+  }
+
+  /**
+   * Compares a sequence to a gene to find mutations like {@link #findMutations(AnalysedSequence)},
+   * but uses the alignment settings of the given analysis context. A detected reading frame error
+   * is stored in the sequence.
+   * 
+   * @param toAnalyze The sequence to be analyzed (which may have mutations)
+   * @param context the analysis run which provides the alignment settings
+   * 
+   * @return A boolean if there was a reading frame error
+   *
+   * @throws CorruptedSequenceException if sequence of toAnalyze is damaged or corrupt
+   * 
+   * @throws UndefinedTypeOfMutationException if reportDifferences gives me a mutation that's not
+   *         s,i,d
+   * 
+   * @author jannis blueml
+   */
+  public static boolean findMutations(AnalysedSequence toAnalyze, AnalysisContext context)
+      throws UndefinedTypeOfMutationException, CorruptedSequenceException {
 
     // the gene references by the mutated Sequence
     Gene reference = toAnalyze.getReferencedGene();
@@ -59,12 +72,14 @@ public class MutationAnalysis {
     // the gene sequence
     String originalSequence = reference.getSequence();
 
-    warningReadingFrameError = mutatedSequence.length() / 8;
+    // the border for the reading frame error warning
+    int warningReadingFrameError = mutatedSequence.length() / 8;
     // because we work on amino acids
-    readingFrameErrorBorder = mutatedSequence.length() / 3;
+    int readingFrameErrorBorder = mutatedSequence.length() / 3;
 
     // a List of all differences in form of s|12|d|e
-    LinkedList<String> differenceList = reportDifferences(toAnalyze);
+    LinkedList<String> differenceList =
+        reportDifferences(toAnalyze, context.isLinearSpaceAlignment());
     // counter for reading frame error detection
     int checkFrameerrorCounter = 0;
     // shift created by insertions and deletions
@@ -76,7 +91,7 @@ public class MutationAnalysis {
       // checks reading frame error and warnings
       if (checkFrameerrorCounter == warningReadingFrameError) {
         if (checkFrameerrorCounter == readingFrameErrorBorder) {
-          readingFrameError = true;
+          toAnalyze.setReadingFrameError(true);
           return false;
         }
       }
@@ -249,7 +264,7 @@ public class MutationAnalysis {
 
 
       // find equal qualities
-      if (sequence.getQuality()[i] < 15) {
+      if (sequence.getQuality(i) < 15) {
         found = true;
       } else {
         found = false;
@@ -305,14 +320,34 @@ public class MutationAnalysis {
    * </p>
    * m is the new amino acid placed in the mutated sequence * insertions take place between the
    * given index and the next index
+   * <p>
+   * This method always uses the whole Levenshtein matrix. The analysis of a sequence searches the
+   * differences without it if linear space alignment is activated in its context.
+   * </p>
    * 
    * @param gene The gene
    * @param sequence The mutated sequence
    * 
    * @return A list of differences (represented as String)
+   * @see AnalysisContext#setLinearSpaceAlignment(boolean)
    * @author Kevin Otto
    */
   public static LinkedList<String> reportDifferences(String gene, String sequence) {
+    return reportDifferences(gene, sequence, false);
+  }
+
+  /**
+   * Searches the differences like {@link #reportDifferences(String, String)}, with or without the
+   * linear space alignment.
+   * 
+   * @author Kevin Otto
+   */
+  private static LinkedList<String> reportDifferences(String gene, String sequence,
+      boolean linearSpace) {
+
+    if (linearSpace) {
+      return reportDifferencesLinearSpace(gene, sequence);
+    }
 
     // get Levenshtein Matrix
     int[][] lev = StringAnalysis.calculateLevenshteinMatrix(gene, sequence);
@@ -321,22 +356,156 @@ public class MutationAnalysis {
     int matrixHeight = lev.length;
     int matrixWidth = lev[0].length;
 
-    // counter variables for actual matrix position
-    int row = matrixHeight - 1;
-    int column = matrixWidth - 1;
-
     // add linked list to save diference strings
     LinkedList<String> result = new LinkedList<String>();
 
     // iterate over levenstein matrix by folowing best path
-    while (row > 0 && column > 0) {
+    int column = followBestPath(lev, 0, matrixHeight - 1, matrixWidth - 1, gene, sequence, result);
+
+    // special case: insertion at begin
+    for (; column > 0; column--) {
+      result.addFirst("i|0|" + sequence.charAt(column - 1) + "|");
+    }
+    return result;
+  }
+
+  /**
+   * Does the same as {@link #reportDifferences(String, String)}, but never holds the whole
+   * Levenshtein matrix in memory. The rows of the matrix are split in two halves. The middle row is
+   * calculated (only the previous row is needed for that), the path through the lower half is
+   * followed recursively and afterwards the path through the upper half. Small parts of the matrix
+   * are calculated completely. This needs memory for about log(|gene|) rows instead of |gene| rows,
+   * but calculates the rows several times. Because the same path is followed, the result is exactly
+   * the same as the result of {@link #reportDifferences(String, String)}.
+   *
+   * @param gene The gene
+   * @param sequence The mutated sequence
+   *
+   * @return A list of differences (represented as String)
+   * @author Kevin Otto
+   */
+  public static LinkedList<String> reportDifferencesLinearSpace(String gene, String sequence) {
+
+    // first row of the Levenshtein matrix from 0 to |sequence|
+    int[] firstRow = new int[sequence.length() + 1];
+    for (int j = 0; j < firstRow.length; j++) {
+      firstRow[j] = j;
+    }
+
+    LinkedList<String> result = new LinkedList<String>();
+
+    int column = followBestPathLinearSpace(gene, sequence, 0, firstRow, gene.length(),
+        sequence.length(), result);
+
+    // special case: insertion at begin
+    for (; column > 0; column--) {
+      result.addFirst("i|0|" + sequence.charAt(column - 1) + "|");
+    }
+    return result;
+  }
+
+  /**
+   * Follows the best path from the given cell up to the top row, using only the top row of the
+   * given part of the Levenshtein matrix and some rows in between.
+   *
+   * @see #reportDifferencesLinearSpace(String, String)
+   *
+   * @param gene The gene (vertical String of the matrix)
+   * @param sequence The mutated sequence (horizontal String of the matrix)
+   * @param topRow index of the row where to stop
+   * @param topRowValues values of the top row (at least up to the given column)
+   * @param row index of the row where to start
+   * @param column index of the column where to start
+   * @param result the list to add the found differences to (at the beginning)
+   *
+   * @return the column where the path reaches the top row
+   * @author Kevin Otto
+   */
+  private static int followBestPathLinearSpace(String gene, String sequence, int topRow,
+      int[] topRowValues, int row, int column, LinkedList<String> result) {
+
+    // small parts are calculated completely
+    if (row - topRow <= LINEAR_SPACE_BLOCK_ROWS) {
+      int[][] lev = new int[row - topRow + 1][];
+      lev[0] = topRowValues;
+      for (int i = 1; i < lev.length; i++) {
+        lev[i] = calculateNextLevenshteinRow(gene, sequence, lev[i - 1], topRow + i, column);
+      }
+      return followBestPath(lev, topRow, row, column, gene, sequence, result);
+    }
+
+    // calculate middle row
+    int middleRow = (topRow + row) / 2;
+    int[] middleRowValues = topRowValues;
+    for (int i = topRow + 1; i <= middleRow; i++) {
+      middleRowValues = calculateNextLevenshteinRow(gene, sequence, middleRowValues, i, column);
+    }
+
+    // lower half first, because the path is followed backwards
+    int middleColumn = followBestPathLinearSpace(gene, sequence, middleRow, middleRowValues, row,
+        column, result);
+    return followBestPathLinearSpace(gene, sequence, topRow, topRowValues, middleRow, middleColumn,
+        result);
+  }
+
+  /**
+   * Calculates a row of the Levenshtein matrix from the previous row (like
+   * {@link StringAnalysis#calculateLevenshteinMatrix(String, String)}).
+   *
+   * @param gene The gene (vertical String of the matrix)
+   * @param sequence The mutated sequence (horizontal String of the matrix)
+   * @param previousRow the previous row of the matrix
+   * @param row the index of the row to calculate
+   * @param columns the last column that is needed
+   *
+   * @return the row with the given index (from column 0 up to columns)
+   * @author Kevin Otto
+   */
+  private static int[] calculateNextLevenshteinRow(String gene, String sequence,
+      int[] previousRow, int row, int columns) {
+    int[] nextRow = new int[columns + 1];
+    nextRow[0] = row;
+    for (int j = 1; j <= columns; j++) {
+      // if characters are equal cost for replacement = 0
+      int cost = gene.charAt(row - 1) == sequence.charAt(j - 1) ? 0 : 1;
+      // deletion of char, insertion of char, change of char:
+      nextRow[j] = Math.min(Math.min(previousRow[j] + 1, nextRow[j - 1] + 1),
+          previousRow[j - 1] + cost);
+    }
+    return nextRow;
+  }
+
+  /**
+   * Follows the best path through (a part of) the Levenshtein matrix backwards and adds all found
+   * differences to the beginning of the result list. The path starts at the given cell and ends in
+   * the top row of the given part or in the first column. If the first column is reached, all
+   * remaining rows are deletions.
+   *
+   * @param lev the rows of the Levenshtein matrix from topRow up to row
+   * @param topRow the index of the first row in lev
+   * @param row index of the row where to start
+   * @param column index of the column where to start
+   * @param gene The gene (vertical String of the matrix)
+   * @param sequence The mutated sequence (horizontal String of the matrix)
+   * @param result the list to add the found differences to (at the beginning)
+   *
+   * @return the column where the path reaches the top row
+   * @author Kevin Otto
+   */
+  private static int followBestPath(int[][] lev, int topRow, int row, int column, String gene,
+      String sequence, LinkedList<String> result) {
+
+    while (row > topRow && column > 0) {
+      int[] current = lev[row - topRow];
+      int[] previous = lev[row - topRow - 1];
+
       // if previous diagonal cell is best (smallest neighbor cell and
       // equal or exactly one smaller)
-      if (lev[row - 1][column - 1] <= Math.min(lev[row - 1][column], lev[row][column - 1])
-          && (lev[row - 1][column - 1] == lev[row][column]
-              || lev[row - 1][column - 1] == lev[row][column] - 1)) {
+      if (previous[column - 1] <= Math.min(previous[column], current[column - 1])
+          && (previous[column - 1] == current[column]
+              || previous[column - 1] == current[column] - 1)) {
         // Diagonal smaller -> Substitution
-        if (lev[row - 1][column - 1] == lev[row][column] - 1) {
+        if (previous[column - 1] == current[column] - 1) {
           // SUBSTITUTION
           result.addFirst(
               "s|" + row + "|" + sequence.charAt(column - 1) + "|" + gene.charAt(row - 1));
@@ -347,12 +516,11 @@ public class MutationAnalysis {
         column--;
 
         // if left cell is best
-      } else if ((lev[row - 1][column] <= lev[row][column - 1])
-          && (lev[row - 1][column] == lev[row][column]
-              || lev[row - 1][column] == lev[row][column] - 1)) {
+      } else if ((previous[column] <= current[column - 1])
+          && (previous[column] == current[column] || previous[column] == current[column] - 1)) {
         // left smaller->deletion;
         // DELETION
-        if (lev[row - 1][column] == lev[row][column] - 1) {
+        if (previous[column] == current[column] - 1) {
           result.addFirst("d|" + row + "|" + gene.charAt(row - 1) + "|");
         }
 
@@ -360,29 +528,18 @@ public class MutationAnalysis {
       } else {
         // up smaller -> insertion
         // INSERTION
-        if (lev[row][column - 1] == lev[row][column] - 1) {
+        if (current[column - 1] == current[column] - 1) {
           result.addFirst("i|" + row + "|" + sequence.charAt(column - 1) + "|");
         }
         column--;
       }
     }
 
-    // special cases:
-
-    // insertion at begin
-    if (column > 0) {
-      for (; column > 0; column--) {
-        result.addFirst("i|" + row + "|" + sequence.charAt(column - 1) + "|");
-      }
+    // special case: deletion at begin
+    for (; row > topRow; row--) {
+      result.addFirst("d|" + row + "|" + gene.charAt(row - 1) + "|");
     }
-
-    // deletion at begin
-    if (row > 0) {
-      for (; row > 0; row--) {
-        result.addFirst("d|" + row + "|" + gene.charAt(row - 1) + "|");
-      }
-    }
-    return result;
+    return column;
   }
 
   /**
@@ -408,12 +565,13 @@ public class MutationAnalysis {
    * index and the next index
    * 
    * @param seq The sequence to test for differences
+   * @param linearSpace whether the linear space alignment is used
    * 
    * @return A list of differences (represented as String)
    * @author Kevin Otto, jannis blueml
    * @throws CorruptedSequenceException is thrown if the sequence is not convertable to aminoacids
    */
-  private static LinkedList<String> reportDifferences(AnalysedSequence seq)
+  private static LinkedList<String> reportDifferences(AnalysedSequence seq, boolean linearSpace)
       throws CorruptedSequenceException {
     String first;
     String second;
@@ -423,10 +581,10 @@ public class MutationAnalysis {
     int end = seq.getOffset() * 3 + seq.length();
 
     // convert sequences to Aminoacids
-    first = StringAnalysis.codonsToAminoAcids(seq.getReferencedGene().sequence.substring(begin,
+    first = StringAnalysis.codonsToAminoAcids(seq.getReferencedGene().getSequence().substring(begin,
         Math.min(end, seq.getReferencedGene().getSequence().length())));
-    second = StringAnalysis.codonsToAminoAcids(seq.sequence);
+    second = StringAnalysis.codonsToAminoAcids(seq.getSequence());
     // calculate difrences and return
-    return reportDifferences(first.split("#")[0], second.split("#")[0]);
+    return reportDifferences(first.split("#")[0], second.split("#")[0], linearSpace);
   }
 }
@@ -0,0 +1,330 @@
+package analysis;
+
+import java.util.Arrays;
+
+/**
+ * This class stores a nucleotide sequence with two bits per nucleotide, i.e. four nucleotides per
+ * byte. All letters different from A, C, G and T (e.g. N or X) are kept in a separate exception
+ * list, so every String can be stored without loss. Objects of this class are immutable.
+ *
+ * @category object
+ * @author Kevin Otto
+ */
+public final class PackedNucleotides {
+
+  /**
+   * The nucleotides in the order of their two bit codes. The code of the complementary nucleotide
+   * is the inverted code (A = 00 and T = 11, C = 01 and G = 10).
+   */
+  private static final char[] NUCLEOTIDES = {'A', 'C', 'G', 'T'};
+
+  /**
+   * The letter which replaces unknown nucleotides when a complement is built.
+   */
+  private static final char UNKNOWN = 'X';
+
+  /**
+   * Lookup table to reverse the order of the four nucleotides within a byte.
+   */
+  private static final byte[] REVERSED_BYTES = new byte[256];
+
+  private static final int[] NO_POSITIONS = new int[0];
+
+  private static final char[] NO_LETTERS = new char[0];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      REVERSED_BYTES[i] = (byte) (((i & 0x03) << 6) | ((i & 0x0C) << 2) | ((i & 0x30) >>> 2)
+          | ((i & 0xC0) >>> 6));
+    }
+  }
+
+  /**
+   * The number of stored nucleotides.
+   */
+  private final int length;
+
+  /**
+   * The two bit codes, nucleotide i is stored in the bits 2*(i%4) and 2*(i%4)+1 of byte i/4.
+   * Unused bits and the bits of exceptions are always zero.
+   */
+  private final byte[] packed;
+
+  /**
+   * The ascending positions of all letters which are not A, C, G or T.
+   */
+  private final int[] exceptionPositions;
+
+  /**
+   * The letters at the positions of exceptionPositions.
+   */
+  private final char[] exceptionLetters;
+
+  /**
+   * Cached hash code, zero if it was not calculated yet.
+   */
+  private int hash;
+
+  /**
+   * Packs the given String.
+   *
+   * @param sequence the nucleotides to be stored
+   *
+   * @author Kevin Otto
+   */
+  public PackedNucleotides(String sequence) {
+    length = sequence.length();
+    packed = new byte[(length + 3) / 4];
+
+    int exceptions = 0;
+    int[] positions = NO_POSITIONS;
+    char[] letters = NO_LETTERS;
+    for (int i = 0; i < length; i++) {
+      int code;
+      char letter = sequence.charAt(i);
+      switch (letter) {
+        case 'A':
+          code = 0;
+          break;
+        case 'C':
+          code = 1;
+          break;
+        case 'G':
+          code = 2;
+          break;
+        case 'T':
+          code = 3;
+          break;
+        default:
+          if (exceptions == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(4, exceptions * 2));
+            letters = Arrays.copyOf(letters, positions.length);
+          }
+          positions[exceptions] = i;
+          letters[exceptions] = letter;
+          exceptions++;
+          continue;
+      }
+      packed[i >>> 2] |= code << ((i & 3) << 1);
+    }
+    exceptionPositions = Arrays.copyOf(positions, exceptions);
+    exceptionLetters = Arrays.copyOf(letters, exceptions);
+  }
+
+  /**
+   * Creates an object from already packed data. The arrays are not copied.
+   *
+   * @author Kevin Otto
+   */
+  private PackedNucleotides(int length, byte[] packed, int[] exceptionPositions,
+      char[] exceptionLetters) {
+    this.length = length;
+    this.packed = packed;
+    this.exceptionPositions = exceptionPositions;
+    this.exceptionLetters = exceptionLetters;
+  }
+
+  /**
+   * Returns the number of nucleotides.
+   *
+   * @return the length of the sequence
+   *
+   * @author Kevin Otto
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Returns the nucleotide at the given position.
+   *
+   * @param index the position of the nucleotide
+   * @return the letter of the nucleotide
+   *
+   * @author Kevin Otto
+   */
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+    if (exceptionPositions.length > 0) {
+      int exception = Arrays.binarySearch(exceptionPositions, index);
+      if (exception >= 0) {
+        return exceptionLetters[exception];
+      }
+    }
+    return NUCLEOTIDES[(packed[index >>> 2] >>> ((index & 3) << 1)) & 3];
+  }
+
+  /**
+   * Returns the complementary sequence (A and T as well as C and G are exchanged). The complement
+   * is built by inverting all bits. All letters different from A, C, G and T are replaced by X.
+   *
+   * @return the complementary nucleotides
+   *
+   * @author Kevin Otto
+   */
+  public PackedNucleotides complement() {
+    byte[] result = new byte[packed.length];
+    for (int i = 0; i < packed.length; i++) {
+      result[i] = (byte) ~packed[i];
+    }
+    clearUnusedBits(result, length);
+
+    char[] letters = new char[exceptionLetters.length];
+    Arrays.fill(letters, UNKNOWN);
+    for (int position : exceptionPositions) {
+      result[position >>> 2] &= ~(3 << ((position & 3) << 1));
+    }
+    return new PackedNucleotides(length, result, exceptionPositions, letters);
+  }
+
+  /**
+   * Returns the reversed sequence. The bytes are reversed using a lookup table and then shifted
+   * by the number of unused nucleotide slots in the last byte.
+   *
+   * @return the reversed nucleotides
+   *
+   * @author Kevin Otto
+   */
+  public PackedNucleotides reverse() {
+    byte[] reversed = new byte[packed.length];
+    for (int i = 0; i < packed.length; i++) {
+      reversed[i] = REVERSED_BYTES[packed[packed.length - 1 - i] & 0xFF];
+    }
+    int unused = packed.length * 4 - length;
+
+    int[] positions = new int[exceptionPositions.length];
+    char[] letters = new char[exceptionLetters.length];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = length - 1 - exceptionPositions[positions.length - 1 - i];
+      letters[i] = exceptionLetters[letters.length - 1 - i];
+    }
+    return new PackedNucleotides(length, shift(reversed, unused, length), positions, letters);
+  }
+
+  /**
+   * Returns the part of the sequence between the given positions, like
+   * {@link String#substring(int, int)}.
+   *
+   * @param beginIndex the first position (inclusive)
+   * @param endIndex the last position (exclusive)
+   * @return the nucleotides between the positions
+   *
+   * @author Kevin Otto
+   */
+  public PackedNucleotides substring(int beginIndex, int endIndex) {
+    if (beginIndex < 0 || endIndex > length || beginIndex > endIndex) {
+      throw new IndexOutOfBoundsException(
+          "begin " + beginIndex + ", end " + endIndex + ", length " + length);
+    }
+    int first = lowerBound(exceptionPositions, beginIndex);
+    int last = lowerBound(exceptionPositions, endIndex);
+    int[] positions = new int[last - first];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = exceptionPositions[first + i] - beginIndex;
+    }
+    char[] letters = Arrays.copyOfRange(exceptionLetters, first, last);
+
+    int resultLength = endIndex - beginIndex;
+    return new PackedNucleotides(resultLength, shift(packed, beginIndex, resultLength), positions,
+        letters);
+  }
+
+  /**
+   * Copies the given number of nucleotides starting at the given position into a new array, so
+   * the first copied nucleotide becomes the first nucleotide of the result.
+   *
+   * @author Kevin Otto
+   */
+  private static byte[] shift(byte[] source, int start, int count) {
+    byte[] result = new byte[(count + 3) / 4];
+    int offset = start >>> 2;
+    int bits = (start & 3) << 1;
+    for (int i = 0; i < result.length; i++) {
+      int low = (source[offset + i] & 0xFF) >>> bits;
+      int high = offset + i + 1 < source.length ? (source[offset + i + 1] & 0xFF) << (8 - bits) : 0;
+      result[i] = (byte) (low | high);
+    }
+    clearUnusedBits(result, count);
+    return result;
+  }
+
+  /**
+   * Sets the bits after the last nucleotide to zero.
+   *
+   * @author Kevin Otto
+   */
+  private static void clearUnusedBits(byte[] data, int count) {
+    if ((count & 3) != 0) {
+      data[data.length - 1] &= (1 << ((count & 3) << 1)) - 1;
+    }
+  }
+
+  /**
+   * Returns the index of the first value which is not smaller than key.
+   *
+   * @author Kevin Otto
+   */
+  private static int lowerBound(int[] values, int key) {
+    int index = Arrays.binarySearch(values, key);
+    return index < 0 ? -index - 1 : index;
+  }
+
+  /**
+   * Materializes the nucleotides as a String.
+   *
+   * @return the nucleotide sequence
+   *
+   * @author Kevin Otto
+   */
+  @Override
+  public String toString() {
+    char[] letters = new char[length];
+    for (int i = 0; i < length; i++) {
+      letters[i] = NUCLEOTIDES[(packed[i >>> 2] >>> ((i & 3) << 1)) & 3];
+    }
+    for (int i = 0; i < exceptionPositions.length; i++) {
+      letters[exceptionPositions[i]] = exceptionLetters[i];
+    }
+    return new String(letters);
+  }
+
+  /**
+   * Two objects are equal if they represent the same String. This only compares the packed bytes
+   * and the exceptions.
+   *
+   * @author Kevin Otto
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof PackedNucleotides)) {
+      return false;
+    }
+    PackedNucleotides nucleotides = (PackedNucleotides) other;
+    return length == nucleotides.length && hashCode() == nucleotides.hashCode()
+        && Arrays.equals(packed, nucleotides.packed)
+        && Arrays.equals(exceptionPositions, nucleotides.exceptionPositions)
+        && Arrays.equals(exceptionLetters, nucleotides.exceptionLetters);
+  }
+
+  /**
+   * The hash code is calculated once from the packed bytes and the exceptions.
+   *
+   * @author Kevin Otto
+   */
+  @Override
+  public int hashCode() {
+    int result = hash;
+    if (result == 0) {
+      result = 31 * length + Arrays.hashCode(packed);
+      result = 31 * result + Arrays.hashCode(exceptionPositions);
+      result = 31 * result + Arrays.hashCode(exceptionLetters);
+      hash = result;
+    }
+    return result;
+  }
+}
@@ -101,6 +101,26 @@ public class QualityAnalysis {
    * 
    */
   public static int[] findLowQuality(AnalysedSequence sequence) {
+    return findLowQuality(sequence, AnalysisContext.parameters());
+  }
+
+
+  /**
+   * Finds the trimming positions like {@link #findLowQuality(AnalysedSequence)}, but uses the
+   * quality parameters of the given analysis context instead of the default parameters.
+   * 
+   * @param sequence the sequence obtained from the AB1 file
+   * @param context the analysis run which provides the quality parameters
+   * 
+   * @return an array indicating where to trim
+   * 
+   * @author Jannis Blueml
+   */
+  public static int[] findLowQuality(AnalysedSequence sequence, AnalysisContext context) {
+    int avgApproximationStart = context.getAvgApproximationStart();
+    int avgApproximationEnd = context.getAvgApproximationEnd();
+    int startcounter = context.getStartcounter();
+    int breakcounter = context.getBreakcounter();
 
     int[] qualities = sequence.getQuality();
 
@@ -144,7 +164,8 @@ public class QualityAnalysis {
     }
 
     // get the trimming position for trimming by average quality
-    int trimmingPositionAverageEnd = getAverageTrimmingPosition(qualities, trimmingPosition[0]);
+    int trimmingPositionAverageEnd =
+        getAverageTrimmingPosition(qualities, trimmingPosition[0], context);
 
     // use the position that trims earlier
     if (trimmingPositionAverageEnd < trimmingPosition[1]) {
@@ -166,6 +187,27 @@ public class QualityAnalysis {
    * @author Lovis Heindrich
    */
   public static int getAverageTrimmingPosition(int[] qualities, int startPosition) {
+    return getAverageTrimmingPosition(qualities, startPosition, AnalysisContext.parameters());
+  }
+
+
+  /**
+   * Finds the start of an average low quality subsequence like
+   * {@link #getAverageTrimmingPosition(int[], int)}, but uses the parameters of the given analysis
+   * context.
+   * 
+   * @param qualities the sequence which needs to be trimmed
+   * @param startPosition the first array index which will be used
+   * @param context the analysis run which provides the quality parameters
+   * 
+   * @return The position where a sequence of average low qualities starts
+   * 
+   * @author Lovis Heindrich
+   */
+  public static int getAverageTrimmingPosition(int[] qualities, int startPosition,
+      AnalysisContext context) {
+    int numAverageNucleotides = context.getNumAverageNucleotides();
+    int avgApproximationEnd = context.getAvgApproximationEnd();
     int endPosition = qualities.length;
 
     // if sequence is too short for analysis, return the default case
@@ -252,8 +294,22 @@ public class QualityAnalysis {
    * @author Jannis Blueml
    */
   public static void trimLowQuality(AnalysedSequence toAnalyse) {
+    trimLowQuality(toAnalyse, AnalysisContext.parameters());
+  }
+
+
+  /**
+   * Trims a sequence like {@link #trimLowQuality(AnalysedSequence)}, but uses the quality
+   * parameters of the given analysis context.
+   * 
+   * @param toAnalyse the sequence to trim
+   * @param context the analysis run which provides the quality parameters
+   * 
+   * @author Jannis Blueml
+   */
+  public static void trimLowQuality(AnalysedSequence toAnalyse, AnalysisContext context) {
 
-    int[] trimmingpositions = QualityAnalysis.findLowQuality(toAnalyse);
+    int[] trimmingpositions = QualityAnalysis.findLowQuality(toAnalyse, context);
     toAnalyse.setOffset(toAnalyse.getOffset() + trimmingpositions[2]);
     toAnalyse.trimSequence(trimmingpositions[0], trimmingpositions[1] - 1);
   }
@@ -269,15 +325,16 @@ public class QualityAnalysis {
    */
   public static int getAvgQuality(AnalysedSequence sequenceToAnalyse) {
 
-    if (sequenceToAnalyse.getQuality().length == 0) {
+    int length = sequenceToAnalyse.getQualityLength();
+    if (length == 0) {
       return 0;
     }
 
     int sum = 0;
-    for (int i : sequenceToAnalyse.getQuality()) {
-      sum += i;
+    for (int i = 0; i < length; i++) {
+      sum += sequenceToAnalyse.getQuality(i);
     }
-    return sum / sequenceToAnalyse.getQuality().length;
+    return sum / length;
   }
 
 
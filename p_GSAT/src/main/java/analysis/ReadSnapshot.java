@@ -0,0 +1,114 @@
+package analysis;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * This class is an immutable copy of a read as it was obtained from its AB1 file, i.e. before it
+ * got trimmed or analysed. The nucleotides stay packed and the qualities are stored as bytes, the
+ * traces are shared with the read (they are never changed by the analysis and are read again from
+ * the AB1 file if they were discarded). A snapshot can be turned into a new
+ * {@link AnalysedSequence} at any time, so the AB1 file doesn't need to be parsed again (e.g. to
+ * show the chromatograms after an analysis).
+ *
+ * @category object
+ * @author Kevin Otto
+ */
+public final class ReadSnapshot {
+
+  private final String fileName;
+
+  private final String researcher;
+
+  private final String addingDate;
+
+  private final PackedNucleotides nucleotides;
+
+  /**
+   * The phred qualities as unsigned bytes.
+   */
+  private final byte[] qualities;
+
+  /**
+   * The phred qualities, if they don't fit into unsigned bytes.
+   */
+  private final int[] wideQualities;
+
+  /**
+   * The traces of the read, they are shared with the read and may be loaded lazily.
+   */
+  private final TraceData traces;
+
+  /**
+   * Takes a snapshot of the current state of the given sequence. It should be called directly
+   * after reading the sequence.
+   *
+   * @param sequence the read to be copied
+   *
+   * @author Kevin Otto
+   */
+  public ReadSnapshot(AnalysedSequence sequence) {
+    fileName = sequence.getFileName();
+    researcher = sequence.getResearcher();
+    addingDate = sequence.getAddingDate();
+    nucleotides = sequence.getNucleotides();
+
+    // the arrays are replaced and not changed when the sequence is trimmed, so they are shared
+    qualities = sequence.getCompactQuality();
+    wideQualities = sequence.getWideQuality();
+
+    traces = sequence.getTraces();
+  }
+
+  /**
+   * Creates a new sequence with the data of this snapshot, like it would be read from the AB1 file.
+   *
+   * @return a new untrimmed sequence
+   *
+   * @author Kevin Otto
+   */
+  public AnalysedSequence toSequence() {
+    AnalysedSequence sequence = new AnalysedSequence("", researcher, fileName, null);
+    sequence.setQuality(qualities, wideQualities);
+    sequence.setNucleotides(nucleotides);
+    sequence.setAddingDate(addingDate);
+    sequence.setTraces(traces);
+    return sequence;
+  }
+
+  /**
+   * Returns a list which creates the sequences of the given snapshots when they are accessed for
+   * the first time. Later accesses return the same sequence objects. The list can't be changed.
+   *
+   * @param snapshots the snapshots of the reads
+   * @return the sequences of the snapshots
+   *
+   * @author Kevin Otto
+   */
+  public static List<AnalysedSequence> asSequences(List<ReadSnapshot> snapshots) {
+    ReadSnapshot[] reads = snapshots.toArray(new ReadSnapshot[snapshots.size()]);
+    AnalysedSequence[] sequences = new AnalysedSequence[reads.length];
+
+    return new AbstractList<AnalysedSequence>() {
+
+      @Override
+      public AnalysedSequence get(int index) {
+        if (sequences[index] == null) {
+          sequences[index] = reads[index].toSequence();
+        }
+        return sequences[index];
+      }
+
+      @Override
+      public int size() {
+        return reads.length;
+      }
+    };
+  }
+
+  // GETTERs and SETTERs:
+
+  public String getFileName() {
+    return fileName;
+  }
+}
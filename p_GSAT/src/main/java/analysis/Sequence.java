@@ -1,5 +1,9 @@
 package analysis;
 
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.util.Date;
 
@@ -28,10 +32,23 @@ public abstract class Sequence {
   protected String researcher;
 
   /**
-   * The sequence of nucleotides, encoded as a String. It consists of the letters A, C, T, G for the
-   * four possible nucleotides adenine, cytosine, thymine and guanine.
+   * The sequence of nucleotides, packed with two bits per nucleotide. It consists of the letters A,
+   * C, T, G for the four possible nucleotides adenine, cytosine, thymine and guanine.
    */
-  protected String sequence;
+  protected PackedNucleotides nucleotides;
+
+  /**
+   * The nucleotides materialized as a String. It is created on demand and may be released by the
+   * garbage collector when memory gets low.
+   */
+  private SoftReference<String> sequenceView = new SoftReference<String>(null);
+
+  /**
+   * The digest of the nucleotides, or null if it was not computed yet.
+   * 
+   * @see #getDigest()
+   */
+  private String digest;
 
   /**
    * Creates a new Sequence object. As an abstract class, only inheriting classes can be created via
@@ -85,7 +102,7 @@ public abstract class Sequence {
    * @author Ben Kohr
    */
   public String getComplementarySequence() throws CorruptedSequenceException {
-    return this.getComplementarySequence(this.getSequence());
+    return nucleotides.complement().toString();
   }
 
   /**
@@ -141,12 +158,7 @@ public abstract class Sequence {
    * @author Ben Kohr
    */
   public String getReversedSequence() {
-
-    StringBuilder builder = new StringBuilder(sequence);
-    builder.reverse();
-    String reversedSequence = builder.toString();
-
-    return reversedSequence;
+    return nucleotides.reverse().toString();
   }
 
 
@@ -161,7 +173,76 @@ public abstract class Sequence {
    */
   public void setSequence(String sequence) {
     sequence = sequence.replaceAll("\\s+", "");
-    this.sequence = sequence.toUpperCase();
+    storeSequence(sequence.toUpperCase());
+  }
+
+  /**
+   * Stores the given nucleotides as they are, without removing whitespace or converting them.
+   * 
+   * @param sequence The nucleotide sequence to store in the object
+   * 
+   * @author Kevin Otto
+   */
+  protected void storeSequence(String sequence) {
+    nucleotides = new PackedNucleotides(sequence);
+    sequenceView = new SoftReference<String>(sequence);
+    digest = null;
+  }
+
+  /**
+   * Replaces the stored nucleotides by already packed ones.
+   * 
+   * @param nucleotides The packed nucleotide sequence to store in the object
+   * 
+   * @author Kevin Otto
+   */
+  protected void setNucleotides(PackedNucleotides nucleotides) {
+    this.nucleotides = nucleotides;
+    sequenceView = new SoftReference<String>(null);
+    digest = null;
+  }
+
+  /**
+   * Returns the SHA-256 digest of the nucleotide sequence as 64 hexadecimal digits. The database
+   * uses it to find equal sequences without comparing the whole sequences. It is computed once.
+   * 
+   * @return the digest of the nucleotides
+   * 
+   * @see #computeDigest(String)
+   * 
+   * @author Kevin Otto
+   */
+  public String getDigest() {
+    if (digest == null) {
+      digest = computeDigest(getSequence());
+    }
+    return digest;
+  }
+
+  /**
+   * Computes the SHA-256 digest of a nucleotide sequence as 64 hexadecimal digits. The sequence has
+   * to be normalized like by {@link #setSequence(String)} (upper case, without whitespace).
+   * 
+   * @param sequence the normalized nucleotide sequence
+   * @return the digest of the sequence
+   * 
+   * @author Kevin Otto
+   */
+  public static String computeDigest(String sequence) {
+    byte[] bytes;
+    try {
+      bytes = MessageDigest.getInstance("SHA-256")
+          .digest(sequence.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
   }
 
   /**
@@ -173,7 +254,7 @@ public abstract class Sequence {
    */
   @Override
   public String toString() {
-    return sequence;
+    return getSequence();
   }
 
 
@@ -185,9 +266,18 @@ public abstract class Sequence {
   }
 
   public String getSequence() {
+    String sequence = sequenceView.get();
+    if (sequence == null) {
+      sequence = nucleotides.toString();
+      sequenceView = new SoftReference<String>(sequence);
+    }
     return sequence;
   }
 
+  public PackedNucleotides getNucleotides() {
+    return nucleotides;
+  }
+
   public void setAddingDate(String addingDate) {
     this.addingDate = addingDate;
   }
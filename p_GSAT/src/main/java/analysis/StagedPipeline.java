@@ -0,0 +1,397 @@
+package analysis;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import io.ProblematicComment;
+import io.SequenceReader;
+
+/**
+ * This class analyses a list of AB1 files in three stages which run at the same time: a reader
+ * thread parses the files, several workers analyse the reads and the calling thread stores the
+ * results in the order of the files. The stages are connected by bounded queues and at most a
+ * fixed number of reads is between reading and storing, so the memory needed doesn't depend on the
+ * number of files. If a stage is slower than the others, the stages before it have to wait.
+ * <p>
+ * The depths of the queues and the waiting times of the stages are measured. A full read queue
+ * and an idle writer mean that the analysis is the bottleneck, an empty read queue and idle
+ * workers mean that reading is the bottleneck, and a blocked reader with a full analysed queue
+ * means that storing is the bottleneck.
+ * </p>
+ *
+ * @category DNA.Utils
+ * @author jannis blueml
+ */
+public class StagedPipeline {
+
+  /**
+   * The default number of reads between reading and storing per analysis worker.
+   */
+  public static final int READS_PER_WORKER = 4;
+
+  /**
+   * Stores the result of one file. It is called by the writer stage in the order of the files.
+   *
+   * @author jannis blueml
+   */
+  public interface ResultWriter {
+
+    /**
+     * Stores the result of one file.
+     *
+     * @param file the AB1 file
+     * @param sequence the analysed sequence. If the file could not be read, it only has the file
+     *        name and the comment {@link ProblematicComment#COULD_NOT_READ_SEQUENCE}.
+     * @param analysisError the error message of the analysis, or null if there was no error
+     * @return an error message if the whole run has to be stopped, otherwise null
+     *
+     * @see AnalysisPipeline#analyseSequence(AnalysedSequence, Gene, AnalysisContext)
+     */
+    String write(File file, AnalysedSequence sequence, String analysisError);
+  }
+
+  /**
+   * A file on its way through the stages.
+   */
+  private static final class Item {
+
+    private final int index;
+
+    private final File file;
+
+    private final AnalysedSequence sequence;
+
+    private String error;
+
+    private Item(int index, File file, AnalysedSequence sequence) {
+      this.index = index;
+      this.file = file;
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * Marks the end of the reads for the workers.
+   */
+  private static final Item END = new Item(-1, null, null);
+
+  /**
+   * Time in milliseconds the writer waits for an analysed read before it checks the other stages.
+   */
+  private static final long CHECK_MILLIS = 200;
+
+  /**
+   * The parameters and the gene index of the run.
+   */
+  private final AnalysisContext context;
+
+  /**
+   * The number of analysis workers.
+   */
+  private final int workers;
+
+  /**
+   * The maximal number of reads between reading and storing.
+   */
+  private final int capacity;
+
+  /**
+   * Receives every read directly after reading (on the reader thread).
+   */
+  private Consumer<AnalysedSequence> readListener = sequence -> {
+  };
+
+  private final QueueStatistics readQueue = new QueueStatistics();
+
+  private final QueueStatistics analysedQueue = new QueueStatistics();
+
+  /**
+   * Time in nanoseconds the reader waited for free space.
+   */
+  private final AtomicLong readerBlocked = new AtomicLong();
+
+  /**
+   * Time in nanoseconds the workers waited for reads (summed over all workers).
+   */
+  private final AtomicLong workersIdle = new AtomicLong();
+
+  /**
+   * Time in nanoseconds the writer waited for analysed reads.
+   */
+  private long writerIdle;
+
+  /**
+   * The error which stopped the reader or a worker, or null. Errors of single reads are stored in
+   * their items, so this is only set if a stage itself failed.
+   */
+  private volatile Throwable stageFailure;
+
+  /**
+   * Creates a pipeline with {@link #READS_PER_WORKER} reads per worker.
+   *
+   * @param context the analysis run which provides the parameters and the gene index
+   * @param workers the number of analysis workers
+   *
+   * @author jannis blueml
+   */
+  public StagedPipeline(AnalysisContext context, int workers) {
+    this(context, workers, workers * READS_PER_WORKER);
+  }
+
+  /**
+   * Creates a pipeline.
+   *
+   * @param context the analysis run which provides the parameters and the gene index
+   * @param workers the number of analysis workers
+   * @param capacity the maximal number of reads between reading and storing
+   *
+   * @author jannis blueml
+   */
+  public StagedPipeline(AnalysisContext context, int workers, int capacity) {
+    this.context = context;
+    this.workers = Math.max(1, workers);
+    this.capacity = Math.max(1, capacity);
+  }
+
+  /**
+   * Reads, analyses and stores the given files. The method returns when all results are stored or
+   * the writer returned an error.
+   *
+   * @param files the AB1 files
+   * @param gene the reference gene, or null if the gene is to be found automatically
+   * @param writer stores the results
+   * @return the error message of the writer, or null if all results were stored
+   *
+   * @throws InterruptedException if the calling thread was interrupted
+   * @throws RuntimeException if the reader or a worker stopped because of an unexpected error (an
+   *         {@link Error} is thrown as it is)
+   *
+   * @author jannis blueml
+   */
+  public String run(List<File> files, Gene gene, ResultWriter writer) throws InterruptedException {
+    stageFailure = null;
+    BlockingQueue<Item> reads = new ArrayBlockingQueue<Item>(capacity + workers);
+    BlockingQueue<Item> analysed = new ArrayBlockingQueue<Item>(capacity);
+    // permits for the reads between reading and storing
+    Semaphore inFlight = new Semaphore(capacity);
+
+    ExecutorService stages = Executors.newFixedThreadPool(workers + 1);
+    try {
+      stages.execute(() -> read(files, reads, inFlight));
+      for (int i = 0; i < workers; i++) {
+        stages.execute(() -> analyse(gene, reads, analysed));
+      }
+      return write(files.size(), analysed, inFlight, writer);
+    } finally {
+      stages.shutdownNow();
+    }
+  }
+
+  /**
+   * The reader stage: parses the files and puts them into the read queue. Files which can't be read
+   * get a placeholder sequence. If the read listener fails, the read is marked as failed.
+   *
+   * @author jannis blueml
+   */
+  private void read(List<File> files, BlockingQueue<Item> reads, Semaphore inFlight) {
+    try {
+      int index = 0;
+      for (File file : files) {
+        long start = System.nanoTime();
+        inFlight.acquire();
+        readerBlocked.addAndGet(System.nanoTime() - start);
+
+        AnalysedSequence sequence;
+        try {
+          sequence = SequenceReader.convertFileIntoSequence(file);
+        } catch (Throwable e) {
+          sequence = new AnalysedSequence();
+          sequence.setFileName(file.getName());
+          sequence.addProblematicComment(ProblematicComment.COULD_NOT_READ_SEQUENCE);
+        }
+        try {
+          readListener.accept(sequence);
+        } catch (Throwable e) {
+          sequence.addProblematicComment(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED);
+        }
+
+        reads.put(new Item(index++, file, sequence));
+        readQueue.add(reads.size());
+      }
+      for (int i = 0; i < workers; i++) {
+        reads.put(END);
+      }
+    } catch (InterruptedException e) {
+      // the run was stopped
+    } catch (Throwable e) {
+      stageFailure = e;
+    }
+  }
+
+  /**
+   * An analysis worker: analyses reads until the end of the reads.
+   *
+   * @author jannis blueml
+   */
+  private void analyse(Gene gene, BlockingQueue<Item> reads, BlockingQueue<Item> analysed) {
+    try {
+      while (true) {
+        long start = System.nanoTime();
+        Item item = reads.take();
+        workersIdle.addAndGet(System.nanoTime() - start);
+        if (item == END) {
+          return;
+        }
+
+        try {
+          item.error = AnalysisPipeline.analyseSequence(item.sequence, gene, context);
+        } catch (Throwable e) {
+          // e.g. a StackOverflowError, the item must still reach the writer
+          item.sequence.addProblematicComment(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED);
+        }
+        analysed.put(item);
+        analysedQueue.add(analysed.size());
+      }
+    } catch (InterruptedException e) {
+      // the run was stopped
+    } catch (Throwable e) {
+      stageFailure = e;
+    }
+  }
+
+  /**
+   * The writer stage: stores the analysed reads in the order of the files. While it waits, it checks
+   * whether another stage failed, because the missing reads would never arrive.
+   *
+   * @author jannis blueml
+   */
+  private String write(int count, BlockingQueue<Item> analysed, Semaphore inFlight,
+      ResultWriter writer) throws InterruptedException {
+    // reads which were analysed before the reads of preceding files
+    HashMap<Integer, Item> waiting = new HashMap<Integer, Item>();
+    for (int next = 0; next < count; next++) {
+      Item item = waiting.remove(next);
+      while (item == null) {
+        long start = System.nanoTime();
+        Item taken = analysed.poll(CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        writerIdle += System.nanoTime() - start;
+        if (taken == null) {
+          checkStages();
+        } else if (taken.index == next) {
+          item = taken;
+        } else {
+          waiting.put(taken.index, taken);
+        }
+      }
+
+      String error = writer.write(item.file, item.sequence, item.error);
+      inFlight.release();
+      if (error != null) {
+        return error;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Throws the error of a failed stage, like the error of a task would be thrown.
+   *
+   * @author jannis blueml
+   */
+  private void checkStages() {
+    Throwable failure = stageFailure;
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException("A stage of the analysis failed.", failure);
+    }
+  }
+
+  /**
+   * Describes the queue depths and waiting times of the last run, e.g. to find its bottleneck.
+   *
+   * @return a line with the statistics of all stages
+   *
+   * @author jannis blueml
+   */
+  public String getReport() {
+    return String.format(Locale.ROOT,
+        "read queue: max %d, average %.1f; analysed queue: max %d, average %.1f; "
+            + "reader blocked %.2f s, workers idle %.2f s, writer idle %.2f s",
+        readQueue.getMax(), readQueue.getAverage(), analysedQueue.getMax(),
+        analysedQueue.getAverage(), readerBlocked.get() / 1e9, workersIdle.get() / 1e9,
+        writerIdle / 1e9);
+  }
+
+  /**
+   * Collects the depths of a queue.
+   *
+   * @author jannis blueml
+   */
+  private static final class QueueStatistics {
+
+    private int max;
+
+    private long sum;
+
+    private long samples;
+
+    private synchronized void add(int depth) {
+      max = Math.max(max, depth);
+      sum += depth;
+      samples++;
+    }
+
+    private synchronized int getMax() {
+      return max;
+    }
+
+    private synchronized double getAverage() {
+      return samples == 0 ? 0 : sum / (double) samples;
+    }
+  }
+
+  // GETTERs and SETTERs:
+
+  public void setReadListener(Consumer<AnalysedSequence> readListener) {
+    this.readListener = readListener;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int getMaxReadQueueDepth() {
+    return readQueue.getMax();
+  }
+
+  public int getMaxAnalysedQueueDepth() {
+    return analysedQueue.getMax();
+  }
+
+  public double getReaderBlockedSeconds() {
+    return readerBlocked.get() / 1e9;
+  }
+
+  public double getWorkersIdleSeconds() {
+    return workersIdle.get() / 1e9;
+  }
+
+  public double getWriterIdleSeconds() {
+    return writerIdle / 1e9;
+  }
+}
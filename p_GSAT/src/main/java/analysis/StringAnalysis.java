@@ -1,7 +1,9 @@
 package analysis;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
 
@@ -18,85 +20,75 @@ import io.ProblematicComment;
  */
 public class StringAnalysis {
 
+  /**
+   * The nucleotides in the order of their two bit codes. A codon is encoded as 16 * code of the
+   * first nucleotide + 4 * code of the second + code of the third nucleotide.
+   */
+  private static final String NUCLEOTIDES = "ACGT";
+
+  /**
+   * Index of the table entry for codons containing letters which are not nucleotides.
+   */
+  private static final int UNKNOWN_CODON = 64;
+
+  /**
+   * The amino acids (short form) of all 64 codons, indexed by the codon code, and X for unknown
+   * codons. Stop codons are marked with #.
+   */
+  private static final char[] AMINO_ACIDS =
+      "KNKNTTTTRSRSIIMIQHQHPPPPRRRRLLLLEDEDAAAAGGGGVVVV#Y#YSSSS#CWCLFLFX".toCharArray();
+
+  /**
+   * The amino acids (not so short but not the full name form) of all 64 codons, indexed by the
+   * codon code, and X for unknown codons.
+   */
+  private static final String[] AMINO_ACID_NAMES = {"Lys", "Asn", "Lys", "Asn", "Thr", "Thr",
+      "Thr", "Thr", "Arg", "Ser", "Arg", "Ser", "Ile", "Ile", "Met", "Ile", "Gln", "His", "Gln",
+      "His", "Pro", "Pro", "Pro", "Pro", "Arg", "Arg", "Arg", "Arg", "Leu", "Leu", "Leu", "Leu",
+      "Glu", "Asp", "Glu", "Asp", "Ala", "Ala", "Ala", "Ala", "Gly", "Gly", "Gly", "Gly", "Val",
+      "Val", "Val", "Val", "STOP", "Tyr", "STOP", "Tyr", "Ser", "Ser", "Ser", "Ser", "STOP", "Cys",
+      "Trp", "Cys", "Leu", "Phe", "Leu", "Phe", "X"};
+
+  /**
+   * Two bit code of every ASCII letter, -1 for letters which are not nucleotides. Lowercase
+   * nucleotides are accepted as well.
+   */
+  private static final int[] NUCLEOTIDE_CODES = new int[128];
+
   /**
    * A Map with all possible DNA codons with the matched AminoAcid in short form and the not so
-   * short but not the full name form.
+   * short but not the full name form. It is derived from the codon table.
    */
   public static final Map<String, Pair<String, String>> AMINO_ACID_LOOKUP;
 
   static {
-    Hashtable<String, Pair<String, String>> tmp = new Hashtable<String, Pair<String, String>>();
+    Arrays.fill(NUCLEOTIDE_CODES, -1);
+    for (int i = 0; i < NUCLEOTIDES.length(); i++) {
+      NUCLEOTIDE_CODES[NUCLEOTIDES.charAt(i)] = i;
+      NUCLEOTIDE_CODES[Character.toLowerCase(NUCLEOTIDES.charAt(i))] = i;
+    }
 
-    tmp.put("TTT", new Pair<String, String>("F", "Phe"));
-    tmp.put("TTC", new Pair<String, String>("F", "Phe"));
-    tmp.put("TTA", new Pair<String, String>("L", "Leu"));
-    tmp.put("TTG", new Pair<String, String>("L", "Leu"));
-    tmp.put("TCT", new Pair<String, String>("S", "Ser"));
-    tmp.put("TCC", new Pair<String, String>("S", "Ser"));
-    tmp.put("TCA", new Pair<String, String>("S", "Ser"));
-    tmp.put("TCG", new Pair<String, String>("S", "Ser"));
-    tmp.put("TAT", new Pair<String, String>("Y", "Tyr"));
-    tmp.put("TAC", new Pair<String, String>("Y", "Tyr"));
-    tmp.put("TAA", new Pair<String, String>("#", "STOP"));
-    tmp.put("TAG", new Pair<String, String>("#", "STOP"));
-    tmp.put("TGT", new Pair<String, String>("C", "Cys"));
-    tmp.put("TGC", new Pair<String, String>("C", "Cys"));
-    tmp.put("TGA", new Pair<String, String>("#", "STOP"));
-    tmp.put("TGG", new Pair<String, String>("W", "Trp"));
-
-    tmp.put("CTT", new Pair<String, String>("L", "Leu"));
-    tmp.put("CTC", new Pair<String, String>("L", "Leu"));
-    tmp.put("CTA", new Pair<String, String>("L", "Leu"));
-    tmp.put("CTG", new Pair<String, String>("L", "Leu"));
-    tmp.put("CCT", new Pair<String, String>("P", "Pro"));
-    tmp.put("CCC", new Pair<String, String>("P", "Pro"));
-    tmp.put("CCA", new Pair<String, String>("P", "Pro"));
-    tmp.put("CCG", new Pair<String, String>("P", "Pro"));
-    tmp.put("CAT", new Pair<String, String>("H", "His"));
-    tmp.put("CAC", new Pair<String, String>("H", "His"));
-    tmp.put("CAA", new Pair<String, String>("Q", "Gln"));
-    tmp.put("CAG", new Pair<String, String>("Q", "Gln"));
-    tmp.put("CGT", new Pair<String, String>("R", "Arg"));
-    tmp.put("CGC", new Pair<String, String>("R", "Arg"));
-    tmp.put("CGA", new Pair<String, String>("R", "Arg"));
-    tmp.put("CGG", new Pair<String, String>("R", "Arg"));
-
-    tmp.put("ATT", new Pair<String, String>("I", "Ile"));
-    tmp.put("ATC", new Pair<String, String>("I", "Ile"));
-    tmp.put("ATA", new Pair<String, String>("I", "Ile"));
-    tmp.put("ATG", new Pair<String, String>("M", "Met"));
-    tmp.put("ACT", new Pair<String, String>("T", "Thr"));
-    tmp.put("ACC", new Pair<String, String>("T", "Thr"));
-    tmp.put("ACA", new Pair<String, String>("T", "Thr"));
-    tmp.put("ACG", new Pair<String, String>("T", "Thr"));
-    tmp.put("AAT", new Pair<String, String>("N", "Asn"));
-    tmp.put("AAC", new Pair<String, String>("N", "Asn"));
-    tmp.put("AAA", new Pair<String, String>("K", "Lys"));
-    tmp.put("AAG", new Pair<String, String>("K", "Lys"));
-    tmp.put("AGT", new Pair<String, String>("S", "Ser"));
-    tmp.put("AGC", new Pair<String, String>("S", "Ser"));
-    tmp.put("AGA", new Pair<String, String>("R", "Arg"));
-    tmp.put("AGG", new Pair<String, String>("R", "Arg"));
-
-    tmp.put("GTT", new Pair<String, String>("V", "Val"));
-    tmp.put("GTC", new Pair<String, String>("V", "Val"));
-    tmp.put("GTA", new Pair<String, String>("V", "Val"));
-    tmp.put("GTG", new Pair<String, String>("V", "Val"));
-    tmp.put("GCT", new Pair<String, String>("A", "Ala"));
-    tmp.put("GCC", new Pair<String, String>("A", "Ala"));
-    tmp.put("GCA", new Pair<String, String>("A", "Ala"));
-    tmp.put("GCG", new Pair<String, String>("A", "Ala"));
-    tmp.put("GAT", new Pair<String, String>("D", "Asp"));
-    tmp.put("GAC", new Pair<String, String>("D", "Asp"));
-    tmp.put("GAA", new Pair<String, String>("E", "Glu"));
-    tmp.put("GAG", new Pair<String, String>("E", "Glu"));
-    tmp.put("GGT", new Pair<String, String>("G", "Gly"));
-    tmp.put("GGC", new Pair<String, String>("G", "Gly"));
-    tmp.put("GGA", new Pair<String, String>("G", "Gly"));
-    tmp.put("GGG", new Pair<String, String>("G", "Gly"));
+    Hashtable<String, Pair<String, String>> tmp = new Hashtable<String, Pair<String, String>>();
+    for (int codon = 0; codon < UNKNOWN_CODON; codon++) {
+      String nucleotides = "" + NUCLEOTIDES.charAt(codon >>> 4)
+          + NUCLEOTIDES.charAt((codon >>> 2) & 3) + NUCLEOTIDES.charAt(codon & 3);
+      tmp.put(nucleotides,
+          new Pair<String, String>(AMINO_ACIDS[codon] + "", AMINO_ACID_NAMES[codon]));
+    }
     AMINO_ACID_LOOKUP = Collections.unmodifiableMap(tmp);
   }
 
+  /**
+   * Number of matrix cells stored in one block (long) of the bit-parallel Levenshtein calculation.
+   */
+  private static final int WORD_SIZE = 64;
+
+  /**
+   * The banded Levenshtein calculation is used as long as the band has less cells per column than
+   * this value times the blocks of the bit-parallel calculation.
+   */
+  private static final int BAND_CELLS_PER_BLOCK = 8;
+
   /**
    * Appends a string to the given length by adding space characters at the end if the String is
    * already long e or longe nothing is done.
@@ -176,7 +168,7 @@ public class StringAnalysis {
    * best similarity.
    * 
    * @see #checkSimilarity(Sequence, Sequence)
-   * @see #checkSimilarity(String, String)
+   * @see #checkSimilarity(String, String, double)
    * 
    * @param toAnalyse the sequence to check
    * @throws CorruptedSequenceException if complementary cant be build
@@ -187,9 +179,9 @@ public class StringAnalysis {
       throws CorruptedSequenceException {
     // initialize with standard sequence
     double bestSimilarity = checkSimilarity(toAnalyse, toAnalyse.getReferencedGene());
-    // checks complementary sequence
+    // checks complementary sequence (only similarities better than the best one are of interest)
     double toTest = checkSimilarity(toAnalyse.getComplementarySequence(),
-        toAnalyse.getReferencedGene().getSequence());
+        toAnalyse.getReferencedGene().getSequence(), bestSimilarity);
     if (toTest > bestSimilarity) {
       System.out.println("complementary the sequence");
       toAnalyse.setSequence(toAnalyse.getComplementarySequence());
@@ -197,7 +189,7 @@ public class StringAnalysis {
     }
     // checks reverse sequence
     toTest = checkSimilarity(toAnalyse.getReversedSequence(),
-        toAnalyse.getReferencedGene().getSequence());
+        toAnalyse.getReferencedGene().getSequence(), bestSimilarity);
     if (toTest > bestSimilarity) {
       System.out.println("reverse the sequence");
       toAnalyse.setSequence(toAnalyse.getReversedSequence());
@@ -206,7 +198,7 @@ public class StringAnalysis {
     }
     // checks complementary and reversed sequence
     toTest = checkSimilarity(toAnalyse.getComplementarySequence(toAnalyse.getReversedSequence()),
-        toAnalyse.getReferencedGene().getSequence());
+        toAnalyse.getReferencedGene().getSequence(), bestSimilarity);
     if (toTest > bestSimilarity) {
       System.out.println("reverse + complementary the sequence");
       toAnalyse.setSequence(toAnalyse.getComplementarySequence(toAnalyse.getReversedSequence()));
@@ -244,7 +236,7 @@ public class StringAnalysis {
    * @author Kevin
    */
   public static double checkSimilarity(Sequence first, Sequence second) {
-    return checkSimilarity(first.sequence, second.sequence);
+    return checkSimilarity(first.getSequence(), second.getSequence());
   }
 
   /**
@@ -262,6 +254,54 @@ public class StringAnalysis {
     return Math.max(0, 100 - (levenshteinIndex / (avgLength / 100)));
   }
 
+  /**
+   * Compares two sequences like {@link #checkSimilarity(Sequence, Sequence)}, but stops early if
+   * the similarity can not be greater than the given lower bound.
+   *
+   * @param first The first sequence
+   * @param second The second sequence
+   * @param lowerBound the similarity the result has to exceed to be of interest
+   *
+   * @return Similarity measure, or 0 if it is certainly not greater than lowerBound
+   *
+   * @see #checkSimilarity(String, String, double)
+   * @author Kevin Otto
+   */
+  public static double checkSimilarity(Sequence first, Sequence second, double lowerBound) {
+    return checkSimilarity(first.getSequence(), second.getSequence(), lowerBound);
+  }
+
+  /**
+   * Compares two Strings like {@link #checkSimilarity(String, String)}, but stops early if the
+   * similarity can not be greater than the given lower bound. The lower bound is converted into a
+   * maximal Levenshtein index, so only a band of the Levenshtein matrix has to be calculated. If
+   * the similarity can exceed the bound, the result is the same as without a bound.
+   *
+   * @param first The first String
+   * @param second The second String
+   * @param lowerBound the similarity the result has to exceed to be of interest
+   *
+   * @return Similarity measure, or 0 if it is certainly not greater than lowerBound
+   *
+   * @see #getLevenshteinIndex(String, String, int)
+   * @author Kevin Otto
+   */
+  public static double checkSimilarity(String first, String second, double lowerBound) {
+    double avgLength = (first.length() + second.length()) / 2.0;
+
+    // similarity > lowerBound <=> levenshteinIndex < avgLength * (100 - lowerBound) / 100
+    // (one more is allowed to be safe against rounding errors)
+    double distanceLimit = avgLength * (100 - Math.max(0, lowerBound)) / 100;
+    int maxDistance = (int) Math.min(Math.floor(distanceLimit) + 1,
+        Math.max(first.length(), second.length()));
+
+    int levenshteinIndex = getLevenshteinIndex(first, second, maxDistance);
+    if (levenshteinIndex > maxDistance) {
+      return 0;
+    }
+    return Math.max(0, 100 - (levenshteinIndex / (avgLength / 100)));
+  }
+
   /**
    * Changes the sequence representation from nucleotides to aminoacid (shortform).
    * 
@@ -283,50 +323,108 @@ public class StringAnalysis {
    * @author jannis blueml
    */
   public static String codonsToAminoAcids(String nucleotides, boolean oneChar) {
-    nucleotides = nucleotides.toUpperCase();
-
     // check for empty parameter
     if (nucleotides.isEmpty()) {
       return "empty nucleotides";
     }
 
-    StringBuilder builder = new StringBuilder();
-
     // checks if the nucleotides is % 3 = 0 because if not, there will be an
     // error at the end
-    if (nucleotides.length() % 3 == 0) {
-      // changes the nucleotides to aminoacids in shortform by using the
-      // Map
-      for (int i = 0; i < nucleotides.length(); i = i + 3) {
-        String codon = nucleotides.substring(i, i + 3);
-        String aminoacid = "";
-        if (oneChar) {
-          if (AMINO_ACID_LOOKUP.get(codon) != null) {
-            aminoacid = AMINO_ACID_LOOKUP.get(codon).first;
-          } else {
-            aminoacid = null;
-          }
-        } else {
-          if (AMINO_ACID_LOOKUP.get(codon) != null) {
-            aminoacid = AMINO_ACID_LOOKUP.get(codon).second;
-          } else {
-            aminoacid = null;
-          }
-        }
-
+    if (nucleotides.length() % 3 != 0) {
+      return "nucleotides not modulo 3, so not convertable";
+    }
 
-        if (aminoacid != null) {
-          builder.append(aminoacid);
-        } else {
-          builder.append("X");
-        }
+    // changes the nucleotides to aminoacids by indexing the codon table
+    if (oneChar) {
+      char[] aminoAcids = new char[nucleotides.length() / 3];
+      for (int i = 0; i < aminoAcids.length; i++) {
+        aminoAcids[i] = AMINO_ACIDS[codonCode(nucleotides, i * 3)];
       }
-    } else {
-      return "nucleotides not modulo 3, so not convertable";
+      return new String(aminoAcids);
+    }
+    StringBuilder builder = new StringBuilder(nucleotides.length() + 1);
+    for (int i = 0; i < nucleotides.length(); i = i + 3) {
+      builder.append(AMINO_ACID_NAMES[codonCode(nucleotides, i)]);
     }
     return builder.toString();
   }
 
+  /**
+   * Translates all three reading frames of the given nucleotides in one pass. Frame f starts at
+   * position f, nucleotides which do not form a complete codon at the end are ignored.
+   * 
+   * @param nucleotides the sequence presented by nucleotides
+   * @return the amino acids (short form) of the reading frames starting at position 0, 1 and 2
+   * 
+   * @author jannis blueml
+   */
+  public static String[] translateReadingFrames(String nucleotides) {
+    char[][] frames = new char[3][];
+    for (int frame = 0; frame < 3; frame++) {
+      frames[frame] = new char[Math.max(0, (nucleotides.length() - frame) / 3)];
+    }
+
+    // the last three nucleotides are kept as a rolling codon code
+    int codon = 0;
+    int lastUnknown = -3;
+    for (int i = 0; i < nucleotides.length(); i++) {
+      char letter = nucleotides.charAt(i);
+      int code = letter < 128 ? NUCLEOTIDE_CODES[letter] : -1;
+      if (code < 0) {
+        lastUnknown = i;
+        code = 0;
+      }
+      codon = ((codon << 2) | code) & 63;
+      if (i >= 2) {
+        int frame = (i - 2) % 3;
+        frames[frame][(i - 2) / 3] = AMINO_ACIDS[i - lastUnknown < 3 ? UNKNOWN_CODON : codon];
+      }
+    }
+
+    String[] result = new String[3];
+    for (int frame = 0; frame < 3; frame++) {
+      result[frame] = new String(frames[frame]);
+    }
+    return result;
+  }
+
+  /**
+   * Translates the codon at the given position of a nucleotide sequence.
+   * 
+   * @param nucleotides the sequence presented by nucleotides
+   * @param position the position of the first nucleotide of the codon
+   * @param oneChar true for the short form, false for the three letter form
+   * @return the amino acid of the codon, X if the codon contains unknown letters
+   * 
+   * @author jannis blueml
+   */
+  public static String codonToAminoAcid(String nucleotides, int position, boolean oneChar) {
+    int codon = codonCode(nucleotides, position);
+    return oneChar ? AMINO_ACIDS[codon] + "" : AMINO_ACID_NAMES[codon];
+  }
+
+  /**
+   * Calculates the index of the codon at the given position in the codon table.
+   * 
+   * @param nucleotides the sequence presented by nucleotides
+   * @param position the position of the first nucleotide of the codon
+   * @return the codon code, or UNKNOWN_CODON if it contains a letter which is not a nucleotide
+   * 
+   * @author jannis blueml
+   */
+  private static int codonCode(String nucleotides, int position) {
+    int codon = 0;
+    for (int i = position; i < position + 3; i++) {
+      char letter = nucleotides.charAt(i);
+      int code = letter < 128 ? NUCLEOTIDE_CODES[letter] : -1;
+      if (code < 0) {
+        return UNKNOWN_CODON;
+      }
+      codon = (codon << 2) | code;
+    }
+    return codon;
+  }
+
   /**
    * This method finds the position of the HIS-Tags in the gene.
    * 
@@ -363,9 +461,27 @@ public class StringAnalysis {
    * @author lovis heindrich
    */
   public static Gene findRightGene(AnalysedSequence toAnalyze) {
+    if (GeneHandler.getGeneIndex() != null) {
+      return findRightGene(toAnalyze, GeneHandler.getGeneIndex());
+    }
     return findRightGene(toAnalyze, GeneHandler.getGeneList());
   }
 
+  /**
+   * Finds the gene that fits best to a given sequence. Only the genes which share the most k-mers
+   * with the sequence are compared exactly, all other genes of the index are pruned.
+   *
+   * @param toAnalyze The sequence, we compare with the indexed genes
+   * @param index An index over all genes, we want to compare with the sequence
+   * @return the gene, that has the best similarity among the candidates of the index
+   *
+   * @see GeneIndex#getCandidates(String)
+   * @author jannis blueml
+   */
+  public static Gene findRightGene(AnalysedSequence toAnalyze, GeneIndex index) {
+    return findRightGene(toAnalyze, index.getCandidates(toAnalyze.getSequence()));
+  }
+
   /**
    * Finds the gene that fits best to a given sequence by comparing it to all given genes.
    * 
@@ -379,7 +495,8 @@ public class StringAnalysis {
     double bestSimilarity = 0;
 
     for (Gene gene : listOfGenes) {
-      double similarity = StringAnalysis.checkSimilarity(toAnalyze, gene);
+      // genes that can't beat the best gene so far are rejected early
+      double similarity = StringAnalysis.checkSimilarity(toAnalyze, gene, bestSimilarity);
       if (similarity > bestSimilarity) {
         bestSimilarity = similarity;
         bestgene = gene;
@@ -399,11 +516,9 @@ public class StringAnalysis {
    * @author jannis blueml
    */
   public static int findStopcodonPosition(AnalysedSequence toAnalyze) {
-    for (int i = 0; i < toAnalyze.getSequence().length() - 3; i = i + 3) {
-      String aminoAcid = toAnalyze.getSequence().substring(i, i + 3);
-
-      if (AMINO_ACID_LOOKUP.get(aminoAcid) != null && AMINO_ACID_LOOKUP.get(aminoAcid).first != null
-          && AMINO_ACID_LOOKUP.get(aminoAcid).first.equals("#")) {
+    String sequence = toAnalyze.getSequence();
+    for (int i = 0; i < sequence.length() - 3; i = i + 3) {
+      if (AMINO_ACIDS[codonCode(sequence, i)] == '#') {
         return i / 3;
       }
     }
@@ -424,21 +539,223 @@ public class StringAnalysis {
   }
 
   /**
-   * calculates Levensthein Matrix of first and second using calculateLevenshteinMatrix(first,
-   * second) and returns the Levenshtein Index. The Index represents the maximal distance between
-   * the two Strings wich were used to generate the matrix
+   * calculates the Levenshtein Index of first and second. The Index represents the maximal distance
+   * between the two Strings. The result is the same as the last cell of
+   * calculateLevenshteinMatrix(first, second), but no matrix is created.
    * 
    * @param first The first String
    * @param second The second String
    * 
-   * @return the levenstein Index of the given Matrix
+   * @return the levenstein Index of the given Strings
+   * @see #calculateLevenshteinIndexBitParallel(String, String)
    * @see #getLevenshteinIndex(int[][])
    * @author Kevin
    */
   public static int getLevenshteinIndex(String first, String second) {
-    // create levenstein matrix:
-    int[][] matrix = calculateLevenshteinMatrix(first, second);
-    return getLevenshteinIndex(matrix);
+    return calculateLevenshteinIndexBitParallel(first, second);
+  }
+
+  /**
+   * Calculates the Levenshtein index of two Strings with the bit-parallel algorithm of Myers (1999)
+   * in the block based form of Hyyroe. The columns of the Levenshtein matrix are stored as bit
+   * vectors of vertical differences, so 64 cells are calculated with a few operations on one long.
+   * Strings longer than 64 characters are split into several blocks. Every character is supported,
+   * but the lookup is fastest for the nucleotides A, C, G, T and N.
+   *
+   * @param first The first String
+   * @param second The second String
+   *
+   * @return the levenstein Index of the given Strings
+   * @author Kevin Otto
+   */
+  public static int calculateLevenshteinIndexBitParallel(String first, String second) {
+
+    // the shorter String is encoded into the bit vectors
+    String pattern = first;
+    String text = second;
+    if (first.length() > second.length()) {
+      pattern = second;
+      text = first;
+    }
+
+    int patternLength = pattern.length();
+    int textLength = text.length();
+    if (patternLength == 0) {
+      return textLength;
+    }
+
+    int blocks = (patternLength + WORD_SIZE - 1) / WORD_SIZE;
+    // the bit of the last pattern character in the last block
+    long lastRowBit = 1L << ((patternLength - 1) % WORD_SIZE);
+
+    // map every character of the pattern to an index of the match vectors
+    int[] asciiIndex = new int[128];
+    Arrays.fill(asciiIndex, -1);
+    HashMap<Character, Integer> otherIndex = new HashMap<Character, Integer>();
+    int symbols = 0;
+    int[] patternSymbols = new int[patternLength];
+    for (int i = 0; i < patternLength; i++) {
+      char c = pattern.charAt(i);
+      int index = symbolIndex(c, asciiIndex, otherIndex);
+      if (index < 0) {
+        index = symbols++;
+        if (c < 128) {
+          asciiIndex[c] = index;
+        } else {
+          otherIndex.put(c, index);
+        }
+      }
+      patternSymbols[i] = index;
+    }
+
+    // match vectors: bit i of a block is set if the pattern has the symbol at this position
+    long[][] matchVectors = new long[symbols][blocks];
+    for (int i = 0; i < patternLength; i++) {
+      matchVectors[patternSymbols[i]][i / WORD_SIZE] |= 1L << (i % WORD_SIZE);
+    }
+
+    // vertical positive and negative differences, first column is 0, 1, 2, ...
+    long[] positiveVertical = new long[blocks];
+    long[] negativeVertical = new long[blocks];
+    Arrays.fill(positiveVertical, -1L);
+
+    int score = patternLength;
+    long[] noMatch = new long[blocks];
+
+    for (int j = 0; j < textLength; j++) {
+      int index = symbolIndex(text.charAt(j), asciiIndex, otherIndex);
+      long[] matches = index < 0 ? noMatch : matchVectors[index];
+
+      // first row is 0, 1, 2, ... so the difference entering the first block is always +1
+      int horizontalIn = 1;
+      for (int block = 0; block < blocks; block++) {
+        long positive = positiveVertical[block];
+        long negative = negativeVertical[block];
+        long match = matches[block];
+        long negativeIn = horizontalIn < 0 ? 1L : 0L;
+
+        long verticalChange = match | negative;
+        long matchWithIn = match | negativeIn;
+        long horizontalChange = (((matchWithIn & positive) + positive) ^ positive) | matchWithIn;
+        long positiveHorizontal = negative | ~(horizontalChange | positive);
+        long negativeHorizontal = positive & horizontalChange;
+
+        // difference leaving the block at its lowest row
+        long outBit = block == blocks - 1 ? lastRowBit : Long.MIN_VALUE;
+        int horizontalOut = 0;
+        if ((positiveHorizontal & outBit) != 0) {
+          horizontalOut = 1;
+        } else if ((negativeHorizontal & outBit) != 0) {
+          horizontalOut = -1;
+        }
+
+        positiveHorizontal = positiveHorizontal << 1;
+        negativeHorizontal = (negativeHorizontal << 1) | negativeIn;
+        if (horizontalIn > 0) {
+          positiveHorizontal |= 1L;
+        }
+
+        positiveVertical[block] = negativeHorizontal | ~(verticalChange | positiveHorizontal);
+        negativeVertical[block] = positiveHorizontal & verticalChange;
+        horizontalIn = horizontalOut;
+      }
+      // the difference leaving the last block changes the value of the last row
+      score += horizontalIn;
+    }
+    return score;
+  }
+
+  /**
+   * Looks up the index of a character for {@link #calculateLevenshteinIndexBitParallel}.
+   *
+   * @return the index, or -1 if the character is not known
+   * @author Kevin Otto
+   */
+  private static int symbolIndex(char c, int[] asciiIndex, HashMap<Character, Integer> otherIndex) {
+    if (c < 128) {
+      return asciiIndex[c];
+    }
+    Integer index = otherIndex.get(c);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Calculates the Levenshtein index of first and second, if it is not bigger than maxDistance. Only
+   * the diagonal band of the Levenshtein matrix with a width of 2 * maxDistance + 1 is calculated
+   * (Ukkonen), and only two rows of it are kept in memory. The calculation stops as soon as every
+   * cell of a row is bigger than maxDistance, because the index can not get smaller afterwards. If
+   * the band is wide, the bit-parallel calculation of the whole matrix is used instead.
+   *
+   * @param first The first String
+   * @param second The second String
+   * @param maxDistance The biggest Levenshtein index that is of interest
+   *
+   * @return the levenstein Index, or maxDistance + 1 if the index is bigger than maxDistance
+   * @see #getLevenshteinIndex(String, String)
+   * @author Kevin Otto
+   */
+  public static int getLevenshteinIndex(String first, String second, int maxDistance) {
+    int firstLength = first.length();
+    int secondLength = second.length();
+
+    // value for all cells outside of the band (and all values that are to big)
+    int outOfBand = maxDistance + 1;
+
+    // the length difference alone is already to big
+    if (maxDistance < 0 || Math.abs(firstLength - secondLength) > maxDistance) {
+      return outOfBand;
+    }
+
+    // for wide bands the bit-parallel calculation of the whole matrix is faster
+    int blocks = (Math.min(firstLength, secondLength) + WORD_SIZE - 1) / WORD_SIZE;
+    if (2 * maxDistance + 1 > BAND_CELLS_PER_BLOCK * blocks) {
+      return Math.min(calculateLevenshteinIndexBitParallel(first, second), outOfBand);
+    }
+
+    int[] previousRow = new int[secondLength + 1];
+    int[] currentRow = new int[secondLength + 1];
+
+    // fill first line from 0 to |second| (inside the band)
+    for (int j = 0; j <= secondLength; j++) {
+      previousRow[j] = Math.min(j, outOfBand);
+    }
+
+    for (int i = 1; i <= firstLength; i++) {
+      // band borders of this row
+      int begin = Math.max(1, i - maxDistance);
+      int end = Math.min(secondLength, i + maxDistance);
+
+      currentRow[0] = Math.min(i, outOfBand);
+      // the cell left of the band is read by the first cell of the band
+      if (begin > 1) {
+        currentRow[begin - 1] = outOfBand;
+      }
+      int rowMinimum = currentRow[begin - 1];
+
+      for (int j = begin; j <= end; j++) {
+        // if characters are equal cost for replacement = 0
+        int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+        // deletion of char, insertion of char, change of char:
+        int value = Math.min(Math.min(previousRow[j] + 1, currentRow[j - 1] + 1),
+            previousRow[j - 1] + cost);
+        currentRow[j] = Math.min(value, outOfBand);
+        rowMinimum = Math.min(rowMinimum, currentRow[j]);
+      }
+      // the cell right of the band is read by the next row
+      if (end < secondLength) {
+        currentRow[end + 1] = outOfBand;
+      }
+
+      // every path through the matrix crosses this row, so the index can't get smaller
+      if (rowMinimum > maxDistance) {
+        return outOfBand;
+      }
+
+      int[] tmp = previousRow;
+      previousRow = currentRow;
+      currentRow = tmp;
+    }
+    return previousRow[secondLength];
   }
 
   /**
@@ -471,16 +788,15 @@ public class StringAnalysis {
     findOffset(toAlign);
 
     // define new sequence
-    String newSequence = toAlign.sequence;
-
-    newSequence = newSequence.substring(Math.max(toAlign.getOffset(), 0));
+    PackedNucleotides newSequence =
+        toAlign.nucleotides.substring(Math.max(toAlign.getOffset(), 0), toAlign.length());
     // alsow cut quality array to fit newSequence
     toAlign.trimQualityArray(Math.max(toAlign.getOffset(), 0), toAlign.length());
 
     // set vector and correct offset
     toAlign.setOffset(Math.min(toAlign.getOffset(), 0));
     toAlign.setOffset(-toAlign.getOffset());
-    toAlign.setSequence(newSequence);
+    toAlign.setNucleotides(newSequence);
   }
 
   /**
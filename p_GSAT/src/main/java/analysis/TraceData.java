@@ -0,0 +1,256 @@
+package analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+
+import io.AbifReader;
+
+/**
+ * This class holds the four trace channels and the base calls of a read. The traces are much larger
+ * than the nucleotides and qualities, but only needed to search plasmid mixes and to show the
+ * chromatogram. If the AB1 file of the traces is known, they are only softly referenced, so the
+ * garbage collector may discard them when memory gets low. They are read again from the file when
+ * they are accessed the next time.
+ *
+ * @category object
+ * @author Kevin Otto
+ */
+public final class TraceData {
+
+  /**
+   * Index of channel A in the arrays of this class.
+   */
+  public static final int CHANNEL_A = 0;
+
+  /**
+   * Index of channel C in the arrays of this class.
+   */
+  public static final int CHANNEL_C = 1;
+
+  /**
+   * Index of channel G in the arrays of this class.
+   */
+  public static final int CHANNEL_G = 2;
+
+  /**
+   * Index of channel T in the arrays of this class.
+   */
+  public static final int CHANNEL_T = 3;
+
+  /**
+   * Index of the base calls in the arrays of this class.
+   */
+  public static final int BASE_CALLS = 4;
+
+  /**
+   * Traces without any data.
+   */
+  public static final TraceData NONE = new TraceData(null, null, null, null, null);
+
+  /**
+   * The AB1 file to read the traces from, or null if the traces were not read from a file.
+   */
+  private final File source;
+
+  /**
+   * The traces if there is no source file, so they can't be discarded.
+   */
+  private final Traces data;
+
+  /**
+   * The traces read from the source file, they may be discarded by the garbage collector.
+   */
+  private SoftReference<Traces> cache;
+
+  /**
+   * The error of the last attempt to read the source file again, or null if it didn't fail. The
+   * file is not read again after a failure.
+   */
+  private IOException failure;
+
+  /**
+   * Creates traces which are held in memory all the time.
+   *
+   * @param channelA the trace of channel A
+   * @param channelC the trace of channel C
+   * @param channelG the trace of channel G
+   * @param channelT the trace of channel T
+   * @param baseCalls the trace positions of the called bases
+   *
+   * @author Kevin Otto
+   */
+  public TraceData(int[] channelA, int[] channelC, int[] channelG, int[] channelT,
+      int[] baseCalls) {
+    source = null;
+    data = new Traces(new int[][] {channelA, channelC, channelG, channelT, baseCalls});
+  }
+
+  /**
+   * Creates traces which were read from the given file. They are only softly referenced and read
+   * again from the file if they were discarded.
+   *
+   * @param source the AB1 file the traces were read from
+   * @param channelA the trace of channel A
+   * @param channelC the trace of channel C
+   * @param channelG the trace of channel G
+   * @param channelT the trace of channel T
+   * @param baseCalls the trace positions of the called bases
+   *
+   * @author Kevin Otto
+   */
+  public TraceData(File source, int[] channelA, int[] channelC, int[] channelG, int[] channelT,
+      int[] baseCalls) {
+    this.source = source;
+    data = null;
+    cache = new SoftReference<Traces>(
+        new Traces(new int[][] {channelA, channelC, channelG, channelT, baseCalls}));
+  }
+
+  /**
+   * Creates traces which were read from the given file like
+   * {@link #TraceData(File, int[], int[], int[], int[], int[])}, but takes the traces as 16 bit
+   * values like they are stored in AB1 files. The arrays are stored without converting them.
+   *
+   * @param source the AB1 file the traces were read from
+   * @param channelA the trace of channel A
+   * @param channelC the trace of channel C
+   * @param channelG the trace of channel G
+   * @param channelT the trace of channel T
+   * @param baseCalls the trace positions of the called bases
+   *
+   * @author Kevin Otto
+   */
+  public TraceData(File source, short[] channelA, short[] channelC, short[] channelG,
+      short[] channelT, short[] baseCalls) {
+    this.source = source;
+    data = null;
+    cache = new SoftReference<Traces>(
+        new Traces(new short[][] {channelA, channelC, channelG, channelT, baseCalls}));
+  }
+
+  /**
+   * Creates traces of the given file, which are read when they are accessed for the first time.
+   *
+   * @param source the AB1 file to read the traces from
+   *
+   * @author Kevin Otto
+   */
+  public TraceData(File source) {
+    this.source = source;
+    data = null;
+    cache = new SoftReference<Traces>(null);
+  }
+
+  /**
+   * Returns the traces, they are read from the source file if necessary.
+   *
+   * @return the traces
+   *
+   * @throws UncheckedIOException if the traces were discarded and the file can't be read anymore
+   *
+   * @author Kevin Otto
+   */
+  private synchronized Traces load() {
+    if (data != null) {
+      return data;
+    }
+    Traces traces = cache.get();
+    if (traces == null) {
+      if (failure != null) {
+        throw new UncheckedIOException("The traces of " + source + " can't be read.", failure);
+      }
+      try {
+        // the mapped reader only decodes the needed entries of the file
+        AbifReader reader = new AbifReader(source);
+        traces = new Traces(new int[][] {reader.getChannelA(), reader.getChannelC(),
+            reader.getChannelG(), reader.getChannelT(), reader.getBaseCalls()});
+        cache = new SoftReference<Traces>(traces);
+      } catch (IOException e) {
+        failure = e;
+        throw new UncheckedIOException("The traces of " + source + " can't be read.", e);
+      }
+    }
+    return traces;
+  }
+
+  /**
+   * Returns a copy of these traces where one trace is replaced. The copy is held in memory all the
+   * time.
+   *
+   * @param index the index of the replaced trace, e.g. {@link #CHANNEL_A}
+   * @param trace the new trace
+   * @return the changed traces
+   *
+   * @throws UncheckedIOException if the traces can't be read from the source file
+   *
+   * @author Kevin Otto
+   */
+  public TraceData with(int index, int[] trace) {
+    Traces traces = load();
+    int[][] values = new int[5][];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i == index ? trace : traces.get(i);
+    }
+    return new TraceData(values[CHANNEL_A], values[CHANNEL_C], values[CHANNEL_G],
+        values[CHANNEL_T], values[BASE_CALLS]);
+  }
+
+  /**
+   * Returns one of the traces. The trace is converted from the compact storage, so every call
+   * allocates a new array and changes to it don't change these traces. Callers should keep the
+   * returned array instead of calling this method per value.
+   *
+   * @param index the index of the trace, e.g. {@link #CHANNEL_A}
+   * @return the trace
+   *
+   * @throws UncheckedIOException if the traces can't be read from the source file
+   *
+   * @author Kevin Otto
+   */
+  public int[] get(int index) {
+    return load().get(index);
+  }
+
+  /**
+   * Storage of the five traces. Trace amplitudes and positions fit into 16 bits, so they are stored
+   * as shorts. Traces with larger values are stored as they are.
+   *
+   * @author Kevin Otto
+   */
+  private static final class Traces {
+
+    private final short[][] compact = new short[5][];
+
+    private final int[][] wide = new int[5][];
+
+    private Traces(int[][] traces) {
+      for (int i = 0; i < traces.length; i++) {
+        compact[i] = CompactArrays.toShorts(traces[i]);
+        if (compact[i] == null) {
+          wide[i] = traces[i];
+        }
+      }
+    }
+
+    private Traces(short[][] traces) {
+      for (int i = 0; i < traces.length; i++) {
+        compact[i] = traces[i];
+      }
+    }
+
+    private int[] get(int index) {
+      if (compact[index] != null) {
+        return CompactArrays.fromShorts(compact[index]);
+      }
+      return wide[index];
+    }
+  }
+
+  // GETTERs and SETTERs:
+
+  public File getSource() {
+    return source;
+  }
+}
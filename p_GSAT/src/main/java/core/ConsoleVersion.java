@@ -3,27 +3,33 @@ package core;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
 
 import org.biojava.bio.symbol.IllegalSymbolException;
 
 import analysis.AnalysedSequence;
+import analysis.AnalysisContext;
+import analysis.AnalysisPipeline;
 import analysis.Gene;
-import analysis.MutationAnalysis;
 import analysis.Pair;
 import analysis.QualityAnalysis;
-import analysis.StringAnalysis;
+import analysis.StagedPipeline;
 import exceptions.ConfigNotFoundException;
 import exceptions.CorruptedSequenceException;
 import exceptions.DuplicateGeneException;
 import exceptions.FileReadingException;
 import exceptions.MissingPathException;
-import exceptions.UndefinedTypeOfMutationException;
 import exceptions.UnknownConfigFieldException;
 import io.ConfigHandler;
 import io.ConsoleIO;
 import io.FileSaver;
 import io.GeneHandler;
+import io.ProblematicComment;
 import io.SequenceReader;
 
 /**
@@ -36,6 +42,12 @@ import io.SequenceReader;
  * This program version can be started with the console by adding the parameter -c.
  * <p>
  * 
+ * </p>
+ * The batch mode doesn't ask anything, all settings are given as arguments (see
+ * {@link #startBatchVersion(String[])}). It is meant to be run by scripts, e.g. on the folders of a
+ * sequencing facility.
+ * <p>
+ * 
  * 
  * </p>
  * 
@@ -51,6 +63,34 @@ public class ConsoleVersion {
    */
   private static boolean geneRecognition = false;
 
+  /**
+   * Exit code of the batch mode if all files were analysed and stored.
+   */
+  public static final int BATCH_SUCCESS = 0;
+
+  /**
+   * Exit code of the batch mode if at least one file could not be read or stored.
+   */
+  public static final int BATCH_FAILURES = 1;
+
+  /**
+   * Exit code of the batch mode if the arguments are invalid. No file is analysed in this case.
+   */
+  public static final int BATCH_INVALID_ARGUMENTS = 2;
+
+  /**
+   * Describes the arguments of the batch mode.
+   */
+  private static final String BATCH_USAGE = "Usage: batch --source PATH --destination PATH"
+      + " [--gene NAME|auto] [--threads N] [--output single|separate] [--name NAME]"
+      + " [--config FILE] [--genes FILE] [--cache yes|no]";
+
+  /**
+   * The options of the batch mode.
+   */
+  private static final List<String> BATCH_OPTIONS = Arrays.asList("source", "destination", "gene",
+      "threads", "output", "name", "config", "genes", "cache");
+
   /**
    * Creates, prints and stores a report of the reading of the files.
    * 
@@ -156,35 +196,277 @@ public class ConsoleVersion {
     // get ab1 files
     LinkedList<File> files = okayAndOddFiles.first;
 
+    // parameters and output settings of this run
+    AnalysisContext context = new AnalysisContext();
+    context.useConfiguredCache();
+
     // process all ab1 files
     for (File file : files) {
       // run pipeline for every sequence
-      processSequence(gene, file, destinationPath);
+      AnalysedSequence sequence = processSequence(gene, file, context);
+      if (sequence != null) {
+        warnIfCorrupted(sequence, file);
+        addLocalEntry(sequence, file, context);
+      }
+    }
+    try {
+      FileSaver.closeResults(context);
+    } catch (IOException e) {
+      System.out.println("Failure while writing the results.");
+    }
+
+    if (geneRecognition) {
+      long pruned = GeneHandler.getGeneIndex().getPrunedCandidates();
+      long scored = GeneHandler.getGeneIndex().getScoredCandidates();
+      System.out.println(
+          "Gene recognition pruned " + pruned + " of " + (pruned + scored) + " candidate genes.");
     }
 
     // close console
     closeProgram();
   }
 
+  /**
+   * Starts the batch mode. Unlike {@link #startConsoleVersion()}, it doesn't ask anything. All
+   * settings are given as arguments:
+   * <ul>
+   * <li>--source: the folder with the AB1 files (or a single AB1 file), required</li>
+   * <li>--destination: the folder where the results are stored, required</li>
+   * <li>--gene: the name of the reference gene, or auto for automatic gene recognition
+   * (default)</li>
+   * <li>--threads: the number of sequences analysed at the same time (default: the configured
+   * number of analysis threads)</li>
+   * <li>--output: single for one result file (default), separate for one file per sequence</li>
+   * <li>--name: the name of the result file</li>
+   * <li>--config and --genes: other configuration and gene files than the ones in the user
+   * home</li>
+   * <li>--cache: no to analyse every file again instead of using the result cache (default is the
+   * configuration)</li>
+   * </ul>
+   * The files are read, analysed and stored at the same time by a {@link StagedPipeline}. The
+   * results are stored in the order of the file names. At the end, a summary line with the numbers
+   * of analysed and failed files, the throughput, the statistics of the pipeline stages and the
+   * numbers of results taken from the result cache (hits) or analysed (misses) is printed.
+   * 
+   * @param args the arguments, e.g. {"--source", "in", "--destination", "out"}
+   * @return {@link #BATCH_SUCCESS}, {@link #BATCH_FAILURES} or {@link #BATCH_INVALID_ARGUMENTS}
+   * 
+   * @author Kevin Otto
+   */
+  public static int startBatchVersion(String[] args) {
+    long start = System.nanoTime();
+
+    HashMap<String, String> options;
+    BatchSettings settings;
+    try {
+      options = parseOptions(args, BATCH_OPTIONS);
+      settings = new BatchSettings(options);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(BATCH_USAGE);
+      return BATCH_INVALID_ARGUMENTS;
+    }
+    Gene gene = settings.gene;
+    int threads = settings.threads;
+    AnalysisContext context = settings.context;
+
+    Pair<LinkedList<File>, LinkedList<File>> okayAndOddFiles =
+        SequenceReader.listFiles(options.get("source"));
+    LinkedList<File> files = okayAndOddFiles.first;
+    files.sort(Comparator.comparing(File::getName));
+    reportOnInput(context.getLocalPath().getAbsolutePath(), files, okayAndOddFiles.second,
+        settings.configReport);
+
+    // reading, analysing and storing run at the same time, the results are stored in file order
+    StagedPipeline pipeline = new StagedPipeline(context, threads);
+    // analysed, problematic and failed files
+    int[] counts = new int[3];
+    try {
+      pipeline.run(files, gene, (file, sequence, analysisError) -> {
+        if (sequence.getProblematicComments()
+            .contains(ProblematicComment.COULD_NOT_READ_SEQUENCE)) {
+          System.err.println("FAILED " + file.getName() + ": file could not be read");
+          counts[2]++;
+          return null;
+        }
+        if (analysisError != null) {
+          System.err.print(file.getName() + ": " + analysisError);
+          sequence.addProblematicComment(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED);
+        }
+        if (!addLocalEntry(sequence, file, context)) {
+          System.err.println("FAILED " + file.getName() + ": results could not be stored");
+          counts[2]++;
+        } else if (sequence.getProblematicComments().isEmpty()) {
+          counts[0]++;
+        } else {
+          counts[1]++;
+        }
+        return null;
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.err.println("The batch was interrupted.");
+      return BATCH_FAILURES;
+    } finally {
+      try {
+        FileSaver.closeResults(context);
+      } catch (IOException e) {
+        System.err.println("FAILED the results could not be written: " + e.getMessage());
+        counts[2]++;
+      }
+    }
+    int failed = counts[2];
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format(Locale.ROOT,
+        "SUMMARY files=%d analysed=%d problematic=%d failed=%d invalid=%d threads=%d "
+            + "seconds=%.3f filesPerSecond=%.2f readQueueMax=%d analysedQueueMax=%d "
+            + "readerBlockedSeconds=%.3f workersIdleSeconds=%.3f writerIdleSeconds=%.3f "
+            + "cacheHits=%d cacheMisses=%d",
+        files.size(), counts[0], counts[1], failed, okayAndOddFiles.second.size(), threads,
+        seconds, files.size() / Math.max(seconds, 1e-9), pipeline.getMaxReadQueueDepth(),
+        pipeline.getMaxAnalysedQueueDepth(), pipeline.getReaderBlockedSeconds(),
+        pipeline.getWorkersIdleSeconds(), pipeline.getWriterIdleSeconds(), context.getCacheHits(),
+        context.getCacheMisses()));
+
+    return failed == 0 ? BATCH_SUCCESS : BATCH_FAILURES;
+  }
+
+  /**
+   * Reads the options of the batch mode (or of the watch mode). Every option is followed by its
+   * value.
+   * 
+   * @param args the arguments of the mode
+   * @param known the names of the allowed options
+   * @return the values of the options, the keys are the option names without leading dashes
+   * @throws IllegalArgumentException if an option is unknown, has no value or a required option is
+   *         missing
+   * 
+   * @author Kevin Otto
+   */
+  static HashMap<String, String> parseOptions(String[] args, List<String> known) {
+    HashMap<String, String> options = new HashMap<String, String>();
+    for (int i = 0; i < args.length; i += 2) {
+      String key = args[i].replaceFirst("^--", "");
+      if (!args[i].startsWith("--") || !known.contains(key)) {
+        throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing value of option " + args[i] + ".");
+      }
+      options.put(key, args[i + 1]);
+    }
+    for (String required : new String[] {"source", "destination"}) {
+      if (!options.containsKey(required)) {
+        throw new IllegalArgumentException("Missing option --" + required + ".");
+      }
+    }
+    return options;
+  }
+
+  /**
+   * The settings of a batch run which are given by the options shared by the batch mode and the
+   * watch mode. Creating them reads the configuration and the genes.
+   * 
+   * @author Kevin Otto
+   */
+  static class BatchSettings {
+
+    /**
+     * The reference gene, or null for automatic gene recognition.
+     */
+    final Gene gene;
+
+    /**
+     * The number of sequences analysed at the same time.
+     */
+    final int threads;
+
+    /**
+     * The parameters and output settings of the run.
+     */
+    final AnalysisContext context;
+
+    /**
+     * A message on the level of success from reading the configuration file.
+     */
+    final String configReport;
+
+    /**
+     * Reads the settings from the given options.
+     * 
+     * @param options the options of the batch mode or the watch mode
+     * @throws IllegalArgumentException if an option has an invalid value
+     * 
+     * @author Kevin Otto
+     */
+    BatchSettings(HashMap<String, String> options) {
+      configReport = getConfig(options.getOrDefault("config", System.getProperty("user.home")
+          + File.separator + "gsat" + File.separator + "config.txt"));
+      try {
+        GeneHandler.readGenes(options.getOrDefault("genes", GeneHandler.getPath()));
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Genes could not be read.");
+      }
+
+      String geneName = options.getOrDefault("gene", "auto");
+      if (geneName.equals("auto")) {
+        gene = null;
+      } else {
+        gene = GeneHandler.getGene(geneName);
+        if (gene == null) {
+          throw new IllegalArgumentException("Unknown gene " + geneName + ".");
+        }
+      }
+
+      threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads"))
+          : ConfigHandler.getAnalysisThreads();
+      if (threads < 1) {
+        throw new IllegalArgumentException("The number of threads must be positive.");
+      }
+      String output = options.getOrDefault("output", "single");
+      if (!output.equals("single") && !output.equals("separate")) {
+        throw new IllegalArgumentException("Unknown output mode " + output + ".");
+      }
+
+      File destination = new File(options.get("destination"));
+      destination.mkdirs();
+      if (!destination.isDirectory()) {
+        throw new IllegalArgumentException("The destination " + destination + " is no folder.");
+      }
+
+      // the genes have to be read before, the context uses their index
+      context = new AnalysisContext();
+      if (!options.getOrDefault("cache", "yes").equals("no")) {
+        context.useConfiguredCache();
+      }
+      context.setLocalPath(destination);
+      context.setSeparateFiles(output.equals("separate"));
+      context.setDestinationFileName(options.getOrDefault("name", ""));
+    }
+  }
+
   /**
    * Saves the results of one sequence in a .csv file.
    * 
    * @param activeSequence The sequence which will be saved.
    * @param file The file where the sequence has been read. Used to retrieve the file name.
-   * @param destinationPath The path where the result will be saved.
+   * @param context The analysis run, which provides the path where the result will be saved.
+   * @return true if the results were stored
    * @author Ben Kohr
    */
-  private static void addLocalEntry(AnalysedSequence activeSequence, File file,
-      String destinationPath) {
+  static boolean addLocalEntry(AnalysedSequence activeSequence, File file,
+      AnalysisContext context) {
     try {
       FileSaver.storeResultsLocally(file.getName().replaceFirst("[.][^.]+$", "") + "_result",
-          activeSequence);
+          activeSequence, context);
+      return true;
     } catch (MissingPathException e) {
-      FileSaver.setLocalPath(destinationPath);
+      System.out.println("No destination path specified.");
     } catch (IOException e) {
       System.out.println("File " + file.getName() + " could not be written.");
     }
-
+    return false;
   }
 
   /**
@@ -328,26 +610,6 @@ public class ConsoleVersion {
     return report;
   }
 
-  /**
-   * Finds all mutations for a sequence and saves them in the sequence object.
-   * 
-   * @param sequence The sequence which will be analyzed.
-   * @param file File of the sequence, used only for the file name.
-   * @author Lovis Heindrich
-   */
-  private static void processMutations(AnalysedSequence sequence, File file) {
-    try {
-      MutationAnalysis.findMutations(sequence);
-    } catch (UndefinedTypeOfMutationException e) {
-      System.err.println("Unknown mutation type found.");
-      System.err.println("Mutation: " + e.mutationString);
-      System.out.println();
-    } catch (CorruptedSequenceException e) {
-      System.err.println("The file " + file.getName()
-          + " seems to be corrupted. An unknown nulceotide symbol was detected.");
-    }
-  }
-
   /**
    * Asks the user for a destination path where the results will be stored. The path is saved in
    * FileSaver.
@@ -374,56 +636,51 @@ public class ConsoleVersion {
   }
 
   /**
-   * Runs the complete analysis pipeline for a single sequence and adds the sequence to the saved
-   * files.
+   * Runs the complete analysis pipeline for a single sequence. All parameters are taken from the
+   * given analysis run, so several sequences of a run can be processed at the same time.
    * 
-   * @param gene The gene the sequence will be compared to.
+   * @param gene The gene the sequence will be compared to, or null to find the gene automatically.
    * @param file The file which contains the sequence.
-   * @param destinationPath The path where the results will be saved.
+   * @param context The analysis run the sequence belongs to.
+   * @return The analysed sequence, or null if the file could not be read.
    * @author Lovis Heindrich
    */
-  private static void processSequence(Gene gene, File file, String destinationPath) {
-    AnalysedSequence activeSequence = null;
-
+  static AnalysedSequence processSequence(Gene gene, File file, AnalysisContext context) {
     // read sequence from file
-    activeSequence = readSequenceFromFile(file);
-
-    if (geneRecognition) {
-      gene = StringAnalysis.findRightGene(activeSequence, GeneHandler.getGeneList());
+    AnalysedSequence activeSequence = readSequenceFromFile(file);
+    if (activeSequence == null) {
+      return null;
     }
-    activeSequence.setReferencedGene(gene);
 
-    // checks if reversed or comeplenetary Sequence is better then the
-    // active Sequence
-    try {
-      StringAnalysis.checkComplementAndReverse(activeSequence);
-    } catch (CorruptedSequenceException e) {
-      System.err.println("Unknown symbol detected in sequence.");
-    }
-    // cut out vector
-    StringAnalysis.trimVector(activeSequence);
-
-    // cut out low Quality parts of sequence
-    QualityAnalysis.trimLowQuality(activeSequence);
-
-    if (StringAnalysis.findStopcodonPosition(activeSequence) != -1) {
-      activeSequence.trimSequence(0, StringAnalysis.findStopcodonPosition(activeSequence) * 3 + 2);
+    // orientation, trimming and mutation analysis
+    String error = AnalysisPipeline.analyseSequence(activeSequence, gene, context);
+    if (error != null) {
+      System.err.print(file.getName() + ": " + error);
+      activeSequence.addProblematicComment(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED);
     }
+    return activeSequence;
+  }
 
-    // checks if Sequence is corrupted
+  /**
+   * Warns the user of the interactive console if the trimmed sequence contains an unknown
+   * nucleotide symbol. The batch mode only marks the results of such sequences.
+   * 
+   * @param sequence The analysed sequence.
+   * @param file The file of the sequence, used only for the file name.
+   * @author Lovis Heindrich
+   */
+  private static void warnIfCorrupted(AnalysedSequence sequence, File file) {
     try {
-      QualityAnalysis.checkIfSequenceIsClean(activeSequence);
+      QualityAnalysis.checkIfSequenceIsClean(sequence);
     } catch (CorruptedSequenceException e) {
       System.err.println("Sequence seems to be corrupted.");
+      // the symbol stopped the mutation analysis
+      if (sequence.getProblematicComments()
+          .contains(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED)) {
+        System.err.println("The file " + file.getName()
+            + " seems to be corrupted. An unknown nucleotide symbol was detected.");
+      }
     }
-    // mutation analysis
-    processMutations(activeSequence, file);
-
-    // ask for comment
-    // askForComment(activeSequence, file);
-
-    // add entry to database
-    addLocalEntry(activeSequence, file, destinationPath);
   }
 
   /**
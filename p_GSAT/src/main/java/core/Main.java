@@ -8,6 +8,7 @@ import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -101,14 +102,26 @@ class Main {
   /**
    * Start of the GSAT program.
    * 
-   * @param args Unused input parameters
+   * @param args c for the console version, batch or watch followed by the options of these modes
    * 
    * @see ConsoleVersion#startConsoleVersion()
+   * @see ConsoleVersion#startBatchVersion(String[])
+   * @see WatchVersion#startWatchVersion(String[])
    * 
    * @author Kevin Otto
    */
   public static void main(String[] args) {
 
+    // the batch and watch modes run without any window, so nothing of JavaFX may be used before
+    if (args.length > 0 && args[0].toLowerCase().equals("batch")) {
+      Locale.setDefault(Locale.ENGLISH);
+      System.exit(ConsoleVersion.startBatchVersion(Arrays.copyOfRange(args, 1, args.length)));
+    }
+    if (args.length > 0 && args[0].toLowerCase().equals("watch")) {
+      Locale.setDefault(Locale.ENGLISH);
+      System.exit(WatchVersion.startWatchVersion(Arrays.copyOfRange(args, 1, args.length)));
+    }
+
     System.out.println(Runtime.getRuntime().maxMemory() );
     
     if (args.length == 0 && Runtime.getRuntime().maxMemory()/  (1024 * 1024 * 1024) <  1) {
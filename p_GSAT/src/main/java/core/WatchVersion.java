@@ -0,0 +1,303 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import analysis.AnalysedSequence;
+import analysis.AnalysisContext;
+import analysis.Gene;
+import core.ConsoleVersion.BatchSettings;
+import exceptions.DatabaseConnectionException;
+import io.ConfigHandler;
+import io.DatabaseConnection;
+import io.FileSaver;
+import io.FolderWatcher;
+
+/**
+ * This program version runs until it is stopped and analyses every new AB1 file in the watched
+ * folders as soon as it was completely written, e.g. by a sequencer. The results are appended to
+ * the result file(s) and, if desired, uploaded to the database in small batches. This way, the
+ * results of a plate are available while the sequencer is still running.
+ * <p>
+ * The watch mode is started with the parameter watch followed by the options of the batch mode
+ * (see {@link ConsoleVersion#startBatchVersion(String[])}) and some additional ones.
+ * </p>
+ *
+ * @author Kevin Otto
+ */
+public class WatchVersion {
+
+  /**
+   * Describes the arguments of the watch mode.
+   */
+  private static final String WATCH_USAGE = "Usage: watch --source PATH[" + File.pathSeparator
+      + "PATH...] --destination PATH [--gene NAME|auto] [--threads N] [--output single|separate]"
+      + " [--name NAME] [--config FILE] [--genes FILE] [--settle MILLISECONDS]"
+      + " [--cache yes|no] [--database yes|no] [--batchSize N]";
+
+  /**
+   * The options of the watch mode.
+   */
+  private static final List<String> WATCH_OPTIONS = Arrays.asList("source", "destination", "gene",
+      "threads", "output", "name", "config", "genes", "cache", "settle", "database",
+      "batchSize");
+
+  /**
+   * Time in milliseconds the main loop waits for new files before it checks the analyses.
+   */
+  private static final long POLL_MILLIS = 200;
+
+  /**
+   * Time in milliseconds before a failed upload is tried again.
+   */
+  private static final long RETRY_MILLIS = 30000;
+
+  /**
+   * Indicates whether the watch mode shall go on. It is reset to stop the watch mode.
+   */
+  private static volatile boolean watching;
+
+  /**
+   * Counts down when the watch mode stored and uploaded all results after it was stopped.
+   */
+  private static volatile CountDownLatch finished = new CountDownLatch(0);
+
+  /**
+   * Starts the watch mode. It watches the given source folders (separated by the path separator of
+   * the system) and runs until {@link #stopWatchVersion()} is called or the program is terminated.
+   * In addition to the options of the batch mode, the following ones are possible:
+   * <ul>
+   * <li>--settle: the time in milliseconds a new file must not change before it is analysed
+   * (default 2000)</li>
+   * <li>--database: yes to upload the results to the configured database (default no)</li>
+   * <li>--batchSize: the number of results uploaded together (default 10). Fewer results are
+   * uploaded if no more files are waiting.</li>
+   * </ul>
+   * If no name is given, the name of the result file contains the starting time, so a restart
+   * doesn't overwrite the results of the last run.
+   *
+   * @param args the arguments, e.g. {"--source", "in", "--destination", "out"}
+   * @return {@link ConsoleVersion#BATCH_SUCCESS}, {@link ConsoleVersion#BATCH_FAILURES} or
+   *         {@link ConsoleVersion#BATCH_INVALID_ARGUMENTS}
+   *
+   * @author Kevin Otto
+   */
+  public static int startWatchVersion(String[] args) {
+    long start = System.nanoTime();
+
+    HashMap<String, String> options;
+    BatchSettings settings;
+    long settleMillis;
+    int batchSize;
+    boolean database;
+    try {
+      options = ConsoleVersion.parseOptions(args, WATCH_OPTIONS);
+      if (!options.containsKey("name")) {
+        options.put("name",
+            "gsat_results_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()));
+      }
+      settings = new BatchSettings(options);
+      settleMillis = Long.parseLong(options.getOrDefault("settle", "2000"));
+      batchSize = Integer.parseInt(options.getOrDefault("batchSize", "10"));
+      if (settleMillis < 0 || batchSize < 1) {
+        throw new IllegalArgumentException("Settle time and batch size must be positive.");
+      }
+      database = options.getOrDefault("database", "no").equals("yes");
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(WATCH_USAGE);
+      return ConsoleVersion.BATCH_INVALID_ARGUMENTS;
+    }
+
+    if (database) {
+      try {
+        DatabaseConnection.setDatabaseConnection(ConfigHandler.getDbUser(),
+            ConfigHandler.getDbPass(), ConfigHandler.getDbPort(), ConfigHandler.getDbUrl());
+      } catch (DatabaseConnectionException | SQLException e) {
+        System.err.println("Failure while connecting to database.");
+        return ConsoleVersion.BATCH_FAILURES;
+      }
+    }
+
+    LinkedList<File> folders = new LinkedList<File>();
+    for (String folder : options.get("source").split(File.pathSeparator)) {
+      folders.add(new File(folder));
+    }
+
+    FolderWatcher watcher;
+    try {
+      watcher = new FolderWatcher(folders, settleMillis);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.err.println(WATCH_USAGE);
+      return ConsoleVersion.BATCH_INVALID_ARGUMENTS;
+    }
+
+    watching = true;
+    finished = new CountDownLatch(1);
+    // a terminated program still stores the analysed files and uploads the last results
+    Thread shutdownHook = new Thread(WatchVersion::stopWatchVersion);
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+    int failed;
+    try {
+      System.out.println("Watching " + options.get("source"));
+      failed = watch(watcher, settings, database ? batchSize : 0);
+    } finally {
+      watching = false;
+      finished.countDown();
+      try {
+        watcher.close();
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IOException | IllegalStateException e) {
+        // the program is already terminating
+      }
+    }
+
+    System.out.println(String.format(Locale.ROOT,
+        "SUMMARY failed=%d seconds=%.3f cacheHits=%d cacheMisses=%d", failed,
+        (System.nanoTime() - start) / 1e9, settings.context.getCacheHits(),
+        settings.context.getCacheMisses()));
+    return failed == 0 ? ConsoleVersion.BATCH_SUCCESS : ConsoleVersion.BATCH_FAILURES;
+  }
+
+  /**
+   * Stops the watch mode and waits until the files which are currently analysed are stored and
+   * uploaded. Files which are still written are not analysed anymore.
+   *
+   * @author Kevin Otto
+   */
+  public static void stopWatchVersion() {
+    watching = false;
+    try {
+      finished.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Analyses new files until the watch mode is stopped. The files are analysed by a thread pool,
+   * the results are stored in the order the analyses are finished.
+   *
+   * @param watcher the watcher of the source folders
+   * @param settings the gene, the number of threads and the output settings
+   * @param batchSize the number of results uploaded together, or 0 if nothing is uploaded
+   * @return the number of files which could not be analysed, stored or uploaded
+   *
+   * @author Kevin Otto
+   */
+  private static int watch(FolderWatcher watcher, BatchSettings settings, int batchSize) {
+    Gene gene = settings.gene;
+    AnalysisContext context = settings.context;
+    // the results are written in the background and flushed while no files arrive
+    context.setWriterThread(true);
+
+    ExecutorService executor = Executors.newFixedThreadPool(settings.threads);
+    CompletionService<AnalysedSequence> analyses =
+        new ExecutorCompletionService<AnalysedSequence>(executor);
+    HashMap<Future<AnalysedSequence>, File> running = new HashMap<Future<AnalysedSequence>, File>();
+    LinkedList<AnalysedSequence> upload = new LinkedList<AnalysedSequence>();
+    long nextUpload = 0;
+    int failed = 0;
+
+    try {
+      while (watching || !running.isEmpty() || !upload.isEmpty()) {
+        if (watching) {
+          for (File file : watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            running.put(analyses.submit(() -> ConsoleVersion.processSequence(gene, file, context)),
+                file);
+          }
+        }
+
+        // store the finished analyses
+        Future<AnalysedSequence> analysis =
+            watching ? analyses.poll() : analyses.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        while (analysis != null) {
+          File file = running.remove(analysis);
+          AnalysedSequence sequence;
+          try {
+            sequence = analysis.get();
+          } catch (ExecutionException e) {
+            sequence = null;
+          }
+          if (sequence == null) {
+            System.err.println("FAILED " + file.getName() + ": file could not be analysed");
+            failed++;
+          } else if (!ConsoleVersion.addLocalEntry(sequence, file, context)) {
+            System.err.println("FAILED " + file.getName() + ": results could not be stored");
+            failed++;
+          } else {
+            System.out.println("ANALYSED " + file.getName());
+            if (batchSize > 0) {
+              upload.add(sequence);
+            }
+          }
+          analysis = analyses.poll();
+        }
+
+        // upload full batches, or the last results if nothing else is waiting
+        boolean idle = running.isEmpty() && !watcher.hasPendingFiles();
+        boolean last = !watching && running.isEmpty();
+        boolean due = upload.size() >= batchSize || idle;
+        if (!upload.isEmpty() && ((due && System.currentTimeMillis() >= nextUpload) || last)) {
+          if (pushResults(upload)) {
+            upload.clear();
+          } else if (last) {
+            failed += upload.size();
+            upload.clear();
+          } else {
+            nextUpload = System.currentTimeMillis() + RETRY_MILLIS;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failed += running.size() + upload.size();
+    } finally {
+      executor.shutdownNow();
+      try {
+        FileSaver.closeResults(context);
+      } catch (IOException e) {
+        System.err.println("The results could not be written: " + e.getMessage());
+        failed++;
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Uploads the given results to the database.
+   *
+   * @param sequences the results to upload
+   * @return true if the results were uploaded, false if they have to be uploaded again
+   *
+   * @author Kevin Otto
+   */
+  private static boolean pushResults(LinkedList<AnalysedSequence> sequences) {
+    try {
+      DatabaseConnection.pushAllData(sequences);
+      System.out.println("UPLOADED " + sequences.size() + " results");
+      return true;
+    } catch (SQLException | DatabaseConnectionException e) {
+      System.err.println("Upload of " + sequences.size() + " results failed, trying again later.");
+      return false;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package gui;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.time.DateTimeException;
@@ -9,10 +10,10 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.ResourceBundle;
 
 import analysis.AnalysedSequence;
+import analysis.AnalysisContext;
 import exceptions.ConfigNotFoundException;
 import exceptions.DatabaseConnectionException;
 import exceptions.MissingPathException;
@@ -21,6 +22,7 @@ import io.ConfigHandler;
 import io.DatabaseConnection;
 import io.FileRetriever;
 import io.FileSaver;
+import io.ParallelResultReader;
 import javafx.application.Application;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
@@ -678,8 +680,14 @@ public class DatabaseWindow extends Application implements javafx.fxml.Initializ
           "There are no results in the database. So no local files are created.");
       return;
     } else {
-      for (AnalysedSequence res : resList) {
-        FileSaver.storeResultsLocally(res.getFileName(), res);
+      // one context keeps the result file open for all results
+      AnalysisContext context = new AnalysisContext();
+      try {
+        for (AnalysedSequence res : resList) {
+          FileSaver.storeResultsLocally(res.getFileName(), res, context);
+        }
+      } finally {
+        FileSaver.closeResults(context);
       }
       GUIUtils.showInfo(AlertType.CONFIRMATION, "Success", DOWNLOAD_SUCCESS);
     }
@@ -697,15 +705,22 @@ public class DatabaseWindow extends Application implements javafx.fxml.Initializ
    */
   private void uploadResults() throws IOException, SQLException, DatabaseConnectionException {
     String path = destField.getText();
-    LinkedList<AnalysedSequence> sequences = FileRetriever.convertFilesToSequences(path);
 
-    if (sequences.isEmpty()) {
-      GUIUtils.showInfo(AlertType.INFORMATION, "No usable results found",
-          "There were no usable results. There either are " + "not result CSV files at the given "
-              + "path or all results in these files are unusable.");
-    } else {
-      DatabaseConnection.pushAllData(sequences);
-      GUIUtils.showInfo(AlertType.CONFIRMATION, "Success", UPLOAD_SUCCESS);
+    // the results are read while they are uploaded, only a few small files are held in memory
+    // and large files (e.g. a single result file) are streamed row by row
+    try (ParallelResultReader sequences =
+        FileRetriever.openResults(path, Runtime.getRuntime().availableProcessors())) {
+      if (!sequences.hasNext()) {
+        GUIUtils.showInfo(AlertType.INFORMATION, "No usable results found",
+            "There were no usable results. There either are "
+                + "not result CSV files at the given "
+                + "path or all results in these files are unusable.");
+      } else {
+        DatabaseConnection.pushAllData(() -> sequences);
+        GUIUtils.showInfo(AlertType.CONFIRMATION, "Success", UPLOAD_SUCCESS);
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
     }
   }
 
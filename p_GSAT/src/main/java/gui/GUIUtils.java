@@ -4,20 +4,27 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 import analysis.AnalysedSequence;
+import analysis.AnalysisPipeline;
+import analysis.AnalysisContext;
 import analysis.Gene;
-import analysis.MutationAnalysis;
+import analysis.GeneIndex;
 import analysis.Pair;
-import analysis.QualityAnalysis;
-import analysis.StringAnalysis;
+import analysis.StagedPipeline;
 import exceptions.ConfigNotFoundException;
-import exceptions.CorruptedSequenceException;
 import exceptions.DissimilarGeneException;
 import exceptions.MissingPathException;
-import exceptions.UndefinedTypeOfMutationException;
 import exceptions.UnknownConfigFieldException;
 import io.ConfigHandler;
 import io.FileSaver;
@@ -146,6 +153,27 @@ public class GUIUtils {
    */
   public static LinkedList<Text> runAnalysis(LinkedList<AnalysedSequence> sequences, String geneId,
       String resultname, ProgressBar bar) throws DissimilarGeneException {
+    return runAnalysis(sequences, geneId, resultname, bar::setProgress);
+  }
+
+  /**
+   * Main method of this class, like {@link #runAnalysis(LinkedList, String, String, ProgressBar)}
+   * but reports the progress to the given consumer instead of a progress bar. If more than one
+   * analysis thread is configured, the sequences are analysed in parallel. The results are always
+   * stored in the order of the given list, so the output is the same as in a sequential run.
+   * 
+   * @param geneId ID of the Gene in the Choicebox.
+   * @param sequences a llist with all sequences that should be analysed
+   * @param resultname the name of the result file
+   * @param progress receives the fraction of analysed sequences
+   * @return a list of Texts with informations about success and critical informations
+   * @throws DissimilarGeneException if the gene is incorrect of the similarity between gene and
+   *         sequence are to low
+   * @see ConfigHandler#getAnalysisThreads()
+   * @author jannis blueml
+   */
+  public static LinkedList<Text> runAnalysis(LinkedList<AnalysedSequence> sequences, String geneId,
+      String resultname, DoubleConsumer progress) throws DissimilarGeneException {
 
     LinkedList<Text> resultingLines = new LinkedList<Text>();
 
@@ -162,18 +190,72 @@ public class GUIUtils {
       gene = getGeneFromDropDown(geneId);
     }
     // foreach ab1 file
-    int counter = 0;
     int allFiles = sequences.size();
-    FileSaver.reset();
-    for (AnalysedSequence analysedSequence : sequences) {
+    // parameters, genes and output files of this run
+    AnalysisContext context = new AnalysisContext();
+    context.useConfiguredCache();
+    context.setDestinationFileName(resultname);
+    GeneIndex geneIndex = context.getGeneIndex();
+    long prunedBefore = geneIndex.getPrunedCandidates();
+    long scoredBefore = geneIndex.getScoredCandidates();
+
+    // counts the analysed sequences for the progress bar
+    AtomicInteger counter = new AtomicInteger();
+    Runnable step = () -> {
+      synchronized (counter) {
+        progress.accept(counter.incrementAndGet() / (double) allFiles);
+      }
+    };
+
+    // sequences are analysed by the workers in any order, but always stored in input order
+    int workers = Math.min(ConfigHandler.getAnalysisThreads(), allFiles);
+    ExecutorService executor = null;
+    LinkedList<Future<String>> analyses = new LinkedList<Future<String>>();
+    if (workers > 1) {
+      executor = Executors.newFixedThreadPool(workers);
+      for (AnalysedSequence analysedSequence : sequences) {
+        Gene fixedGene = gene;
+        analyses.add(executor.submit(() -> {
+          String error = analyseSequence(analysedSequence, fixedGene, context);
+          if (error == null) {
+            step.run();
+          }
+          return error;
+        }));
+      }
+    }
+
+    try {
+      for (AnalysedSequence analysedSequence : sequences) {
 
+        String error;
+        if (executor == null) {
+          error = analyseSequence(analysedSequence, gene, context);
+          if (error == null) {
+            step.run();
+          }
+        } else {
+          try {
+            error = analyses.removeFirst().get();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return wrap("Analysis was interrupted.\n", resultingLines, true);
+          } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+              throw (Error) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+          }
+        }
+        if (error != null) {
+          return wrap(error, resultingLines, true);
+        }
 
-      if (analysedSequence.getProblematicComments().size() > 0) {
-        analysedSequence.setReferencedGene(new Gene("", 0, "-", "", "-", ""));
+        // add entry to database
         try {
-          FileSaver.setDestFileName(resultname);
           FileSaver.storeResultsLocally(
-              analysedSequence.getFileName().replaceFirst("[.][^.]+$", ""), analysedSequence);
+              analysedSequence.getFileName().replaceFirst("[.][^.]+$", ""), analysedSequence,
+              context);
 
         } catch (MissingPathException e2) {
           FileSaver.setLocalPath("");
@@ -181,81 +263,160 @@ public class GUIUtils {
         } catch (IOException e2) {
           return wrap("Error while storing data, aborting analysis.\n", resultingLines, true);
         }
+      }
+      FileSaver.closeResults(context);
+    } catch (IOException e) {
+      return wrap("Error while storing data, aborting analysis.\n", resultingLines, true);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      closeResultsAfterError(context);
+    }
+    if (geneId.equals("-1")) {
+      long pruned = geneIndex.getPrunedCandidates() - prunedBefore;
+      long scored = geneIndex.getScoredCandidates() - scoredBefore;
+      wrap("Gene recognition pruned " + pruned + " of " + (pruned + scored)
+          + " candidate genes.\n", resultingLines, false);
+    }
+    reportCache(context, resultingLines);
+    // set output parameter and return Pair.
+    wrap("Analysis is finished.\n", resultingLines, false);
+    return resultingLines;
+  }
 
-      } else {
-
-
-        try {
-
-          // get Sequence
-          if (geneId.equals("-1")) {
-            gene = StringAnalysis.findRightGene(analysedSequence, GeneHandler.getGeneList());
-          }
-          analysedSequence.setReferencedGene(gene);
-
-          // checks if complementary and reversed Sequence is better, then
-          // standard
-          try {
-            StringAnalysis.checkComplementAndReverse(analysedSequence);
-          } catch (CorruptedSequenceException e) {
-            return wrap("Calculation of complementary sequence unsuccessful, analysing stops\n",
-                resultingLines, true);
-          }
-
-          // cut out vector
-          StringAnalysis.trimVector(analysedSequence);
-
-          int lengthBeforeTrimmingQuality = analysedSequence.getSequence().length();
-          // cut out low Quality parts of sequence
-          QualityAnalysis.trimLowQuality(analysedSequence);
-
-          int stopcodonPosition = StringAnalysis.findStopcodonPosition(analysedSequence);
-          if (stopcodonPosition != -1) {
-            analysedSequence.trimSequence(0, stopcodonPosition * 3 + 2);
-          }
-
-          analysedSequence.setTrimPercentage(QualityAnalysis
-              .percentageOfTrimQuality(lengthBeforeTrimmingQuality, analysedSequence));
-
-          analysedSequence.setHisTagPosition(StringAnalysis.findHisTag(analysedSequence));
-          // find all Mutations
-          try {
-            MutationAnalysis.findMutations(analysedSequence);
-            MutationAnalysis.findPlasmidMix(analysedSequence);
-          } catch (UndefinedTypeOfMutationException | CorruptedSequenceException e) {
-            return wrap("Mutation analysis was unsuccessful because of error in "
-                + analysedSequence.getFileName() + "\n", resultingLines, true);
-          }
+  /**
+   * Reads, analyses and stores the given files with a {@link StagedPipeline}, i.e. reading,
+   * analysing and storing run at the same time and only a few reads are held in memory. The
+   * results are stored in the order of the given files, like in
+   * {@link #runAnalysis(LinkedList, String, String, DoubleConsumer)}. The number of analysis
+   * workers is the configured number of analysis threads.
+   * 
+   * @param files the AB1 files to analyse
+   * @param geneId ID of the Gene in the Choicebox, or -1 for automatic gene search
+   * @param resultname the name of the result file
+   * @param progress receives the fraction of stored sequences
+   * @param readListener receives every read directly after reading, before it gets trimmed. Files
+   *        which could not be read are passed with the comment
+   *        {@link ProblematicComment#COULD_NOT_READ_SEQUENCE}.
+   * @return a list of Texts with informations about success, critical informations and the
+   *         statistics of the pipeline stages
+   * @see ConfigHandler#getAnalysisThreads()
+   * @author jannis blueml
+   */
+  public static LinkedList<Text> runStagedAnalysis(List<File> files, String geneId,
+      String resultname, DoubleConsumer progress, Consumer<AnalysedSequence> readListener) {
 
-          // add average quality
-          analysedSequence.setAvgQuality(QualityAnalysis.getAvgQuality(analysedSequence));
+    LinkedList<Text> resultingLines = new LinkedList<Text>();
 
-        } catch (Throwable e) {
-          analysedSequence.addProblematicComment(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED);
+    Gene gene = null;
+    if (!geneId.equals("-1")) {
+      gene = getGeneFromDropDown(geneId);
+    }
+    // parameters, genes and output files of this run
+    AnalysisContext context = new AnalysisContext();
+    context.useConfiguredCache();
+    context.setDestinationFileName(resultname);
+    GeneIndex geneIndex = context.getGeneIndex();
+    long prunedBefore = geneIndex.getPrunedCandidates();
+    long scoredBefore = geneIndex.getScoredCandidates();
+
+    StagedPipeline pipeline = new StagedPipeline(context, ConfigHandler.getAnalysisThreads());
+    pipeline.setReadListener(readListener);
+    int allFiles = files.size();
+    int[] stored = new int[1];
+
+    String error;
+    try {
+      error = pipeline.run(files, gene, (file, sequence, analysisError) -> {
+        if (analysisError != null) {
+          return analysisError;
         }
-        // add entry to database
         try {
-          FileSaver.setDestFileName(resultname);
-          FileSaver.storeResultsLocally(
-              analysedSequence.getFileName().replaceFirst("[.][^.]+$", ""), analysedSequence);
-
-        } catch (MissingPathException e2) {
+          FileSaver.storeResultsLocally(file.getName().replaceFirst("[.][^.]+$", ""), sequence,
+              context);
+        } catch (MissingPathException e) {
           FileSaver.setLocalPath("");
-          return wrap("Missing path to destination, aborting analysis.\n", resultingLines, true);
-        } catch (IOException e2) {
-          return wrap("Error while storing data, aborting analysis.\n", resultingLines, true);
+          return "Missing path to destination, aborting analysis.\n";
+        } catch (IOException e) {
+          return "Error while storing data, aborting analysis.\n";
         }
+        progress.accept(++stored[0] / (double) allFiles);
+        return null;
+      });
+      if (error == null) {
+        FileSaver.closeResults(context);
       }
-      counter++;
-      double progress = counter / (double) allFiles;
-      bar.setProgress(progress);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      error = "Analysis was interrupted.\n";
+    } catch (IOException e) {
+      error = "Error while storing data, aborting analysis.\n";
+    } finally {
+      closeResultsAfterError(context);
+    }
+    if (error != null) {
+      return wrap(error, resultingLines, true);
+    }
 
+    if (geneId.equals("-1")) {
+      long pruned = geneIndex.getPrunedCandidates() - prunedBefore;
+      long scored = geneIndex.getScoredCandidates() - scoredBefore;
+      wrap("Gene recognition pruned " + pruned + " of " + (pruned + scored)
+          + " candidate genes.\n", resultingLines, false);
     }
-    // set output parameter and return Pair.
+    wrap("Pipeline: " + pipeline.getReport() + "\n", resultingLines, false);
+    reportCache(context, resultingLines);
     wrap("Analysis is finished.\n", resultingLines, false);
     return resultingLines;
   }
 
+  /**
+   * Closes the result file of an analysis run which was stopped, so the results stored so far are
+   * kept. Errors are ignored, the run reports its own error.
+   * 
+   * @param context the stopped analysis run
+   * @author Ben Kohr
+   */
+  private static void closeResultsAfterError(AnalysisContext context) {
+    try {
+      FileSaver.closeResults(context);
+    } catch (IOException e) {
+      // the run is already aborted
+    }
+  }
+
+  /**
+   * Adds a line with the number of results which were taken from the result cache, if the cache is
+   * used.
+   * 
+   * @param context the finished analysis run
+   * @param resultingLines the lines of the run
+   * @author Kevin Otto
+   */
+  private static void reportCache(AnalysisContext context, LinkedList<Text> resultingLines) {
+    if (context.getResultCache() != null) {
+      wrap("Result cache: " + context.getCacheHits() + " of "
+          + (context.getCacheHits() + context.getCacheMisses())
+          + " results were taken from the cache.\n", resultingLines, false);
+    }
+  }
+
+  /**
+   * Runs the analysis pipeline for a single sequence.
+   * 
+   * @param analysedSequence the sequence to analyse
+   * @param gene the reference gene, or null if the gene is to be found automatically
+   * @param context the analysis run which provides the parameters and the gene index
+   * @return an error message if the whole analysis has to be stopped, otherwise null
+   * @see AnalysisPipeline#analyseSequence(AnalysedSequence, Gene, AnalysisContext)
+   * @author jannis blueml
+   */
+  public static String analyseSequence(AnalysedSequence analysedSequence, Gene gene,
+      AnalysisContext context) {
+    return AnalysisPipeline.analyseSequence(analysedSequence, gene, context);
+  }
+
   /**
    * Adds a new Text object to the given list. This list ist finally used to print all events during
    * anaylsis on the main window's text field.
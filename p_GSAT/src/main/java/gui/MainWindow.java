@@ -5,12 +5,14 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
 import analysis.AnalysedSequence;
 import analysis.Gene;
 import analysis.Pair;
+import analysis.ReadSnapshot;
 import io.ConfigHandler;
 import io.FileSaver;
 import io.ProblematicComment;
@@ -81,7 +83,18 @@ public class MainWindow extends Application implements javafx.fxml.Initializable
   /**
    * Sequenced from selected files.
    */
-  private static LinkedList<AnalysedSequence> sequences = new LinkedList<>();
+  private static List<AnalysedSequence> sequences = new LinkedList<>();
+
+  /**
+   * Snapshots of the reads of the last analysis, taken before they were analysed. They are used to
+   * show the chromatograms after the analysis without reading the files again.
+   */
+  private static LinkedList<ReadSnapshot> readSnapshots = new LinkedList<>();
+
+  /**
+   * Names of the files which could not be read in the last analysis.
+   */
+  private static LinkedList<String> unreadableFiles = new LinkedList<>();
 
   // Warnings by closing without saving
 
@@ -317,6 +330,7 @@ public class MainWindow extends Application implements javafx.fxml.Initializable
             if (new File(srcField.getText()).exists()) {
 
               files = GUIUtils.getSequencesFromSourceFolder(srcField.getText());
+              sequences = new LinkedList<AnalysedSequence>();
 
               if (files.first != null) {
                 for (File file : files.first) {
@@ -565,27 +579,26 @@ public class MainWindow extends Application implements javafx.fxml.Initializable
             // DISABLE ALL INPUTS
             callSetDisableOfManyComponents(true);
 
-            sequences = new LinkedList<AnalysedSequence>();
-            AnalysedSequence sequence;
+            LinkedList<ReadSnapshot> snapshots = new LinkedList<ReadSnapshot>();
+            LinkedList<String> unreadable = new LinkedList<String>();
 
             if (files.first == null) {
               files.first = new LinkedList<File>();
             }
 
-            // convert files into sequences and analyse them
-
-            for (File file : files.first) {
-              try {
-                sequence = SequenceReader.convertFileIntoSequence(file);
-              } catch (Throwable e) {
-                sequence = new AnalysedSequence();
-                sequence.setFileName(file.getName());
-                sequence.addProblematicComment(ProblematicComment.COULD_NOT_READ_SEQUENCE);
-              }
-              sequences.add(sequence);
-            }
-            LinkedList<Text> resultingLines =
-                GUIUtils.runAnalysis(sequences, geneBoxItem, destfileNameText, bar);
+            // read, analyse and store the files at the same time
+            LinkedList<Text> resultingLines = GUIUtils.runStagedAnalysis(files.first, geneBoxItem,
+                destfileNameText, bar::setProgress, sequence -> {
+                  if (sequence.getProblematicComments()
+                      .contains(ProblematicComment.COULD_NOT_READ_SEQUENCE)) {
+                    unreadable.add(sequence.getFileName());
+                  } else {
+                    // keep the untrimmed read for the chromatogram window
+                    snapshots.add(new ReadSnapshot(sequence));
+                  }
+                });
+            readSnapshots = snapshots;
+            unreadableFiles = unreadable;
             Platform.runLater(new Runnable() {
 
               @Override
@@ -606,14 +619,10 @@ public class MainWindow extends Application implements javafx.fxml.Initializable
           public void handle(WorkerStateEvent t) {
             bar.setProgress(0);
             changesOnResults = true;
-            sequences = new LinkedList<AnalysedSequence>();
-            for (File file : files.first) {
-              try {
-                sequences.add(SequenceReader.convertFileIntoSequence(file));
-              } catch (Throwable e) {
-                infoArea.getChildren()
-                    .add(GUIUtils.getRedText("Reading error with " + file.getName()));
-              }
+            // the reads are created from the snapshots when they are shown
+            sequences = ReadSnapshot.asSequences(readSnapshots);
+            for (String fileName : unreadableFiles) {
+              infoArea.getChildren().add(GUIUtils.getRedText("Reading error with " + fileName));
             }
           }
         });
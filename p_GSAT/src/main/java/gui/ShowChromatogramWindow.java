@@ -7,8 +7,10 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ResourceBundle;
 
 import javax.imageio.ImageIO;
@@ -91,7 +93,7 @@ public class ShowChromatogramWindow extends Application implements javafx.fxml.I
   /**
    * list of Sequences from selected folder.
    */
-  LinkedList<AnalysedSequence> sequences;
+  List<AnalysedSequence> sequences;
 
   /**
    * the currently selected sequence.
@@ -308,14 +310,26 @@ public class ShowChromatogramWindow extends Application implements javafx.fxml.I
     AnalysedSequence startSequence = sequences.get(id);
     fileName.setText(startSequence.getFileName());
 
-    // get basecalls from sequence (spikes in trace)
-    int[] baseCalls = startSequence.getBaseCalls();
-
-    // get trace channels from sequence
-    int[] channelA = startSequence.getChannelA();
-    int[] channelC = startSequence.getChannelC();
-    int[] channelT = startSequence.getChannelT();
-    int[] channelG = startSequence.getChannelG();
+    int[] baseCalls;
+    int[] channelA;
+    int[] channelC;
+    int[] channelT;
+    int[] channelG;
+    try {
+      // get basecalls from sequence (spikes in trace)
+      baseCalls = startSequence.getBaseCalls();
+
+      // get trace channels from sequence
+      channelA = startSequence.getChannelA();
+      channelC = startSequence.getChannelC();
+      channelT = startSequence.getChannelT();
+      channelG = startSequence.getChannelG();
+    } catch (UncheckedIOException e) {
+      // the AB1 file was moved or changed after the analysis
+      GUIUtils.showInfo(AlertType.ERROR, "Chromatogramm error",
+          "The traces of " + startSequence.getFileName() + " could not be read.");
+      return;
+    }
 
     // determine reference Gene and calculate offset (needed for aminoacid determination)
     try {
@@ -477,13 +491,9 @@ public class ShowChromatogramWindow extends Application implements javafx.fxml.I
             buffGraph.setStroke(smallStroke);
             try {
 
-              // get nucleotides of aminoacid
-              String aminoInNucleotides =
-                  (startSequence.getSequence().substring(basecallIndex, basecallIndex + 3))
-                      .toUpperCase();
-
-              // convert nucleotides in aminoacid
-              String aminoacid = StringAnalysis.codonsToAminoAcids(aminoInNucleotides, false);
+              // convert nucleotides of aminoacid in aminoacid
+              String aminoacid = StringAnalysis
+                  .codonToAminoAcid(startSequence.getSequence(), basecallIndex, false);
 
               // draw aminoacid string
               buffGraph.drawString(aminoacid,
@@ -558,9 +568,10 @@ public class ShowChromatogramWindow extends Application implements javafx.fxml.I
    * 
    * @see #updateSequences(int)
    * 
-   * @param sequences the list of sequences that should be displayed in the chromatogram
+   * @param sequences the list of sequences that should be displayed in the chromatogram, the list
+   *        may create the sequences when they are accessed
    */
-  public void setSequences(LinkedList<AnalysedSequence> sequences) {
+  public void setSequences(List<AnalysedSequence> sequences) {
     // set sequence
     this.sequences = sequences;
     activeSequence = 0;
@@ -0,0 +1,239 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * This class reads AB1 files without Jillion or BioJava. The file is mapped into memory and only
+ * the needed entries of the ABIF directory are decoded, directly from the mapped buffer into
+ * primitive arrays. The results are the same as the ones of the Jillion chromatogram used by
+ * {@link SequenceReader}.
+ * <p>
+ * The following entries are read: PBAS (bases), PCON (qualities), DATA9 to DATA12 (processed
+ * traces), PLOC (peak locations, i.e. base calls) and FWO_ (the order of the traces).
+ * </p>
+ *
+ * @author Lovis Heindrich
+ */
+public class AbifReader {
+
+  /**
+   * The first four bytes of every AB1 file.
+   */
+  private static final int MAGIC_NUMBER = tag("ABIF");
+
+  /**
+   * Position of the root directory entry, which points to the directory.
+   */
+  private static final int ROOT_ENTRY = 6;
+
+  /**
+   * Length of one directory entry in bytes.
+   */
+  private static final int ENTRY_LENGTH = 28;
+
+  /**
+   * The mapped file.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * Positions of the directory entries, the keys are the tag names followed by the tag numbers
+   * (e.g. PBAS2).
+   */
+  private final HashMap<String, Integer> entries = new HashMap<String, Integer>();
+
+  /**
+   * The called bases.
+   */
+  private final String bases;
+
+  /**
+   * The phred quality of every base.
+   */
+  private final int[] qualities;
+
+  /**
+   * The traces of the channels in the order A, C, G, T.
+   */
+  private final int[][] traces = new int[4][];
+
+  /**
+   * The trace positions of the called bases.
+   */
+  private final int[] baseCalls;
+
+  /**
+   * Maps the given file into memory and reads all data of the chromatogram.
+   *
+   * @param file the AB1 file
+   *
+   * @throws IOException if the file can't be read or is no valid AB1 file
+   *
+   * @author Lovis Heindrich
+   */
+  public AbifReader(File file) throws IOException {
+    try (RandomAccessFile input = new RandomAccessFile(file, "r");
+        FileChannel channel = input.getChannel()) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      // ABIF numbers are big endian, which is the default byte order
+      buffer = mapped;
+    }
+
+    try {
+      if (buffer.capacity() < ROOT_ENTRY + ENTRY_LENGTH || buffer.getInt(0) != MAGIC_NUMBER) {
+        throw new IOException("The file " + file.getName() + " is no AB1 file.");
+      }
+      readDirectory();
+
+      // the edited data (number 1) is used if it exists, like Jillion does it
+      bases = readString(find("PBAS", 1, 2));
+      qualities = readBytes(find("PCON", 1, 2));
+      baseCalls = readShorts(find("PLOC", 1, 2));
+
+      // the traces DATA9 to DATA12 belong to the bases in the order given by FWO_
+      String order = readString(find("FWO_", 1, 1));
+      for (int i = 0; i < 4; i++) {
+        int channel = "ACGT".indexOf(order.charAt(i));
+        if (channel < 0) {
+          throw new IOException("The file " + file.getName() + " has an unknown channel order.");
+        }
+        traces[channel] = readShorts(find("DATA", 9 + i, 9 + i));
+      }
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      // an entry points outside of the file
+      throw new IOException("The file " + file.getName() + " seems to be damaged.", e);
+    }
+  }
+
+  /**
+   * Stores the positions of all directory entries.
+   *
+   * @author Lovis Heindrich
+   */
+  private void readDirectory() {
+    int count = buffer.getInt(ROOT_ENTRY + 12);
+    int position = buffer.getInt(ROOT_ENTRY + 20);
+    for (int i = 0; i < count; i++) {
+      int entry = position + i * ENTRY_LENGTH;
+      String name = new String(new char[] {(char) buffer.get(entry), (char) buffer.get(entry + 1),
+          (char) buffer.get(entry + 2), (char) buffer.get(entry + 3)});
+      entries.put(name + buffer.getInt(entry + 4), entry);
+    }
+  }
+
+  /**
+   * Returns the position of the first existing directory entry with the given name and one of the
+   * given numbers.
+   *
+   * @throws IOException if none of the entries exists
+   *
+   * @author Lovis Heindrich
+   */
+  private int find(String name, int number, int alternative) throws IOException {
+    Integer entry = entries.get(name + number);
+    if (entry == null) {
+      entry = entries.get(name + alternative);
+    }
+    if (entry == null) {
+      throw new IOException("The AB1 file has no entry " + name + number + ".");
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the position of the data of an entry. Data of up to four bytes is stored in the entry
+   * itself.
+   *
+   * @author Lovis Heindrich
+   */
+  private int dataPosition(int entry) {
+    return buffer.getInt(entry + 16) <= 4 ? entry + 20 : buffer.getInt(entry + 20);
+  }
+
+  /**
+   * Decodes the elements of an entry as characters.
+   *
+   * @author Lovis Heindrich
+   */
+  private String readString(int entry) {
+    int position = dataPosition(entry);
+    char[] result = new char[buffer.getInt(entry + 12)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (char) (buffer.get(position + i) & 0xFF);
+    }
+    return new String(result);
+  }
+
+  /**
+   * Decodes the elements of an entry as signed bytes.
+   *
+   * @author Lovis Heindrich
+   */
+  private int[] readBytes(int entry) {
+    int position = dataPosition(entry);
+    int[] result = new int[buffer.getInt(entry + 12)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = buffer.get(position + i);
+    }
+    return result;
+  }
+
+  /**
+   * Decodes the elements of an entry as signed 16 bit numbers.
+   *
+   * @author Lovis Heindrich
+   */
+  private int[] readShorts(int entry) {
+    int position = dataPosition(entry);
+    int[] result = new int[buffer.getInt(entry + 12)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = buffer.getShort(position + 2 * i);
+    }
+    return result;
+  }
+
+  /**
+   * Converts a tag name into the int of its four bytes.
+   *
+   * @author Lovis Heindrich
+   */
+  private static int tag(String name) {
+    return (name.charAt(0) << 24) | (name.charAt(1) << 16) | (name.charAt(2) << 8) | name.charAt(3);
+  }
+
+  // GETTERs and SETTERs:
+
+  public String getBases() {
+    return bases;
+  }
+
+  public int[] getQualities() {
+    return qualities;
+  }
+
+  public int[] getChannelA() {
+    return traces[0];
+  }
+
+  public int[] getChannelC() {
+    return traces[1];
+  }
+
+  public int[] getChannelG() {
+    return traces[2];
+  }
+
+  public int[] getChannelT() {
+    return traces[3];
+  }
+
+  public int[] getBaseCalls() {
+    return baseCalls;
+  }
+}
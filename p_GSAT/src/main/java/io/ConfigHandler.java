@@ -115,6 +115,53 @@ public class ConfigHandler {
    */
   private static int startcounter = defaultValues[4];
 
+  /**
+   * Number of threads which analyse sequences at the same time. With 1 thread, all sequences are
+   * analysed one after another. The default value is 1.
+   * 
+   * @see gui.GUIUtils#runAnalysis(java.util.LinkedList, String, String,
+   *      java.util.function.DoubleConsumer)
+   */
+  private static int analysisThreads = 1;
+
+  /**
+   * Indicates whether AB1 files are read with the memory mapped {@link AbifReader} instead of
+   * Jillion. By default, Jillion is used.
+   * 
+   * @see SequenceReader#convertFileIntoSequence(java.io.File)
+   */
+  private static boolean mappedAb1Reader = false;
+
+  /**
+   * Indicates whether mutations are searched with the linear space alignment, which needs much
+   * less memory for long genes but takes more time. By default, the whole Levenshtein matrix is
+   * used.
+   * 
+   * @see analysis.MutationAnalysis#reportDifferencesLinearSpace(String, String)
+   */
+  private static boolean linearSpaceAlignment = false;
+
+  /**
+   * Indicates whether analysis results are cached, so files which were already analysed with the
+   * same gene and parameters are not analysed again. By default, results are cached.
+   * 
+   * @see ResultCache
+   */
+  private static boolean resultCache = true;
+
+  /**
+   * The maximal size of the result cache in megabytes. The default value is 64.
+   */
+  private static int resultCacheSize = 64;
+
+  /**
+   * The maximal number of connections to the database which are open at the same time. Connections
+   * are reused, so most database accesses don't have to connect again. The default value is 4.
+   * 
+   * @see ConnectionPool
+   */
+  private static int dbPoolSize = 4;
+
   /**
    * The date format which is used throughout the program.
    */
@@ -203,6 +250,26 @@ public class ConfigHandler {
         case "startcounter":
           ConfigHandler.setStartcounter(Integer.parseInt(value));
           break;
+
+        // Performance parameters
+        case "analysisThreads":
+          ConfigHandler.setAnalysisThreads(Integer.parseInt(value));
+          break;
+        case "mappedAb1Reader":
+          ConfigHandler.setMappedAb1Reader(Boolean.parseBoolean(value));
+          break;
+        case "linearSpaceAlignment":
+          ConfigHandler.setLinearSpaceAlignment(Boolean.parseBoolean(value));
+          break;
+        case "resultCache":
+          ConfigHandler.setResultCache(Boolean.parseBoolean(value));
+          break;
+        case "resultCacheSize":
+          ConfigHandler.setResultCacheSize(Integer.parseInt(value));
+          break;
+        case "dbPoolSize":
+          ConfigHandler.setDbPoolSize(Integer.parseInt(value));
+          break;
         default:
           throw new UnknownConfigFieldException(key);
 
@@ -324,6 +391,21 @@ public class ConfigHandler {
     configWriter.write("startcounter" + SEPARATOR_CHAR + startcounter);
     configWriter.write(System.getProperty("line.separator"));
 
+    // write performance parameter
+
+    configWriter.write("analysisThreads" + SEPARATOR_CHAR + analysisThreads);
+    configWriter.write(System.getProperty("line.separator"));
+    configWriter.write("mappedAb1Reader" + SEPARATOR_CHAR + mappedAb1Reader);
+    configWriter.write(System.getProperty("line.separator"));
+    configWriter.write("linearSpaceAlignment" + SEPARATOR_CHAR + linearSpaceAlignment);
+    configWriter.write(System.getProperty("line.separator"));
+    configWriter.write("resultCache" + SEPARATOR_CHAR + resultCache);
+    configWriter.write(System.getProperty("line.separator"));
+    configWriter.write("resultCacheSize" + SEPARATOR_CHAR + resultCacheSize);
+    configWriter.write(System.getProperty("line.separator"));
+    configWriter.write("dbPoolSize" + SEPARATOR_CHAR + dbPoolSize);
+    configWriter.write(System.getProperty("line.separator"));
+
     configWriter.close();
   }
 
@@ -486,6 +568,54 @@ public class ConfigHandler {
     ConfigHandler.startcounter = startcounter;
   }
 
+  public static int getAnalysisThreads() {
+    return analysisThreads;
+  }
+
+  public static void setAnalysisThreads(int analysisThreads) {
+    ConfigHandler.analysisThreads = Math.max(1, analysisThreads);
+  }
+
+  public static boolean isMappedAb1Reader() {
+    return mappedAb1Reader;
+  }
+
+  public static void setMappedAb1Reader(boolean mappedAb1Reader) {
+    ConfigHandler.mappedAb1Reader = mappedAb1Reader;
+  }
+
+  public static boolean isLinearSpaceAlignment() {
+    return linearSpaceAlignment;
+  }
+
+  public static void setLinearSpaceAlignment(boolean linearSpaceAlignment) {
+    ConfigHandler.linearSpaceAlignment = linearSpaceAlignment;
+  }
+
+  public static boolean isResultCache() {
+    return resultCache;
+  }
+
+  public static void setResultCache(boolean resultCache) {
+    ConfigHandler.resultCache = resultCache;
+  }
+
+  public static int getResultCacheSize() {
+    return resultCacheSize;
+  }
+
+  public static void setResultCacheSize(int resultCacheSize) {
+    ConfigHandler.resultCacheSize = Math.max(0, resultCacheSize);
+  }
+
+  public static int getDbPoolSize() {
+    return dbPoolSize;
+  }
+
+  public static void setDbPoolSize(int dbPoolSize) {
+    ConfigHandler.dbPoolSize = Math.max(1, dbPoolSize);
+  }
+
   public static int[] getDefaultValues() {
     return defaultValues;
   }
@@ -0,0 +1,370 @@
+package io;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+import javax.sql.DataSource;
+
+/**
+ * This class keeps connections to the database open, so they can be reused by later database
+ * accesses. Opening a connection to a MySQL server needs several round trips (TCP, authentication,
+ * session setup), which took most of the time of small accesses like the ones of the database
+ * window.
+ * <p>
+ * The number of open connections is limited. Connections which were idle for a while are checked
+ * before they are handed out again, and connections which were idle for too long are closed. The
+ * schema is selected once per connection and not before every statement.
+ * </p>
+ *
+ * @see DatabaseConnection#establishConnection()
+ *
+ * @author Lovis Heindrich
+ */
+public class ConnectionPool {
+
+  /**
+   * Connections which were idle for a shorter time (in milliseconds) are handed out without check.
+   */
+  private static final long VALIDATION_MILLIS = 5000;
+
+  /**
+   * The time in seconds the server has to answer the check of a connection.
+   */
+  private static final int VALIDATION_TIMEOUT = 2;
+
+  /**
+   * The maximal time in milliseconds to wait for a connection if all connections are in use.
+   */
+  private static final long BORROW_TIMEOUT_MILLIS = 30000;
+
+  /**
+   * A connection of the pool and its state.
+   */
+  private static class Entry {
+
+    private final Connection connection;
+
+    /**
+     * The time when the connection was released the last time, in milliseconds.
+     */
+    private long lastUsed;
+
+    /**
+     * Indicates whether the schema is selected on this connection.
+     */
+    private volatile boolean schemaBound;
+
+    private Entry(Connection connection) {
+      this.connection = connection;
+    }
+  }
+
+  private final DataSource dataSource;
+
+  /**
+   * The schema (database) which is selected on the connections.
+   */
+  private final String schema;
+
+  /**
+   * The maximal number of open connections.
+   */
+  private final int maxSize;
+
+  /**
+   * Idle connections are closed after this time in milliseconds.
+   */
+  private final long idleMillis;
+
+  /**
+   * All open connections, in use or idle.
+   */
+  private final IdentityHashMap<Connection, Entry> entries =
+      new IdentityHashMap<Connection, Entry>();
+
+  /**
+   * The idle connections, the most recently used connection comes first.
+   */
+  private final ArrayDeque<Entry> idle = new ArrayDeque<Entry>();
+
+  /**
+   * The number of connections which are being opened.
+   */
+  private int opening;
+
+  private boolean closed;
+
+  private long created;
+
+  private long reused;
+
+  /**
+   * Creates an empty pool. Connections are opened when they are needed.
+   *
+   * @param dataSource the source of new connections
+   * @param schema the schema which is selected by {@link #bindSchema(Connection)}
+   * @param maxSize the maximal number of open connections
+   * @param idleMillis the time in milliseconds after which idle connections are closed
+   *
+   * @author Lovis Heindrich
+   */
+  public ConnectionPool(DataSource dataSource, String schema, int maxSize, long idleMillis) {
+    this.dataSource = dataSource;
+    this.schema = schema;
+    this.maxSize = Math.max(1, maxSize);
+    this.idleMillis = idleMillis;
+  }
+
+  /**
+   * Returns an open connection. An idle connection is reused if possible, otherwise a new
+   * connection is opened. If the maximal number of connections is in use, this method waits until
+   * one is released.
+   *
+   * @return a connection which has to be given back by {@link #release(Connection)}
+   *
+   * @throws SQLException if no connection can be opened or no connection is released in time
+   *
+   * @author Lovis Heindrich
+   */
+  public Connection borrow() throws SQLException {
+    long deadline = System.currentTimeMillis() + BORROW_TIMEOUT_MILLIS;
+    while (true) {
+      Entry entry;
+      synchronized (this) {
+        if (closed) {
+          throw new SQLException("The connection pool is closed.");
+        }
+        evictIdle();
+        entry = idle.pollFirst();
+        if (entry == null) {
+          if (entries.size() + opening >= maxSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+              throw new SQLException("No database connection is available.");
+            }
+            try {
+              wait(remaining);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new SQLException("Waiting for a database connection was interrupted.");
+            }
+            continue;
+          }
+          // reserve the place of the new connection
+          opening++;
+        }
+      }
+
+      if (entry == null) {
+        return open();
+      }
+      if (System.currentTimeMillis() - entry.lastUsed < VALIDATION_MILLIS || isValid(entry)) {
+        synchronized (this) {
+          reused++;
+        }
+        return entry.connection;
+      }
+      discard(entry);
+    }
+  }
+
+  /**
+   * Opens a new connection in the place reserved by {@link #borrow()}.
+   *
+   * @author Lovis Heindrich
+   */
+  private Connection open() throws SQLException {
+    Connection connection;
+    try {
+      connection = dataSource.getConnection();
+    } catch (SQLException | RuntimeException e) {
+      synchronized (this) {
+        opening--;
+        notifyAll();
+      }
+      throw e;
+    }
+    synchronized (this) {
+      opening--;
+      entries.put(connection, new Entry(connection));
+      created++;
+    }
+    return connection;
+  }
+
+  private boolean isValid(Entry entry) {
+    try {
+      return entry.connection.isValid(VALIDATION_TIMEOUT);
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Selects the schema of the pool on a borrowed connection, unless it is already selected.
+   *
+   * @param connection a borrowed connection
+   *
+   * @throws SQLException if the schema can't be selected
+   *
+   * @author Lovis Heindrich
+   */
+  public void bindSchema(Connection connection) throws SQLException {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(connection);
+    }
+    if (entry == null) {
+      // not a connection of this pool
+      connection.setCatalog(schema);
+      return;
+    }
+    if (!entry.schemaBound) {
+      connection.setCatalog(schema);
+      entry.schemaBound = true;
+    }
+  }
+
+  /**
+   * Forgets which connections have the schema selected, e.g. because the schema was dropped and
+   * created again.
+   *
+   * @author Lovis Heindrich
+   */
+  public synchronized void unbindSchema() {
+    for (Entry entry : entries.values()) {
+      entry.schemaBound = false;
+    }
+  }
+
+  /**
+   * Gives a borrowed connection back to the pool. Open transactions are rolled back. Connections
+   * which are broken or don't belong to this pool are closed.
+   *
+   * @param connection a borrowed connection
+   *
+   * @author Lovis Heindrich
+   */
+  public void release(Connection connection) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(connection);
+    }
+    if (entry == null) {
+      close(connection);
+      return;
+    }
+    try {
+      if (connection.isClosed()) {
+        discard(entry);
+        return;
+      }
+      if (!connection.getAutoCommit()) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      discard(entry);
+      return;
+    }
+    synchronized (this) {
+      if (closed) {
+        entries.remove(connection);
+      } else {
+        entry.lastUsed = System.currentTimeMillis();
+        idle.addFirst(entry);
+        evictIdle();
+        notifyAll();
+        return;
+      }
+    }
+    close(connection);
+  }
+
+  /**
+   * Closes the idle connections and every connection which is released later.
+   *
+   * @author Lovis Heindrich
+   */
+  public void close() {
+    ArrayDeque<Entry> closing;
+    synchronized (this) {
+      closed = true;
+      closing = new ArrayDeque<Entry>(idle);
+      idle.clear();
+      for (Entry entry : closing) {
+        entries.remove(entry.connection);
+      }
+      notifyAll();
+    }
+    for (Entry entry : closing) {
+      close(entry.connection);
+    }
+  }
+
+  /**
+   * Closes the connections which were idle for too long. The least recently used connections are
+   * at the end of the idle connections.
+   *
+   * @author Lovis Heindrich
+   */
+  private synchronized void evictIdle() {
+    long now = System.currentTimeMillis();
+    Iterator<Entry> iterator = idle.descendingIterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (now - entry.lastUsed < idleMillis) {
+        break;
+      }
+      iterator.remove();
+      entries.remove(entry.connection);
+      close(entry.connection);
+    }
+  }
+
+  private void discard(Entry entry) {
+    synchronized (this) {
+      entries.remove(entry.connection);
+      notifyAll();
+    }
+    close(entry.connection);
+  }
+
+  private static void close(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      // the connection is not used anymore
+    }
+  }
+
+  // GETTERs:
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of open connections, in use or idle.
+   *
+   * @return the number of open connections
+   */
+  public synchronized int getOpenCount() {
+    return entries.size();
+  }
+
+  public synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  public synchronized long getCreated() {
+    return created;
+  }
+
+  public synchronized long getReused() {
+    return reused;
+  }
+}
@@ -10,13 +10,20 @@ import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
 
+import com.mysql.cj.core.conf.PropertyDefinitions;
 import com.mysql.cj.jdbc.MysqlDataSource;
 
 import analysis.AnalysedSequence;
 import analysis.Gene;
 import analysis.Primer;
+import analysis.Sequence;
 import exceptions.ConfigNotFoundException;
 import exceptions.DatabaseConnectionException;
 import exceptions.DatabaseErrorException;
@@ -37,6 +44,66 @@ public class DatabaseConnection {
   private static Connection conn;
 
 
+  /**
+   * The number of calls of {@link #establishConnection()} which were not followed by a call of
+   * {@link #releaseConnection()} yet. Nested database accesses (e.g. the researcher of a pulled
+   * sequence) use the connection of the outer access.
+   */
+  private static int connectionDepth;
+
+
+  /**
+   * Keeps the connections open, so they can be reused by the next database access.
+   */
+  private static ConnectionPool pool;
+
+
+  /**
+   * Idle connections of the pool are closed after this time in milliseconds.
+   */
+  private static final long POOL_IDLE_MILLIS = 5 * 60 * 1000;
+
+
+  /**
+   * The number of sequences which are pushed together by {@link #pushAllData(Iterable)}.
+   */
+  private static final int BATCH_SIZE = 500;
+
+
+  /**
+   * Separates the parts of the keys which identify genes, sequences and mutations during an
+   * upload.
+   */
+  private static final String KEY_SEPARATOR = "\n";
+
+
+  /**
+   * Inserts a sequence, the values are set by
+   * {@link #setSequenceValues(PreparedStatement, AnalysedSequence, int, int)}.
+   */
+  private static final String INSERT_SEQUENCE =
+      "INSERT INTO sequences (name, sequence, date, researcher, comment, manualcheck, "
+          + "gene, primer, trimpercent, histag, avgquality, digest) "
+          + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?)";
+
+
+  /**
+   * Ends an insert statement, so an existing row with the same unique key is kept. Its id is
+   * returned as generated key.
+   */
+  private static final String UPSERT = "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)";
+
+
+  /**
+   * Selects the genes (called g) together with the names of their researchers.
+   * 
+   * @see #readGene(ResultSet)
+   */
+  private static final String SELECT_GENES = "SELECT g.id, g.name, g.sequence, g.date, g.comment, "
+      + "g.organism, r.name AS researchername FROM genes g "
+      + "LEFT JOIN researchers r ON r.id = g.researcher";
+
+
   /**
    * MySql connection object, necessary to indicate the data source.
    */
@@ -79,6 +146,15 @@ public class DatabaseConnection {
     dataSource.setPassword(pass);
     dataSource.setPort(port);
     dataSource.setServerName(server);
+    // batches are sent as one statement
+    dataSource.<Boolean>getModifiableProperty(PropertyDefinitions.PNAME_rewriteBatchedStatements)
+        .setValue(true);
+
+    // connections of the old data source can't be reused
+    if (pool != null) {
+      pool.close();
+    }
+    pool = new ConnectionPool(dataSource, "gsat", ConfigHandler.getDbPoolSize(), POOL_IDLE_MILLIS);
   }
 
 
@@ -99,8 +175,8 @@ public class DatabaseConnection {
     LinkedList<Gene> allGenes = new LinkedList<Gene>();
 
     establishConnection();
-
     try {
+      useGsat();
       PreparedStatement pstmt =
           conn.prepareStatement("SELECT id, name, sequence, researcher FROM genes");
 
@@ -118,25 +194,32 @@ public class DatabaseConnection {
 
     } catch (SQLException e) {
       throw new DatabaseErrorException();
+    } finally {
+      releaseConnection();
     }
 
-    conn.close();
     return allGenes;
   }
 
 
   /**
-   * Initializes a new connection. This method is often called at the beginning of a data retrieval
-   * or upload.
+   * Initializes a connection. This method is often called at the beginning of a data retrieval or
+   * upload. An open connection of the pool is reused if possible. If a connection is already
+   * established (e.g. by an outer database access), it is used again.
    * 
    * @throws DatabaseConnectionException Error while connecting to database.
    * 
+   * @see #releaseConnection()
+   * 
    * @author Lovis Heindrich
    */
   public static void establishConnection() throws DatabaseConnectionException {
 
     try {
-      conn = dataSource.getConnection();
+      if (connectionDepth == 0) {
+        conn = pool.borrow();
+      }
+      connectionDepth++;
     } catch (SQLException e) {
 
       throw new DatabaseConnectionException();
@@ -144,6 +227,37 @@ public class DatabaseConnection {
   }
 
 
+  /**
+   * Ends the use of the connection initialized by {@link #establishConnection()}. The connection is
+   * given back to the pool when the outermost database access is finished.
+   * 
+   * @author Lovis Heindrich
+   */
+  public static void releaseConnection() {
+    if (connectionDepth == 0) {
+      return;
+    }
+    connectionDepth--;
+    if (connectionDepth == 0) {
+      pool.release(conn);
+      conn = null;
+    }
+  }
+
+
+  /**
+   * Selects the gsat database on the current connection. The database is only selected once per
+   * connection of the pool.
+   * 
+   * @throws SQLException Error while selecting the database.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static void useGsat() throws SQLException {
+    pool.bindSchema(conn);
+  }
+
+
   /**
    * Creates the GSAT database structure consisting of four tables: genes, sequences, mutations and
    * researcher. Names must not be changed. If a database called 'gsat' already exists it will be
@@ -158,35 +272,43 @@ public class DatabaseConnection {
     try {
 
       establishConnection();
-      Statement stmt = conn.createStatement();
-
-      // check if old gsat database exists
-      ResultSet rs = stmt.executeQuery(
-          "SELECT * FROM information_schema.tables " + "WHERE table_schema = 'gsat' LIMIT 1");
-      if (rs.next()) {
-        stmt.executeUpdate("DROP DATABASE gsat");
+      try {
+        Statement stmt = conn.createStatement();
+
+        // check if old gsat database exists
+        ResultSet rs = stmt.executeQuery(
+            "SELECT * FROM information_schema.tables " + "WHERE table_schema = 'gsat' LIMIT 1");
+        if (rs.next()) {
+          stmt.executeUpdate("DROP DATABASE gsat");
+          // the other connections don't use gsat anymore
+          pool.unbindSchema();
+        }
+        stmt.executeUpdate("CREATE DATABASE gsat");
+        stmt.execute("USE gsat");
+        stmt.executeUpdate("CREATE TABLE genes (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
+            + "name VARCHAR(100) NOT NULL, sequence MEDIUMTEXT NOT NULL, date DATE, "
+            + "researcher INTEGER unsigned, comment VARCHAR(1000), organism VARCHAR(1000), "
+            + "PRIMARY KEY(id))");
+        stmt.executeUpdate("CREATE TABLE primer (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
+            + "name VARCHAR(100) NOT NULL, primerid VARCHAR(100) NOT NULL, "
+            + "sequence MEDIUMTEXT NOT NULL, date DATE, researcher INTEGER unsigned, "
+            + "meltingpoint INTEGER, comment VARCHAR(1000), PRIMARY KEY(id))");
+        stmt.executeUpdate("CREATE TABLE sequences (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
+            + "name VARCHAR(100) NOT NULL, sequence MEDIUMTEXT NOT NULL, date DATE, "
+            + "researcher INTEGER unsigned, comment VARCHAR(1000), manualcheck CHAR(1), "
+            + "gene INTEGER unsigned, primer MEDIUMTEXT, trimpercent INTEGER unsigned, "
+            + "histag INTEGER, " + "avgquality INTEGER, PRIMARY KEY(id))");
+        stmt.executeUpdate("CREATE TABLE mutations (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
+            + "mutation VARCHAR(100) NOT NULL, sequence INTEGER unsigned NOT NULL, "
+            + "PRIMARY KEY(id))");
+        stmt.executeUpdate("CREATE TABLE researchers (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
+            + "name VARCHAR(100) NOT NULL, PRIMARY KEY(id))");
+        stmt.close();
+        // digests and indexes are added by the migrations
+        SchemaMigrations.migrate(conn);
+      } finally {
+        releaseConnection();
       }
-      stmt.executeUpdate("CREATE DATABASE gsat");
-      stmt.execute("USE gsat");
-      stmt.executeUpdate("CREATE TABLE genes (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
-          + "name VARCHAR(100) NOT NULL, sequence MEDIUMTEXT NOT NULL, date DATE, "
-          + "researcher INTEGER unsigned, comment VARCHAR(1000), organism VARCHAR(1000), "
-          + "PRIMARY KEY(id))");
-      stmt.executeUpdate("CREATE TABLE primer (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
-          + "name VARCHAR(100) NOT NULL, primerid VARCHAR(100) NOT NULL, "
-          + "sequence MEDIUMTEXT NOT NULL, date DATE, researcher INTEGER unsigned, "
-          + "meltingpoint INTEGER, comment VARCHAR(1000), PRIMARY KEY(id))");
-      stmt.executeUpdate("CREATE TABLE sequences (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
-          + "name VARCHAR(100) NOT NULL, sequence MEDIUMTEXT NOT NULL, date DATE, "
-          + "researcher INTEGER unsigned, comment VARCHAR(1000), manualcheck CHAR(1), "
-          + "gene INTEGER unsigned, primer MEDIUMTEXT, trimpercent INTEGER unsigned, "
-          + "histag INTEGER, " + "avgquality INTEGER, PRIMARY KEY(id))");
-      stmt.executeUpdate("CREATE TABLE mutations (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
-          + "mutation VARCHAR(100) NOT NULL, sequence INTEGER unsigned NOT NULL, PRIMARY KEY(id))");
-      stmt.executeUpdate("CREATE TABLE researchers (id INTEGER unsigned NOT NULL AUTO_INCREMENT, "
-          + "name VARCHAR(100) NOT NULL, PRIMARY KEY(id))");
-      stmt.close();
-      conn.close();
 
     } catch (DatabaseConnectionException | SQLException e) {
       throw new DatabaseConnectionException();
@@ -210,55 +332,54 @@ public class DatabaseConnection {
   public static boolean gsatExists() throws SQLException, DatabaseConnectionException {
 
     establishConnection();
-    Statement stmt = conn.createStatement();
+    try {
+      Statement stmt = conn.createStatement();
 
-    // check if table 'genes' exists
-    ResultSet rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
-        + "WHERE table_schema = 'gsat' AND table_name = 'genes' LIMIT 1");
-    if (!rs.next()) {
-      stmt.close();
-      conn.close();
-      return false;
-    }
+      // check if table 'genes' exists
+      ResultSet rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
+          + "WHERE table_schema = 'gsat' AND table_name = 'genes' LIMIT 1");
+      if (!rs.next()) {
+        stmt.close();
+        return false;
+      }
 
-    // check if table 'sequences' exists
-    rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
-        + "WHERE table_schema = 'gsat' AND table_name = 'sequences' LIMIT 1");
-    if (!rs.next()) {
-      stmt.close();
-      conn.close();
-      return false;
-    }
+      // check if table 'sequences' exists
+      rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
+          + "WHERE table_schema = 'gsat' AND table_name = 'sequences' LIMIT 1");
+      if (!rs.next()) {
+        stmt.close();
+        return false;
+      }
 
-    // check if table 'mutations' exists
-    rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
-        + "WHERE table_schema = 'gsat' AND table_name = 'mutations' LIMIT 1");
-    if (!rs.next()) {
-      stmt.close();
-      return false;
-    }
+      // check if table 'mutations' exists
+      rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
+          + "WHERE table_schema = 'gsat' AND table_name = 'mutations' LIMIT 1");
+      if (!rs.next()) {
+        stmt.close();
+        return false;
+      }
 
-    // check if table 'researchers' exists
-    rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
-        + "WHERE table_schema = 'gsat' AND table_name = 'researchers' LIMIT 1");
-    if (!rs.next()) {
-      stmt.close();
-      conn.close();
-      return false;
-    }
+      // check if table 'researchers' exists
+      rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
+          + "WHERE table_schema = 'gsat' AND table_name = 'researchers' LIMIT 1");
+      if (!rs.next()) {
+        stmt.close();
+        return false;
+      }
+
+      // check if table 'primer' exists
+      rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
+          + "WHERE table_schema = 'gsat' AND table_name = 'primer' LIMIT 1");
+      if (!rs.next()) {
+        stmt.close();
+        return false;
+      }
 
-    // check if table 'primer' exists
-    rs = stmt.executeQuery("SELECT * FROM information_schema.tables "
-        + "WHERE table_schema = 'gsat' AND table_name = 'primer' LIMIT 1");
-    if (!rs.next()) {
       stmt.close();
-      conn.close();
-      return false;
+      return true;
+    } finally {
+      releaseConnection();
     }
-
-    stmt.close();
-    conn.close();
-    return true;
   }
 
 
@@ -278,72 +399,268 @@ public class DatabaseConnection {
   public static void setDatabaseConnection(String username, String password, int port,
       String server) throws DatabaseConnectionException, SQLException {
 
+    // the open connections can be reused if the database doesn't change
+    boolean sameDatabase = pool != null && Objects.equals(user, username)
+        && Objects.equals(pass, password) && DatabaseConnection.port == port
+        && Objects.equals(DatabaseConnection.server, server)
+        && pool.getMaxSize() == ConfigHandler.getDbPoolSize();
+
     DatabaseConnection.user = username;
     DatabaseConnection.pass = password;
     DatabaseConnection.port = port;
     DatabaseConnection.server = server;
-    DatabaseConnection.initDatabase();
+    if (!sameDatabase) {
+      DatabaseConnection.initDatabase();
+    }
 
     // check if database structure already exists
     if (!gsatExists()) {
       createDatabase();
+    } else {
+      // apply the changes of the structure since the database was created
+      establishConnection();
+      try {
+        useGsat();
+        SchemaMigrations.migrate(conn);
+      } finally {
+        releaseConnection();
+      }
     }
 
     establishConnection();
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
-    conn.close();
+    try {
+      useGsat();
+    } finally {
+      releaseConnection();
+    }
   }
 
 
   /**
    * Pushes all data from a recent analysis: All the information in the result CSV files, the
-   * reference genes, mutations and the researcher.
-   * 
-   * @param sequences The list of sequences representing the analysis results
+   * reference genes, mutations and the researcher. Everything is pushed in one transaction, so
+   * either all or none of the results are stored.
+   * <p>
+   * The sequences are pushed in batches of {@link #BATCH_SIZE}: researchers and genes are only
+   * looked up once per upload, the existing sequences and mutations of a batch are found with one
+   * query each and the new ones are inserted with JDBC batches. So only a few round trips to the
+   * server are needed per batch instead of several per sequence.
+   * </p>
+   * 
+   * @param sequences The sequences representing the analysis results. They are iterated only once,
+   *        so they may be read while they are pushed (e.g. by a {@link ResultFileReader}).
    * 
    * @throws SQLException Error while executing SQL statements.
    * @throws DatabaseConnectionException Error while connecting to database.
    * 
    * @see #pushResearcher(String)
    * @see #pushGene(Gene, int)
-   * @see #pushSequence(AnalysedSequence, int, int)
-   * @see #pushMutations(LinkedList, int)
+   * @see #pushBatch(List, HashMap, HashMap)
    * 
    * @author Lovis Heindrich
    */
-  public static void pushAllData(LinkedList<AnalysedSequence> sequences)
+  public static void pushAllData(Iterable<AnalysedSequence> sequences)
       throws SQLException, DatabaseConnectionException {
 
     // get a connection
     establishConnection();
+    try {
+      useGsat();
+
+      conn.setAutoCommit(false);
+      try {
+        HashMap<String, Integer> researcherIds = new HashMap<String, Integer>();
+        HashMap<String, Integer> geneIds = new HashMap<String, Integer>();
+        ArrayList<AnalysedSequence> batch = new ArrayList<AnalysedSequence>(BATCH_SIZE);
+
+        // for each sequence
+        for (AnalysedSequence sequence : sequences) {
+          batch.add(sequence);
+          if (batch.size() == BATCH_SIZE) {
+            pushBatch(batch, researcherIds, geneIds);
+            batch.clear();
+          }
+        }
+        pushBatch(batch, researcherIds, geneIds);
+
+        conn.commit();
+      } catch (SQLException | RuntimeException e) {
+        // nothing of this upload is stored
+        conn.rollback();
+        throw e;
+      } finally {
+        conn.setAutoCommit(true);
+      }
+    } finally {
+      releaseConnection();
+    }
+  }
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
 
-    // for each sequence
-    for (AnalysedSequence sequence : sequences) {
+  /**
+   * Pushes a batch of sequences and their mutations. Sequences and mutations which are already
+   * stored are not pushed again, like in {@link #pushSequence(AnalysedSequence, int, int)} and
+   * {@link #pushMutations(LinkedList, int)}.
+   * 
+   * @param batch The sequences.
+   * @param researcherIds The ids of the researchers pushed so far, the keys are their names.
+   * @param geneIds The ids of the genes pushed so far, the keys are created by
+   *        {@link #getGeneKey(Gene)}.
+   * 
+   * @throws SQLException Error while executing SQL statements.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static void pushBatch(List<AnalysedSequence> batch,
+      HashMap<String, Integer> researcherIds, HashMap<String, Integer> geneIds)
+      throws SQLException {
+    if (batch.isEmpty()) {
+      return;
+    }
 
-      // push researcher and get id
+    // push researchers and genes which were not pushed during this upload yet
+    String[] keys = new String[batch.size()];
+    LinkedHashSet<String> names = new LinkedHashSet<String>();
+    for (int i = 0; i < batch.size(); i++) {
+      AnalysedSequence sequence = batch.get(i);
       String researcher = sequence.getResearcher();
-      int researcherId = pushResearcher(researcher);
+      Integer researcherId = researcherIds.get(researcher);
+      if (researcherId == null) {
+        researcherId = pushResearcher(researcher);
+        researcherIds.put(researcher, researcherId);
+      }
+      String geneKey = getGeneKey(sequence.getReferencedGene());
+      Integer geneId = geneIds.get(geneKey);
+      if (geneId == null) {
+        geneId = pushGene(sequence.getReferencedGene(), researcherId);
+        geneIds.put(geneKey, geneId);
+      }
+      keys[i] = getSequenceKey(sequence.getFileName(), sequence.getDigest(), geneId);
+      names.add(sequence.getFileName());
+    }
+
+    // find the sequences which are already stored
+    HashMap<String, Integer> sequenceIds = new HashMap<String, Integer>();
+    PreparedStatement pstmt = conn.prepareStatement(
+        "SELECT id, name, digest, gene FROM sequences WHERE name IN " + placeholders(names.size()));
+    int index = 1;
+    for (String name : names) {
+      pstmt.setString(index++, name);
+    }
+    ResultSet res = pstmt.executeQuery();
+    while (res.next()) {
+      sequenceIds.put(getSequenceKey(res.getString(2), res.getString(3), res.getInt(4)),
+          res.getInt(1));
+    }
+    pstmt.close();
+
+    // find the mutations of these sequences
+    HashSet<String> mutations = new HashSet<String>();
+    if (!sequenceIds.isEmpty()) {
+      pstmt = conn.prepareStatement("SELECT mutation, sequence FROM mutations WHERE sequence IN "
+          + placeholders(sequenceIds.size()));
+      index = 1;
+      for (int id : sequenceIds.values()) {
+        pstmt.setInt(index++, id);
+      }
+      res = pstmt.executeQuery();
+      while (res.next()) {
+        mutations.add(res.getInt(2) + KEY_SEPARATOR + res.getString(1));
+      }
+      pstmt.close();
+    }
+
+    // insert the new sequences (only once, if they occur several times)
+    LinkedHashSet<String> inserted = new LinkedHashSet<String>();
+    pstmt = conn.prepareStatement(INSERT_SEQUENCE, Statement.RETURN_GENERATED_KEYS);
+    for (int i = 0; i < batch.size(); i++) {
+      if (!sequenceIds.containsKey(keys[i]) && inserted.add(keys[i])) {
+        AnalysedSequence sequence = batch.get(i);
+        setSequenceValues(pstmt, sequence, researcherIds.get(sequence.getResearcher()),
+            geneIds.get(getGeneKey(sequence.getReferencedGene())));
+        pstmt.addBatch();
+      }
+    }
+    if (!inserted.isEmpty()) {
+      pstmt.executeBatch();
+      // the generated ids are returned in the order of the inserted sequences
+      res = pstmt.getGeneratedKeys();
+      for (String key : inserted) {
+        if (!res.next()) {
+          throw new SQLException("Missing id of an inserted sequence.");
+        }
+        sequenceIds.put(key, res.getInt(1));
+      }
+    }
+    pstmt.close();
+
+    // insert the new mutations
+    pstmt = conn.prepareStatement("INSERT INTO mutations (mutation, sequence) VALUES (?, ?)");
+    boolean newMutations = false;
+    for (int i = 0; i < batch.size(); i++) {
+      int sequenceId = sequenceIds.get(keys[i]);
+      for (String mutation : batch.get(i).getMutations()) {
+        if (mutations.add(sequenceId + KEY_SEPARATOR + mutation)) {
+          pstmt.setString(1, mutation);
+          pstmt.setInt(2, sequenceId);
+          pstmt.addBatch();
+          newMutations = true;
+        }
+      }
+    }
+    if (newMutations) {
+      pstmt.executeBatch();
+    }
+    pstmt.close();
+  }
 
-      // push gene with the researcher id and get gene id
-      int geneId = pushGene(sequence.getReferencedGene(), researcherId);
 
-      // push sequence and get id
-      int sequenceId = pushSequence(sequence, researcherId, geneId);
+  /**
+   * Creates the placeholders of an IN condition.
+   * 
+   * @param count The number of values.
+   * 
+   * @return The placeholders, e.g. "(?, ?, ?)".
+   * 
+   * @author Lovis Heindrich
+   */
+  private static String placeholders(int count) {
+    StringBuilder builder = new StringBuilder("(");
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append('?');
+    }
+    return builder.append(')').toString();
+  }
 
-      // push mutations
-      pushMutations(sequence.getMutations(), sequenceId);
 
+  /**
+   * Creates a key which identifies a gene like the unique index of the genes.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static String getGeneKey(Gene gene) {
+    String organism = gene.getOrganism();
+    if (organism == null) {
+      organism = "none";
     }
-    conn.close();
+    return gene.getName() + KEY_SEPARATOR + organism + KEY_SEPARATOR + gene.getDigest();
   }
 
 
+  /**
+   * Creates a key which identifies a sequence like the unique index of the sequences.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static String getSequenceKey(String name, String digest, int geneId) {
+    return geneId + KEY_SEPARATOR + name + KEY_SEPARATOR + digest;
+  }
+
+
+
   /**
    * Inserts all mutations for a single sequence into the database.
    * 
@@ -356,9 +673,7 @@ public class DatabaseConnection {
    */
   public static void pushMutations(LinkedList<String> mutations, int sequenceId)
       throws SQLException {
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+    useGsat();
 
     for (String mutation : mutations) {
 
@@ -384,7 +699,8 @@ public class DatabaseConnection {
   }
 
   /**
-   * Checks if a sequence already exists and pushes it otherwise.
+   * Checks if a sequence already exists and pushes it otherwise. Both is done by one statement,
+   * equal sequences are found by the digest of their nucleotides.
    * 
    * @param sequence The sequence that will be pushed.
    * @param researcherId The database id of the researcher.
@@ -399,13 +715,54 @@ public class DatabaseConnection {
   public static int pushSequence(AnalysedSequence sequence, int researcherId, int geneId)
       throws SQLException {
     // select database
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+    useGsat();
+
+    // push the sequence, or get the id of the existing sequence (found by the unique index)
+    PreparedStatement pstmt =
+        conn.prepareStatement(INSERT_SEQUENCE + " " + UPSERT, Statement.RETURN_GENERATED_KEYS);
+    setSequenceValues(pstmt, sequence, researcherId, geneId);
+    return executeUpsert(pstmt);
+  }
+
+
+  /**
+   * Executes and closes an insert statement ending with {@link #UPSERT}.
+   * 
+   * @param pstmt The insert statement, created with {@link Statement#RETURN_GENERATED_KEYS}.
+   * 
+   * @return The id of the inserted or existing row, or -1 if no id was returned.
+   * 
+   * @throws SQLException Error while executing the statement.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static int executeUpsert(PreparedStatement pstmt) throws SQLException {
+    pstmt.executeUpdate();
+    ResultSet res = pstmt.getGeneratedKeys();
+    int result = -1;
+    if (res.next()) {
+      result = res.getInt(1);
+    }
+    pstmt.close();
+    return result;
+  }
+
 
-    // set sequence parameter
-    String name = sequence.getFileName();
-    String seq = sequence.getSequence();
+
+  /**
+   * Sets the values of a sequence as the parameters of {@link #INSERT_SEQUENCE}.
+   * 
+   * @param pstmt The statement.
+   * @param sequence The sequence that will be pushed.
+   * @param researcherId The database id of the researcher.
+   * @param geneId The database id of the gene.
+   * 
+   * @throws SQLException Error while setting the parameters.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static void setSequenceValues(PreparedStatement pstmt, AnalysedSequence sequence,
+      int researcherId, int geneId) throws SQLException {
     // date conversion from string to sql.Date
     java.util.Date localDate;
     java.sql.Date sqlDate;
@@ -416,71 +773,29 @@ public class DatabaseConnection {
     } catch (ParseException e) {
       sqlDate = new Date(0);
     }
-    String comment = sequence.getComments();
     String checked;
     if (sequence.isManuallyChecked()) {
       checked = "y";
     } else {
       checked = "n";
     }
-    String primer = sequence.getPrimer();
-    int avgquality = sequence.getAvgQuality();
 
-    int trimPercent = (int) sequence.getTrimPercentage();
-    int histag = sequence.getHisTagPosition();
-
-    // check if sequence exists
-    PreparedStatement pstmt =
-        conn.prepareStatement("SELECT id, name, sequence, gene FROM sequences "
-            + "WHERE name = ? AND sequence = ? AND gene = ?");
-    pstmt.setString(1, name);
-    pstmt.setString(2, seq);
-    pstmt.setInt(3, geneId);
-
-    ResultSet res = pstmt.executeQuery();
-    if (res.next()) {
-      int result = res.getInt(1);
-      pstmt.close();
-      return result;
-    }
-    pstmt.close();
-    // push otherwise
-    pstmt = conn.prepareStatement(
-        "INSERT INTO sequences (name, sequence, date, researcher, comment, manualcheck, "
-            + "gene, primer, trimpercent, histag, avgquality) " + "VALUES (?,?,?,?,?,?,?,?,?,?,?)");
-    pstmt.setString(1, name);
-    pstmt.setString(2, seq);
+    pstmt.setString(1, sequence.getFileName());
+    pstmt.setString(2, sequence.getSequence());
     pstmt.setDate(3, sqlDate);
     pstmt.setInt(4, researcherId);
-    pstmt.setString(5, comment);
+    pstmt.setString(5, sequence.getComments());
     pstmt.setString(6, checked);
     pstmt.setInt(7, geneId);
-    pstmt.setString(8, primer);
-    pstmt.setInt(9, trimPercent);
-    pstmt.setInt(10, histag);
-    pstmt.setInt(11, avgquality);
-    pstmt.executeUpdate();
-    pstmt.close();
-    // get index of new sequence
-    pstmt = conn.prepareStatement("SELECT id, name, sequence, gene FROM sequences "
-        + "WHERE name = ? AND sequence = ? AND gene = ?");
-    pstmt.setString(1, name);
-    pstmt.setString(2, seq);
-    pstmt.setInt(3, geneId);
-
-    res = pstmt.executeQuery();
-    if (res.next()) {
-      int result = res.getInt(1);
-      pstmt.close();
-      return result;
-    } else {
-      pstmt.close();
-      return -1;
-
-    }
+    pstmt.setString(8, sequence.getPrimer());
+    pstmt.setInt(9, (int) sequence.getTrimPercentage());
+    pstmt.setInt(10, sequence.getHisTagPosition());
+    pstmt.setInt(11, sequence.getAvgQuality());
+    pstmt.setString(12, sequence.getDigest());
   }
 
 
+
   /**
    * Pushes a single gene and links it to the correct researcher. A researcher's name should always
    * be stored with a the genes he or she inserted into the database.
@@ -495,12 +810,8 @@ public class DatabaseConnection {
    * @author Lovis Heindrich
    */
   public static int pushGene(Gene gene, int researcherId) throws SQLException {
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+    useGsat();
 
-    String name = gene.getName();
-    String sequence = gene.getSequence();
     String organism = gene.getOrganism();
     if (organism == null) {
       organism = "none";
@@ -515,54 +826,22 @@ public class DatabaseConnection {
       sqlDate = new Date(0);
     }
 
-    String comment = gene.getComment();
-
-    // check if gene exists
-    PreparedStatement pstmt =
-        conn.prepareStatement("SELECT id, name, sequence, organism FROM genes "
-            + "WHERE name = ? AND sequence = ? AND organism = ?");
-    pstmt.setString(1, name);
-    pstmt.setString(2, sequence);
-    pstmt.setString(3, organism);
-
-    ResultSet res = pstmt.executeQuery();
-    if (res.next()) {
-      int result = res.getInt(1);
-      pstmt.close();
-      return result;
-    }
-
-    pstmt.close();
-
-    // push otherwise
-    pstmt = conn
-        .prepareStatement("INSERT INTO genes (name, sequence, date, researcher, comment, organism) "
-            + "VALUES (?, ?, ?, ?, ?, ?)");
-    pstmt.setString(1, name);
-    pstmt.setString(2, sequence);
+    // push the gene, or get the id of the existing gene (found by the unique index)
+    PreparedStatement pstmt = conn.prepareStatement(
+        "INSERT INTO genes (name, sequence, date, researcher, comment, organism, digest) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) " + UPSERT,
+        Statement.RETURN_GENERATED_KEYS);
+    pstmt.setString(1, gene.getName());
+    pstmt.setString(2, gene.getSequence());
     pstmt.setDate(3, sqlDate);
     pstmt.setInt(4, researcherId);
-    pstmt.setString(5, comment);
+    pstmt.setString(5, gene.getComment());
     pstmt.setString(6, organism);
-    pstmt.executeUpdate();
-    pstmt.close();
-    // get index of new gene
-    pstmt = conn.prepareStatement("SELECT id, name, sequence, organism FROM genes "
-        + "WHERE name = ? AND sequence = ? AND organism = ?");
-    pstmt.setString(1, name);
-    pstmt.setString(2, sequence);
-    pstmt.setString(3, organism);
-    res = pstmt.executeQuery();
-    if (res.next()) {
-      int result = res.getInt(1);
-      pstmt.close();
-      return result;
-    } else {
-      pstmt.close();
-      return -1;
-    }
+    pstmt.setString(7, gene.getDigest());
+    return executeUpsert(pstmt);
   }
 
+
   /**
    * Pushes a new researcher if he or she does not exist yet. Researchers are associated with genes
    * and analysis results.
@@ -576,9 +855,7 @@ public class DatabaseConnection {
    * @author Lovis Heindrich
    */
   public static int pushResearcher(String researcher) throws SQLException {
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+    useGsat();
 
     // check if researcher exists
     PreparedStatement pstmt =
@@ -635,22 +912,22 @@ public class DatabaseConnection {
 
     // get a connection
     establishConnection();
+    try {
+      // select gsat database
+      useGsat();
 
-    // select gsat database
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+      for (Gene gene : genes) {
+        // search for researcher
+        int researcherId = pushResearcher(gene.getResearcher());
 
-    for (Gene gene : genes) {
-      // search for researcher
-      int researcherId = pushResearcher(gene.getResearcher());
+        // push the gene
+        pushGene(gene, researcherId);
 
-      // push the gene
-      pushGene(gene, researcherId);
+      }
 
+    } finally {
+      releaseConnection();
     }
-
-    conn.close();
   }
 
   /**
@@ -674,20 +951,20 @@ public class DatabaseConnection {
 
     // get a connection
     establishConnection();
+    try {
+      // select gsat database
+      useGsat();
 
-    // select gsat database
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
-
-    for (Primer primer : primerList) {
-      // search for researcher
-      int researcherId = pushResearcher(primer.getResearcher());
+      for (Primer primer : primerList) {
+        // search for researcher
+        int researcherId = pushResearcher(primer.getResearcher());
 
-      // push the gene
-      pushPrimer(primer, researcherId);
+        // push the gene
+        pushPrimer(primer, researcherId);
+      }
+    } finally {
+      releaseConnection();
     }
-    conn.close();
   }
 
 
@@ -702,9 +979,7 @@ public class DatabaseConnection {
    * @author Lovis Heindrich
    */
   public static void pushPrimer(Primer primer, int researcherId) throws SQLException {
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+    useGsat();
 
     String name = primer.getName();
     String primerid = primer.getId();
@@ -760,8 +1035,6 @@ public class DatabaseConnection {
    * @throws DatabaseConnectionException Error while connecting to database.
    * @throws SQLException Error while executing SQL commands.
    * 
-   * @see #pullResearcherPerIndex(int)
-   * 
    * @author Lovis Heindrich
    */
   public static ArrayList<Primer> pullAllPrimer() throws DatabaseConnectionException, SQLException {
@@ -769,34 +1042,39 @@ public class DatabaseConnection {
 
     // get a connection
     establishConnection();
+    try {
+      useGsat();
+      Statement stmt = conn.createStatement();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-
-    // primer db layout (name, sequence, date, researcher, primerid,
-    // meltingpoint, comment)
-    ResultSet rs = stmt.executeQuery("SELECT * FROM primer");
-
-    // iterate over results
-    while (rs.next()) {
-      String name = rs.getString("name");
-      String sequence = rs.getString("sequence");
-      java.util.Date date = new Date(rs.getTimestamp("date").getTime());
-      int researcherId = rs.getInt("researcher");
-      String primerId = rs.getString("primerid");
-      int meltingPoint = rs.getInt("meltingpoint");
-      String comment = rs.getString("comment");
+      // primer db layout (name, sequence, date, researcher, primerid,
+      // meltingpoint, comment), the researcher's name is joined
+      ResultSet rs = stmt.executeQuery("SELECT p.name, p.sequence, p.date, p.primerid, "
+          + "p.meltingpoint, p.comment, r.name AS researchername FROM primer p "
+          + "LEFT JOIN researchers r ON r.id = p.researcher ORDER BY p.id");
+
+      // iterate over results
+      while (rs.next()) {
+        String name = rs.getString("name");
+        String sequence = rs.getString("sequence");
+        java.util.Date date = new Date(rs.getTimestamp("date").getTime());
+        String primerId = rs.getString("primerid");
+        int meltingPoint = rs.getInt("meltingpoint");
+        String comment = rs.getString("comment");
+
+        String researcher = rs.getString("researchername");
+        Primer primer =
+            new Primer(sequence, researcher, meltingPoint, primerId, name, comment, date);
+        primerList.add(primer);
+      }
 
-      String researcher = pullResearcherPerIndex(researcherId);
-      Primer primer = new Primer(sequence, researcher, meltingPoint, primerId, name, comment, date);
-      primerList.add(primer);
+      stmt.close();
+      return primerList;
+    } finally {
+      releaseConnection();
     }
-
-    stmt.close();
-    conn.close();
-    return primerList;
   }
 
+
   /**
    * Pulls all mutations which belong to a given sequence id and returns them as a LinkedList.
    * 
@@ -815,26 +1093,26 @@ public class DatabaseConnection {
 
     // get a connection
     establishConnection();
+    try {
+      useGsat();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
+      // get all mutations from the given sequence
+      PreparedStatement pstmt =
+          conn.prepareStatement("SELECT mutation FROM mutations WHERE sequence = ?");
+      pstmt.setInt(1, sequenceId);
 
-    // get all mutations from the given sequence
-    PreparedStatement pstmt =
-        conn.prepareStatement("SELECT mutation FROM mutations WHERE sequence = ?");
-    pstmt.setInt(1, sequenceId);
+      ResultSet res = pstmt.executeQuery();
 
-    ResultSet res = pstmt.executeQuery();
+      while (res.next()) {
+        String mutation = res.getString("mutation");
+        mutations.add(mutation);
+      }
 
-    while (res.next()) {
-      String mutation = res.getString("mutation");
-      mutations.add(mutation);
+      pstmt.close();
+      return mutations;
+    } finally {
+      releaseConnection();
     }
-
-    stmt.close();
-    pstmt.close();
-    conn.close();
-    return mutations;
   }
 
 
@@ -854,104 +1132,84 @@ public class DatabaseConnection {
     ArrayList<String> researchers = new ArrayList<String>();
 
     establishConnection();
+    try {
+      useGsat();
+      Statement stmt = conn.createStatement();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
+      ResultSet rs = stmt.executeQuery("SELECT * FROM researchers");
 
-    ResultSet rs = stmt.executeQuery("SELECT * FROM researchers");
+      while (rs.next()) {
+        String researcher = rs.getString("name");
+        researchers.add(researcher);
+      }
 
-    while (rs.next()) {
-      String researcher = rs.getString("name");
-      researchers.add(researcher);
+      stmt.close();
+      return researchers;
+    } finally {
+      releaseConnection();
     }
-
-    stmt.close();
-    conn.close();
-    return researchers;
-
   }
 
   /**
-   * Pulls a researcher identified by his or her id in the table of researchers.
-   * 
-   * @param researcherId The id of the researcher.
+   * Pulls all genes from the database and returns them as a list. This data will be used to fill
+   * the gene list in the settings Window.
    * 
-   * @return The researcher identified by researcherId
+   * @return Arraylist of all genes in the database.
    * 
-   * @throws SQLException Error while executing sql commands.
    * @throws DatabaseConnectionException Error while connecting to database.
+   * @throws SQLException Error while connecting to database.
    * 
    * @author Lovis Heindrich
    */
-  private static String pullResearcherPerIndex(int researcherId)
-      throws SQLException, DatabaseConnectionException {
-    String researcher = null;
-    establishConnection();
+  public static ArrayList<Gene> pullAllGenes() throws DatabaseConnectionException, SQLException {
+    ArrayList<Gene> genes = new ArrayList<Gene>();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
+    establishConnection();
+    try {
+      useGsat();
+      Statement stmt = conn.createStatement();
 
-    // get the gene from the given sequence
-    PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM researchers WHERE id = ?");
-    pstmt.setInt(1, researcherId);
+      ResultSet rs = stmt.executeQuery(SELECT_GENES + " ORDER BY g.id");
 
-    ResultSet rs = pstmt.executeQuery();
+      while (rs.next()) {
+        genes.add(readGene(rs));
+      }
 
-    if (rs.next()) {
-      researcher = rs.getString("name");
+      stmt.close();
+      return genes;
+    } finally {
+      releaseConnection();
     }
-    stmt.close();
-    pstmt.close();
-    conn.close();
-    return researcher;
   }
 
 
   /**
-   * Pulls all genes from the database and returns them as a list. This data will be used to fill
-   * the gene list in the settings Window.
+   * Creates a gene from the current row of a result of {@link #SELECT_GENES}.
    * 
-   * @return Arraylist of all genes in the database.
+   * @param rs The result.
    * 
-   * @throws DatabaseConnectionException Error while connecting to database.
-   * @throws SQLException Error while connecting to database.
+   * @return The gene.
    * 
-   * @see #pullResearcherPerIndex(int)
+   * @throws SQLException Error while reading the result.
    * 
    * @author Lovis Heindrich
    */
-  public static ArrayList<Gene> pullAllGenes() throws DatabaseConnectionException, SQLException {
-    ArrayList<Gene> genes = new ArrayList<Gene>();
-
-    establishConnection();
-
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-
-    ResultSet rs = stmt.executeQuery("SELECT * FROM genes");
-
-    while (rs.next()) {
-      // (name, sequence, date, researcher, comment, organism)
-      String name = rs.getString("name");
-      String sequence = rs.getString("sequence");
-      java.util.Date date = new Date(rs.getTimestamp("date").getTime());
-      int researcherId = rs.getInt("researcher");
-      String comment = rs.getString("comment");
-      String organism = rs.getString("organism");
-
-      // (String sequence, int id, String name, String researcher, String
-      // organism, String comment)
-      String researcher = pullResearcherPerIndex(researcherId);
-      Gene gene = new Gene(sequence, 0, name, researcher, organism, comment, date);
-      genes.add(gene);
-    }
-
-    stmt.close();
-    conn.close();
-    return genes;
+  private static Gene readGene(ResultSet rs) throws SQLException {
+    // (name, sequence, date, researcher, comment, organism)
+    String name = rs.getString("name");
+    String sequence = rs.getString("sequence");
+    java.util.Date date = new Date(rs.getTimestamp("date").getTime());
+    String researcher = rs.getString("researchername");
+    String comment = rs.getString("comment");
+    String organism = rs.getString("organism");
+
+    // (String sequence, int id, String name, String researcher, String
+    // organism, String comment)
+    return new Gene(sequence, 0, name, researcher, organism, comment, date);
   }
 
 
+
   /**
    * Pulls a gene identified by its index from the database. Genes have to be associated with a
    * result and with a researcher later on.
@@ -963,45 +1221,33 @@ public class DatabaseConnection {
    * @throws SQLException Error while executing SQL commands.
    * @throws DatabaseConnectionException Error while connecting to database.
    * 
-   * @see #pullResearcherPerIndex(int)
-   * 
    * @author Lovis Heindrich
    */
   public static Gene pullGenePerIndex(int index) throws SQLException, DatabaseConnectionException {
     Gene gene = null;
     establishConnection();
+    try {
+      useGsat();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-
-    // get the gene from the given sequence
-    PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM genes WHERE id = ?");
-    pstmt.setInt(1, index);
+      // get the gene from the given sequence
+      PreparedStatement pstmt = conn.prepareStatement(SELECT_GENES + " WHERE g.id = ?");
+      pstmt.setInt(1, index);
 
-    ResultSet rs = pstmt.executeQuery();
+      ResultSet rs = pstmt.executeQuery();
 
-    if (rs.next()) {
-      // (name, sequence, date, researcher, comment, organism)
-      String name = rs.getString("name");
-      String sequence = rs.getString("sequence");
-      java.util.Date date = new Date(rs.getTimestamp("date").getTime());
-      int researcherId = rs.getInt("researcher");
-      String comment = rs.getString("comment");
-      String organism = rs.getString("organism");
+      if (rs.next()) {
+        gene = readGene(rs);
+      }
+      pstmt.close();
 
-      // (String sequence, int id, String name, String researcher, String
-      // organism, String comment)
-      String researcher = pullResearcherPerIndex(researcherId);
-      gene = new Gene(sequence, 0, name, researcher, organism, comment, date);
+      return gene;
+    } finally {
+      releaseConnection();
     }
-    stmt.close();
-    pstmt.close();
-    conn.close();
-
-    return gene;
   }
 
 
+
   /**
    * Pulls all sequences from the database and returns them as a list of AnalysedSequences.
    * Associated data (mutations, researcher and gene) is also retrieved and added to the
@@ -1012,29 +1258,120 @@ public class DatabaseConnection {
    * @throws DatabaseConnectionException Error while connecting to database.
    * @throws SQLException Error while executing SQL commands.
    * 
-   * @see #pullMutationsPerSequence(int)
-   * @see #pullResearcherPerIndex(int)
-   * @see #pullGenePerIndex(int)
+   * @see #pullSequences(String, Object...)
    * 
    * @author Lovis Heindrich
    */
   public static ArrayList<AnalysedSequence> pullAllSequences()
       throws DatabaseConnectionException, SQLException {
-    ArrayList<AnalysedSequence> sequences = new ArrayList<AnalysedSequence>();
-
     establishConnection();
+    try {
+      useGsat();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
+      ArrayList<AnalysedSequence> sequences = pullSequences(null);
+
+      return sequences;
+    } finally {
+      releaseConnection();
+    }
+  }
 
-    ResultSet rs = stmt.executeQuery("SELECT * FROM sequences");
 
+  /**
+   * Pulls the sequences which fulfill a condition, together with their researchers, genes and
+   * mutations. Only three queries are needed, independent of the number of sequences: the genes
+   * and the mutations of all sequences are pulled at once and every gene is created only once.
+   * <p>
+   * The queries are executed in one read-only transaction with repeatable reads, so they all see
+   * the same state of the database. Otherwise, an upload between the queries could add sequences
+   * whose genes or mutations were not pulled.
+   * </p>
+   * 
+   * @param condition The condition of the sequences (the table is called s), or null if all
+   *        sequences are pulled.
+   * @param values The values of the parameters of the condition.
+   * 
+   * @return The sequences, in the order they were stored.
+   * 
+   * @throws SQLException Error while executing SQL commands.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static ArrayList<AnalysedSequence> pullSequences(String condition, Object... values)
+      throws SQLException {
+    // an outer transaction already sees one state of the database
+    if (!conn.getAutoCommit()) {
+      return querySequences(condition, values);
+    }
+
+    int isolation = conn.getTransactionIsolation();
+    conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    conn.setReadOnly(true);
+    conn.setAutoCommit(false);
+    try {
+      ArrayList<AnalysedSequence> sequences = querySequences(condition, values);
+      conn.commit();
+      return sequences;
+    } finally {
+      // ends the transaction if it wasn't committed
+      conn.setAutoCommit(true);
+      conn.setReadOnly(false);
+      conn.setTransactionIsolation(isolation);
+    }
+  }
+
+
+  /**
+   * Executes the queries of {@link #pullSequences(String, Object...)}.
+   * 
+   * @param condition The condition of the sequences (the table is called s), or null if all
+   *        sequences are pulled.
+   * @param values The values of the parameters of the condition.
+   * 
+   * @return The sequences, in the order they were stored.
+   * 
+   * @throws SQLException Error while executing SQL commands.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static ArrayList<AnalysedSequence> querySequences(String condition, Object... values)
+      throws SQLException {
+    String where = condition == null ? "" : " WHERE " + condition;
+
+    // the genes of the sequences, the keys are their ids
+    HashMap<Integer, Gene> genes = new HashMap<Integer, Gene>();
+    PreparedStatement pstmt = conn.prepareStatement(
+        SELECT_GENES + " WHERE g.id IN (SELECT s.gene FROM sequences s" + where + ")");
+    setValues(pstmt, values);
+    ResultSet rs = pstmt.executeQuery();
+    while (rs.next()) {
+      genes.put(rs.getInt("id"), readGene(rs));
+    }
+    pstmt.close();
+
+    // the mutations of the sequences, the keys are the ids of the sequences
+    HashMap<Integer, LinkedList<String>> mutations = new HashMap<Integer, LinkedList<String>>();
+    pstmt = conn.prepareStatement("SELECT m.sequence, m.mutation FROM mutations m "
+        + "JOIN sequences s ON s.id = m.sequence" + where + " ORDER BY m.id");
+    setValues(pstmt, values);
+    rs = pstmt.executeQuery();
+    while (rs.next()) {
+      mutations.computeIfAbsent(rs.getInt(1), id -> new LinkedList<String>())
+          .add(rs.getString(2));
+    }
+    pstmt.close();
+
+    ArrayList<AnalysedSequence> sequences = new ArrayList<AnalysedSequence>();
+    pstmt = conn.prepareStatement("SELECT s.*, r.name AS researchername FROM sequences s "
+        + "LEFT JOIN researchers r ON r.id = s.researcher" + where + " ORDER BY s.id");
+    setValues(pstmt, values);
+    rs = pstmt.executeQuery();
     while (rs.next()) {
       int id = rs.getInt("id");
       String name = rs.getString("name");
       String sequence = rs.getString("sequence");
       java.util.Date date = new Date(rs.getTimestamp("date").getTime());
-      int researcherId = rs.getInt("researcher");
+      String researcher = rs.getString("researchername");
       String comment = rs.getString("comment");
       boolean manuallyChecked;
       if (rs.getString("manualcheck").charAt(0) == 'y') {
@@ -1042,27 +1379,45 @@ public class DatabaseConnection {
       } else {
         manuallyChecked = false;
       }
-      int geneIndex = rs.getInt("gene");
+      Gene gene = genes.get(rs.getInt("gene"));
       String primer = rs.getString("Primer");
       int trimpercent = rs.getInt("trimpercent");
       int histag = rs.getInt("histag");
       int avgquality = rs.getInt("avgquality");
 
-      String researcher = pullResearcherPerIndex(researcherId);
-      Gene gene = pullGenePerIndex(geneIndex);
-      LinkedList<String> mutations = pullMutationsPerSequence(id);
+      LinkedList<String> sequenceMutations = mutations.remove(id);
+      if (sequenceMutations == null) {
+        sequenceMutations = new LinkedList<String>();
+      }
 
-      AnalysedSequence seq = new AnalysedSequence(gene, mutations, name, sequence, date, researcher,
-          comment, manuallyChecked, primer, trimpercent, histag, avgquality);
+      AnalysedSequence seq = new AnalysedSequence(gene, sequenceMutations, name, sequence, date,
+          researcher, comment, manuallyChecked, primer, trimpercent, histag, avgquality);
       sequences.add(seq);
     }
-    stmt.close();
-    conn.close();
+    pstmt.close();
 
     return sequences;
   }
 
 
+  /**
+   * Sets the parameters of a statement.
+   * 
+   * @param pstmt The statement.
+   * @param values The values of the parameters, in their order.
+   * 
+   * @throws SQLException Error while setting the parameters.
+   * 
+   * @author Lovis Heindrich
+   */
+  private static void setValues(PreparedStatement pstmt, Object... values) throws SQLException {
+    for (int i = 0; i < values.length; i++) {
+      pstmt.setObject(i + 1, values[i]);
+    }
+  }
+
+
+
   /**
    * Pulls all sequences from database which have been uploaded by a given researcher. The user can
    * specify this researcher name via the database exchange window.
@@ -1075,61 +1430,28 @@ public class DatabaseConnection {
    * @throws SQLException Error while executing SQL statements.
    * 
    * @see #getResearcherId(String)
+   * @see #pullSequences(String, Object...)
    * 
    * @author Lovis Heindrich
    */
   public static ArrayList<AnalysedSequence> pullAllSequencesPerResearcher(String researcherName)
       throws DatabaseConnectionException, SQLException {
-    ArrayList<AnalysedSequence> sequences = new ArrayList<AnalysedSequence>();
-
     establishConnection();
+    try {
+      useGsat();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-
-    int researcherId = getResearcherId(researcherName);
-
-    // get the sequences
-    PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM sequences WHERE researcher = ?");
-    pstmt.setInt(1, researcherId);
-
-    ResultSet rs = pstmt.executeQuery();
-
-    while (rs.next()) {
-      int id = rs.getInt("id");
-      String name = rs.getString("name");
-      String sequence = rs.getString("sequence");
-      java.util.Date date = new Date(rs.getTimestamp("date").getTime());
-      int researcherid = rs.getInt("researcher");
-      String comment = rs.getString("comment");
-      boolean manuallyChecked;
-      if (rs.getString("manualcheck").charAt(0) == 'y') {
-        manuallyChecked = true;
-      } else {
-        manuallyChecked = false;
-      }
-      int geneIndex = rs.getInt("gene");
-      String primer = rs.getString("Primer");
-      int trimpercent = rs.getInt("trimpercent");
-      int histag = rs.getInt("histag");
-      int avgquality = rs.getInt("avgquality");
-
-      String researcher = pullResearcherPerIndex(researcherid);
-      Gene gene = pullGenePerIndex(geneIndex);
-      LinkedList<String> mutations = pullMutationsPerSequence(id);
+      int researcherId = getResearcherId(researcherName);
 
-      AnalysedSequence seq = new AnalysedSequence(gene, mutations, name, sequence, date, researcher,
-          comment, manuallyChecked, primer, trimpercent, histag, avgquality);
-      sequences.add(seq);
+      // get the sequences
+      ArrayList<AnalysedSequence> sequences = pullSequences("s.researcher = ?", researcherId);
 
+      return sequences;
+    } finally {
+      releaseConnection();
     }
-    stmt.close();
-    pstmt.close();
-    conn.close();
-
-    return sequences;
   }
 
+
   /**
    * Retrieves the index of a given researcher from the database.
    * 
@@ -1144,9 +1466,7 @@ public class DatabaseConnection {
   private static int getResearcherId(String researcher) throws SQLException {
 
     // get a connection
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+    useGsat();
 
     // DB query for given researcher
     PreparedStatement pstmt =
@@ -1254,61 +1574,28 @@ public class DatabaseConnection {
    * @throws DatabaseConnectionException Error connecting to database.
    * @throws SQLException Error executing SQL commands.
    * 
+   * @see #pullSequences(String, Object...)
+   * 
    * @author Lovis Heindrich
    */
   public static ArrayList<AnalysedSequence> pullAllSequencesPerPeriod(Date date1, Date date2)
       throws DatabaseConnectionException, SQLException {
-    ArrayList<AnalysedSequence> sequences = new ArrayList<AnalysedSequence>();
-
     establishConnection();
+    try {
+      useGsat();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-
-    // get the sequences
-    PreparedStatement pstmt =
-        conn.prepareStatement("SELECT * FROM sequences WHERE date BETWEEN ? AND ?");
-    pstmt.setDate(1, date1);
-    pstmt.setDate(2, date2);
-
-    ResultSet rs = pstmt.executeQuery();
-
-    while (rs.next()) {
-      int id = rs.getInt("id");
-      String name = rs.getString("name");
-      String sequence = rs.getString("sequence");
-      java.util.Date date = new Date(rs.getTimestamp("date").getTime());
-      int researcherid = rs.getInt("researcher");
-      String comment = rs.getString("comment");
-      boolean manuallyChecked;
-      if (rs.getString("manualcheck").charAt(0) == 'y') {
-        manuallyChecked = true;
-      } else {
-        manuallyChecked = false;
-      }
-      int geneIndex = rs.getInt("gene");
-      String primer = rs.getString("Primer");
-      int trimpercent = rs.getInt("trimpercent");
-      int histag = rs.getInt("histag");
-      int avgquality = rs.getInt("avgquality");
-
-      String researcher = pullResearcherPerIndex(researcherid);
-      Gene gene = pullGenePerIndex(geneIndex);
-      LinkedList<String> mutations = pullMutationsPerSequence(id);
-
-      AnalysedSequence seq = new AnalysedSequence(gene, mutations, name, sequence, date, researcher,
-          comment, manuallyChecked, primer, trimpercent, histag, avgquality);
-      sequences.add(seq);
+      // get the sequences
+      ArrayList<AnalysedSequence> sequences =
+          pullSequences("s.date BETWEEN ? AND ?", date1, date2);
 
+      return sequences;
+    } finally {
+      releaseConnection();
     }
-    stmt.close();
-    pstmt.close();
-    conn.close();
-
-    return sequences;
   }
 
 
+
   /**
    * Pulls sequences specified by up to four optional parameters from the database. These parameters
    * are: The start date, the end date, the researcher's name and the gene name.
@@ -1327,134 +1614,80 @@ public class DatabaseConnection {
    * @throws SQLException Error while executing SQL commands.
    * @throws DatabaseConnectionException Error while connecting to database.
    * 
+   * @see #pullSequences(String, Object...)
+   * 
    * @author Lovis Heindrich
    */
   public static ArrayList<AnalysedSequence> pullCustomSequences(Date startDate, Date endDate,
       String researcher, String geneName) throws SQLException, DatabaseConnectionException {
-    ArrayList<AnalysedSequence> sequences = new ArrayList<AnalysedSequence>();
     establishConnection();
+    try {
+      useGsat();
 
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-
-    boolean startDateActive = true;
-    boolean endDateActive = true;
-    boolean researcherActive = true;
-    boolean geneActive = true;
+      boolean startDateActive = true;
+      boolean endDateActive = true;
+      boolean researcherActive = true;
+      boolean geneActive = true;
 
-    // check which query parameters are not set
-    if (startDate == null || startDate.getTime() == 0) {
-      startDateActive = false;
-    }
-    if (endDate == null || endDate.getTime() == 0) {
-      endDateActive = false;
-    }
-    if (researcher == null || researcher.equals("")) {
-      researcherActive = false;
-    }
-    if (geneName == null || geneName.equals("")) {
-      geneActive = false;
-    }
+      // check which query parameters are not set
+      if (startDate == null || startDate.getTime() == 0) {
+        startDateActive = false;
+      }
+      if (endDate == null || endDate.getTime() == 0) {
+        endDateActive = false;
+      }
+      if (researcher == null || researcher.equals("")) {
+        researcherActive = false;
+      }
+      if (geneName == null || geneName.equals("")) {
+        geneActive = false;
+      }
 
-    // construct a query string
-    StringBuilder query = new StringBuilder();
-    query.append("SELECT * FROM sequences");
+      // construct the condition, null if no input is set
+      StringBuilder condition = new StringBuilder();
+      ArrayList<Object> values = new ArrayList<Object>();
 
-    // append parameters if at least one input is set
-    if (startDateActive || endDateActive || researcherActive || geneActive) {
-      query.append(" WHERE");
       // start and enddate set
       if (startDateActive && endDateActive) {
-        query.append(" date BETWEEN ? AND ?");
+        condition.append(" AND s.date BETWEEN ? AND ?");
+        values.add(startDate);
+        values.add(endDate);
       } else if (startDateActive) {
-        query.append(" date >= ?");
+        condition.append(" AND s.date >= ?");
+        values.add(startDate);
       } else if (endDateActive) {
-        query.append(" date <= ?");
-      }
-
-      // AND if needed if a date condition and a later condition is active
-      if ((startDateActive || endDateActive) && (researcherActive || geneActive)) {
-        query.append(" AND");
+        condition.append(" AND s.date <= ?");
+        values.add(endDate);
       }
 
       // check if researcher is set
       if (researcherActive) {
-        query.append(" researcher = ?");
-        // AND is needed if gene is active as well
-        if (geneActive) {
-          query.append(" AND");
-        }
+        condition.append(" AND s.researcher = ?");
+        values.add(getResearcherId(researcher));
       }
 
       // check if gene is set
       if (geneActive) {
-        query.append(" gene = ?");
+        condition.append(" AND s.gene = ?");
+        values.add(getGeneId(geneName));
       }
-    }
 
-    PreparedStatement pstmt = conn.prepareStatement(query.toString());
-    // set pstmt parameter
-    int index = 1;
-    if (startDateActive) {
-      pstmt.setDate(index, startDate);
-      index++;
-    }
-    if (endDateActive) {
-      pstmt.setDate(index, endDate);
-      index++;
-    }
-
-    // check if researcher is set
-    if (researcherActive) {
-      int researcherId = getResearcherId(researcher);
-      pstmt.setInt(index, researcherId);
-      index++;
-    }
-
-    // check if gene is set
-    if (geneActive) {
-      int geneId = getGeneId(geneName);
-      pstmt.setInt(index, geneId);
-      index++;
-    }
-
-    ResultSet rs = pstmt.executeQuery();
-
-    while (rs.next()) {
-      int id = rs.getInt("id");
-      String name = rs.getString("name");
-      String sequence = rs.getString("sequence");
-      java.util.Date date = new Date(rs.getTimestamp("date").getTime());
-      int researcherid = rs.getInt("researcher");
-      String comment = rs.getString("comment");
-      boolean manuallyChecked;
-      if (rs.getString("manualcheck").charAt(0) == 'y') {
-        manuallyChecked = true;
+      ArrayList<AnalysedSequence> sequences;
+      if (condition.length() == 0) {
+        sequences = pullSequences(null);
       } else {
-        manuallyChecked = false;
+        // without the first " AND "
+        sequences = pullSequences(condition.substring(5), values.toArray());
       }
-      int geneIndex = rs.getInt("gene");
-      String primer = rs.getString("Primer");
-      int trimpercent = rs.getInt("trimpercent");
-      int histag = rs.getInt("histag");
-      int avgquality = rs.getInt("avgquality");
-
-      String researcherName = pullResearcherPerIndex(researcherid);
-      Gene gene = pullGenePerIndex(geneIndex);
-      LinkedList<String> mutations = pullMutationsPerSequence(id);
 
-      AnalysedSequence seq = new AnalysedSequence(gene, mutations, name, sequence, date,
-          researcherName, comment, manuallyChecked, primer, trimpercent, histag, avgquality);
-      sequences.add(seq);
+      return sequences;
+    } finally {
+      releaseConnection();
     }
-    stmt.close();
-    pstmt.close();
-    conn.close();
-
-    return sequences;
   }
 
 
+
   /**
    * Searches a gene in the database and returns its index (or zero if it does not exist).
    *
@@ -1468,9 +1701,7 @@ public class DatabaseConnection {
    */
   private static int getGeneId(String geneName) throws SQLException {
     // get a connection
-    Statement stmt = conn.createStatement();
-    stmt.execute("USE gsat");
-    stmt.close();
+    useGsat();
 
     // DB query for given gene
     PreparedStatement pstmt = conn.prepareStatement("SELECT id, name FROM genes WHERE name = ?");
@@ -1,9 +1,9 @@
 package io;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -22,14 +22,15 @@ public class FileRetriever {
 
   /**
    * This methods extracts all the stored information of all CSV files in the folder indicated by
-   * the given path and stores them inside an AnalysedSequence object.
+   * the given path and stores them inside an AnalysedSequence object. All results are held in
+   * memory, for large folders {@link #openResults(String)} should be used instead.
    * 
    * @param path The path of the folder where the CSV files are located
    * 
    * @return a list of AnalysedSequence objects, each representing an analysis result
    * 
    * @see #getFiles(String)
-   * @see #convertLineToSequence(String)
+   * @see ResultFileReader
    * 
    * @throws IOException if problems during file access occur
    * 
@@ -40,23 +41,12 @@ public class FileRetriever {
 
     LinkedList<AnalysedSequence> sequences = new LinkedList<AnalysedSequence>();
 
-    List<File> csvFiles = getFiles(path);
-
-    for (File file : csvFiles) {
-      BufferedReader reader = new BufferedReader(new FileReader(file));
-      LinkedList<String> lines = new LinkedList<String>();
-
-      reader.lines().skip(1).forEach(line -> {
-        lines.add(line);
-      });
-      reader.close();
-
-      for (String line : lines) {
-        AnalysedSequence seq = convertLineToSequence(line);
-        if (seq != null) {
-          sequences.add(seq);
-        }
+    try (ResultFileReader reader = openResults(path)) {
+      while (reader.hasNext()) {
+        sequences.add(reader.next());
       }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
     }
 
     return sequences;
@@ -64,132 +54,68 @@ public class FileRetriever {
   }
 
   /**
-   * This method creates File objects for each CSV file in a given folder and returns them as a
-   * list.
+   * This method opens all CSV files in the folder indicated by the given path for reading. The
+   * results are read one after another while the returned reader is iterated, so only one result
+   * is held in memory at a time.
    * 
-   * @param path The path where the files are located
+   * @param path The path of the folder where the CSV files are located
    * 
-   * @return A list of file objects (one object for each CSV file)
+   * @return a reader which returns the results of all files, it has to be closed after use
    * 
    * @author Ben Kohr
    */
-  private static List<File> getFiles(String path) {
-
-    File pathAsFile = new File(path);
-    File[] files = pathAsFile.listFiles();
-    LinkedList<File> fileList = new LinkedList<File>();
-
-    if (files == null) {
-      files = new File[0];
-    }
-
-    for (int i = 0; i < files.length; i++) {
-      if (files[i].getName().endsWith(".csv")) {
-        fileList.add(files[i]);
-      }
-    }
-
-    return fileList;
-
+  public static ResultFileReader openResults(String path) {
+    return new ResultFileReader(getFiles(path));
   }
 
   /**
-   * Converts a CSV result file line into an AnalysedSequence object by placing the information into
-   * the corresponding fields.
+   * This method opens all CSV files in the folder indicated by the given path for reading with
+   * several threads. This is faster if there are many files, e.g. one file per read. Large files
+   * are streamed like by {@link #openResults(String)}, and the results are returned in the same
+   * order.
    * 
-   * @param line One line containing analysis information from a CSV file
+   * @param path The path of the folder where the CSV files are located
+   * @param threads The number of files which are parsed at the same time
    * 
-   * @return An AnaylsedSequence object containing the information of the given line
+   * @return a reader which returns the results of all files, it has to be closed after use
    * 
    * @author Ben Kohr
    */
-  private static AnalysedSequence convertLineToSequence(String line) {
-
-    String[] data = line.split(ConfigHandler.SEPARATOR_CHAR + "");
-
-    for (int i = 0; i < data.length; i++) {
-      data[i] = data[i].trim();
-    }
-
-    if (FileSaver.areCommentsProblematic(data[6])) {
-      return null;
-    }
-
-    AnalysedSequence sequence = new AnalysedSequence();
-
-    sequence.setFileName(data[0]);
-    sequence.setReferencedGene(GeneHandler.checkGene(data[1], data[2]));
-
-    String[] mutations = data[3].split(",");
-    for (int i = 0; i < mutations.length; i++) {
-      mutations[i] = mutations[i].trim();
-      if (!mutations[i].isEmpty()) {
-        sequence.addMutation(mutations[i]);
-      }
-    }
-    mutations = data[14].split(",");
-    for (int i = 0; i < mutations.length; i++) {
-      mutations[i] = mutations[i].trim();
-      if (!mutations[i].isEmpty()) {
-        sequence.addMutation(mutations[i]);
-      }
-    }
-    
-
-    if (data[4].equals("none")) {
-      sequence.setHisTagPosition(-1);
-    } else {
-      sequence.setHisTagPosition(Integer.parseInt(data[4]));
-    }
-
-    if (isYes(data[5])) {
-      sequence.setManuallyChecked(true);
-    } else {
-      sequence.setManuallyChecked(false);
-    }
-
-    sequence.setComments(data[6]);
-    sequence.setResearcher(data[7]);
-    sequence.setAddingDate(data[8]);
-    sequence.setAvgQuality(Integer.parseInt(data[9]));
-    sequence.setTrimPercentage(Double.parseDouble(data[10]));
-    sequence.setSequence(data[11]);
-    sequence.setPrimer(data[12]);
-
-    // data[13] contains the mutations again
-    
-
-    return sequence;
-
+  public static ParallelResultReader openResults(String path, int threads) {
+    return new ParallelResultReader(getFiles(path), threads);
   }
 
-
-
   /**
-   * This method checks if a String indicating 'yes' is written into the given field text. This is
-   * necessary to determine the database value for the field 'manually checked'.
+   * This method creates File objects for each CSV file in a given folder and returns them as a
+   * list.
    * 
-   * @param answer The String to be checked
+   * @param path The path where the files are located
    * 
-   * @return Does this String indicate 'yes'?
+   * @return A list of file objects (one object for each CSV file), sorted by name
    * 
    * @author Ben Kohr
-   * 
    */
-  private static boolean isYes(String answer) {
+  private static List<File> getFiles(String path) {
 
-    answer = answer.toLowerCase();
+    File pathAsFile = new File(path);
+    File[] files = pathAsFile.listFiles();
+    LinkedList<File> fileList = new LinkedList<File>();
 
-    String[] yesPossibilities = new String[] {"yes", "y", "true", "ok", "okay", "ja"};
+    if (files == null) {
+      files = new File[0];
+    }
 
-    for (String possibility : yesPossibilities) {
-      if (answer.equals(possibility)) {
-        return true;
+    for (int i = 0; i < files.length; i++) {
+      if (files[i].getName().endsWith(".csv")) {
+        fileList.add(files[i]);
       }
     }
-    return false;
 
-  }
+    // the order of the results shall not depend on the file system
+    fileList.sort(Comparator.comparing(File::getName));
+
+    return fileList;
 
+  }
 
 }
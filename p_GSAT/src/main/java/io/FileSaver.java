@@ -1,13 +1,13 @@
 package io;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 
 import analysis.AnalysedSequence;
+import analysis.AnalysisContext;
 import exceptions.MissingPathException;
 import exceptions.PathUsage;
 
@@ -34,10 +34,11 @@ public class FileSaver {
 
 
   /**
-   * Indicating whether this is the first call of the storage method in the current storage process.
-   * This field is necessary to keep up with the constructing of the head row (column names).
+   * The analysis context used by {@link #storeResultsLocally(String, AnalysedSequence)}. It keeps
+   * up with the constructing of the head row (column names) in the current storage process and is
+   * created on the first call after {@link #reset()}.
    */
-  private static boolean firstCall = true;
+  private static AnalysisContext defaultContext;
 
 
   /**
@@ -122,8 +123,7 @@ public class FileSaver {
    *        file is desired, then the name will not be used.
    * 
    * @see #constructLineToWrite(AnalysedSequence)
-   * @see #getNewWriter(String, boolean)
-   * @see #getNewWriterForOneFile(String)
+   * @see #storeResultsLocally(String, AnalysedSequence, AnalysisContext)
    * 
    * @throws MissingPathException If the path to store the data is not specified.
    * @throws IOException If the writing process fails (due to the used FileWriter).
@@ -133,31 +133,94 @@ public class FileSaver {
   public static void storeResultsLocally(String ab1Filename, AnalysedSequence sequence)
       throws MissingPathException, IOException {
 
+    AnalysisContext context;
+    synchronized (FileSaver.class) {
+      if (defaultContext == null) {
+        defaultContext = new AnalysisContext();
+      }
+      context = defaultContext;
+      // use the current settings of this class
+      context.setLocalPath(localPath);
+      context.setDestinationFileName(destinationFileName);
+      context.setSeparateFiles(separateFiles);
+    }
+    storeResultsLocally(ab1Filename, sequence, context);
+    // every line is in the file when this method returns
+    closeResults(context);
+  }
+
+
+  /**
+   * Inserts the data of an analysed sequence into the result file(s) of the given analysis run.
+   * Path, file name and the number of files are taken from the context, so several runs can store
+   * their results at the same time.
+   * <p>
+   * If only one file is desired, it stays open for the whole run and the lines are buffered by a
+   * {@link ResultFileWriter}. The run has to call {@link #closeResults(AnalysisContext)} when all
+   * results are stored.
+   * </p>
+   * 
+   * @param ab1Filename the name of the AB1 file the stored entries were obtained from. If only one
+   *        file is desired, then the name will not be used.
+   * @param sequence the analysed sequence to store
+   * @param context the analysis run the sequence belongs to
+   * 
+   * @throws MissingPathException If the path to store the data is not specified.
+   * @throws IOException If the writing process fails (due to the used FileWriter).
+   * 
+   * @author Ben Kohr
+   */
+  public static void storeResultsLocally(String ab1Filename, AnalysedSequence sequence,
+      AnalysisContext context) throws MissingPathException, IOException {
+
+    File path = context.getLocalPath();
+
     // Without a path, writing is not possible.
-    if (localPath == null) {
+    if (path == null) {
       throw new MissingPathException(PathUsage.WRITING);
     }
 
-    // The writer to create a file / files.
-    FileWriter writer;
+    // write a new line containing the information of the sequence
+    String toWrite = constructLineToWrite(sequence);
 
     // One or multiple files?
-    if (separateFiles) {
-      String finalName = localPath.getAbsolutePath() + File.separatorChar + destinationFileName
-          + "_" + ab1Filename + ".csv";
-      writer = getNewWriter(finalName, false);
+    if (context.isSeparateFiles()) {
+      String finalName = path.getAbsolutePath() + File.separatorChar
+          + context.getDestinationFileName() + "_" + ab1Filename + ".csv";
+      try (ResultFileWriter writer =
+          new ResultFileWriter(new File(finalName), getHeader(), false)) {
+        writer.write(toWrite);
+      }
     } else {
       String finalName =
-          localPath.getAbsolutePath() + File.separatorChar + destinationFileName + ".csv";
-      writer = getNewWriterForOneFile(finalName);
+          path.getAbsolutePath() + File.separatorChar + context.getDestinationFileName() + ".csv";
+      // lines of the same run must not be interleaved
+      synchronized (context) {
+        getWriterForOneFile(finalName, context).write(toWrite);
+      }
     }
+  }
 
-    // write a new line containing the information of the sequence
-    String toWrite = constructLineToWrite(sequence);
-    writer.write(toWrite);
-
-    writer.close();
-
+  /**
+   * Writes the remaining results of the given analysis run into its result file and closes the
+   * file. If the run stores more results afterwards, they are appended to the file. Closing the
+   * results of a run without an open result file has no effect.
+   * 
+   * @param context the analysis run
+   * 
+   * @throws IOException If writing or closing the file fails
+   * 
+   * @author Ben Kohr
+   */
+  public static void closeResults(AnalysisContext context) throws IOException {
+    ResultFileWriter writer;
+    synchronized (context) {
+      writer = context.getResultWriter();
+      context.setResultWriter(null);
+    }
+    if (writer != null) {
+      writer.close();
+    }
   }
 
   /**
@@ -320,63 +383,47 @@ public class FileSaver {
 
 
   /**
-   * This method initializes and initially uses a new writer, if only one file is desired.
-   *
-   * @see #getNewWriter(String, boolean)
+   * This method returns the open writer of the result file of the given run, if only one file is
+   * desired. The file is created on the first call of the given analysis run, later calls append to
+   * it.
    * 
    * @return the writer object, returned to continue writing
    * 
-   * @throws IOException If the creation or the usage of the FileWriter object fails
+   * @throws IOException If the creation or the usage of the writer fails
    * 
    * @author Ben Kohr
    */
-  private static FileWriter getNewWriterForOneFile(String finalName) throws IOException {
-    FileWriter writer;
-    if (firstCall) {
-      writer = getNewWriter(finalName, false);
-      firstCall = false;
-    } else {
-      writer = getNewWriter(finalName, true);
+  private static ResultFileWriter getWriterForOneFile(String finalName, AnalysisContext context)
+      throws IOException {
+    ResultFileWriter writer = context.getResultWriter();
+    if (writer == null) {
+      String header = context.startWriting() ? getHeader() : null;
+      writer = new ResultFileWriter(new File(finalName), header, context.isWriterThread());
+      context.setResultWriter(writer);
     }
     return writer;
   }
 
 
   /**
-   * This method creates a new writer for the current writing situation (one or several files?). If
-   * necessary, also adds the first line. It is directly called when separate files are needed. It
-   * is called via {@link #getNewWriterForOneFile()} if one file is desired.
-   * 
-   * @param ab1Filename The name of the new file
-   * @param append Shall content be added to the file (or is it a new file)?
+   * This method returns the first line of a result file, which contains the column names.
    * 
-   * @return the writer object, returned to continue writing
-   * 
-   * @throws IOException If the creation or the usage of the FileWriter object fails
+   * @return the header line, including the line separator
    * 
    * @author Ben Kohr
    */
-  private static FileWriter getNewWriter(String finalName, boolean append) throws IOException {
-
-    File newFile = new File(finalName);
-
-    if (!append) {
-      newFile.createNewFile();
-    }
-
-    FileWriter writer = new FileWriter(newFile, append);
-
-    if (!append) {
-      writer.write("file name" + SEPARATOR_CHAR + " gene" + SEPARATOR_CHAR + " gene organism"
-          + SEPARATOR_CHAR + " mutations (with codons - except for insertions, deletions and silent mutations)" + SEPARATOR_CHAR + " HIS Tag"
-          + SEPARATOR_CHAR + " manually checked" + SEPARATOR_CHAR + " comments" + SEPARATOR_CHAR
-          + " researcher" + SEPARATOR_CHAR + " date" + SEPARATOR_CHAR + " average quality (percent)"
-          + SEPARATOR_CHAR + " percentage of quality trim" + SEPARATOR_CHAR + " nucleotide sequence"
-          + SEPARATOR_CHAR + " primer" + SEPARATOR_CHAR + "mutations (without codons - except for insertions, deletions and silent mutations)" + SEPARATOR_CHAR + "mutations (with codons - insertions, deletions and silent mutations)"
-          + System.lineSeparator());
-    }
-
-    return writer;
+  private static String getHeader() {
+    return "file name" + SEPARATOR_CHAR + " gene" + SEPARATOR_CHAR + " gene organism"
+        + SEPARATOR_CHAR
+        + " mutations (with codons - except for insertions, deletions and silent mutations)"
+        + SEPARATOR_CHAR + " HIS Tag" + SEPARATOR_CHAR + " manually checked" + SEPARATOR_CHAR
+        + " comments" + SEPARATOR_CHAR + " researcher" + SEPARATOR_CHAR + " date"
+        + SEPARATOR_CHAR + " average quality (percent)" + SEPARATOR_CHAR
+        + " percentage of quality trim" + SEPARATOR_CHAR + " nucleotide sequence"
+        + SEPARATOR_CHAR + " primer" + SEPARATOR_CHAR
+        + "mutations (without codons - except for insertions, deletions and silent mutations)"
+        + SEPARATOR_CHAR + "mutations (with codons - insertions, deletions and silent mutations)"
+        + System.lineSeparator();
   }
 
 
@@ -445,13 +492,13 @@ public class FileSaver {
 
 
   /**
-   * This method resets the class's state by setting {@link #firstCall} to true. This is necessary
-   * to start a completely new analyzing process.
+   * This method resets the class's state by discarding the default analysis context. This is
+   * necessary to start a completely new analyzing process.
    * 
    * @author Ben Kohr
    */
-  public static void reset() {
-    firstCall = true;
+  public static synchronized void reset() {
+    defaultContext = null;
   }
 
 
@@ -462,4 +509,16 @@ public class FileSaver {
     FileSaver.separateFiles = separateFiles;
   }
 
+  public static boolean isSeparateFiles() {
+    return separateFiles;
+  }
+
+  public static File getLocalPath() {
+    return localPath;
+  }
+
+  public static String getDestFileName() {
+    return destinationFileName;
+  }
+
 }
@@ -0,0 +1,256 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class watches folders for new AB1 files, e.g. the output folders of a sequencer. Files are
+ * classified like in {@link SequenceReader#listFiles(String)}. A sequencer writes its files in
+ * several steps, so a new file is only returned after its size and modification time didn't change
+ * for a given settle time. Every file is returned only once, unless it is deleted and written
+ * again. Files which already exist when the watching starts are ignored.
+ *
+ * @author Kevin Otto
+ */
+public class FolderWatcher implements Closeable {
+
+  /**
+   * The service which reports the changes of the watched folders.
+   */
+  private final WatchService service;
+
+  /**
+   * The watched folders, the keys are the watch keys of the folders.
+   */
+  private final HashMap<WatchKey, Path> folders = new HashMap<WatchKey, Path>();
+
+  /**
+   * Time in milliseconds a file must not change before it is returned.
+   */
+  private final long settleMillis;
+
+  /**
+   * New files which are possibly still written, in the order they appeared.
+   */
+  private final LinkedHashMap<File, PendingFile> pending = new LinkedHashMap<File, PendingFile>();
+
+  /**
+   * Files which existed when the watching started or which were already returned. Deleted files
+   * are removed, so the set only grows with the number of files in the watched folders.
+   */
+  private final HashSet<File> ignored = new HashSet<File>();
+
+  /**
+   * Starts watching the given folders.
+   *
+   * @param folders the folders to watch
+   * @param settleMillis the time in milliseconds a new file must not change before it is returned
+   *
+   * @throws IOException if a folder can't be watched
+   *
+   * @author Kevin Otto
+   */
+  public FolderWatcher(List<File> folders, long settleMillis) throws IOException {
+    this.settleMillis = settleMillis;
+    service = FileSystems.getDefault().newWatchService();
+    for (File folder : folders) {
+      if (!folder.isDirectory()) {
+        service.close();
+        throw new IOException("The path " + folder + " is no folder.");
+      }
+      Path path = folder.toPath();
+      this.folders.put(path.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), path);
+      ignored.addAll(SequenceReader.listFiles(folder.getPath()).first);
+    }
+  }
+
+  /**
+   * Waits for new AB1 files and returns the files which were completely written. If no file is
+   * complete yet, it waits at most the given time.
+   *
+   * @param timeout the maximal waiting time
+   * @param unit the unit of the timeout
+   * @return the completely written new files, in the order they appeared (may be empty)
+   *
+   * @throws InterruptedException if the thread was interrupted while waiting
+   *
+   * @author Kevin Otto
+   */
+  public LinkedList<File> poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long waitMillis = unit.toMillis(timeout);
+    if (!pending.isEmpty()) {
+      // pending files have to be checked again after the settle time
+      waitMillis = Math.min(waitMillis, settleMillis);
+    }
+
+    WatchKey key = service.poll(waitMillis, TimeUnit.MILLISECONDS);
+    while (key != null) {
+      Path folder = folders.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          // events were lost, so all files of the folder have to be checked
+          forgetDeleted(folder.toFile());
+          for (File file : SequenceReader.listFiles(folder.toString()).first) {
+            notice(file);
+          }
+        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+          File file = folder.resolve((Path) event.context()).toFile();
+          ignored.remove(file);
+          pending.remove(file);
+        } else {
+          notice(folder.resolve((Path) event.context()).toFile());
+        }
+      }
+      key.reset();
+      key = service.poll();
+    }
+
+    return settledFiles();
+  }
+
+  /**
+   * Checks if there are new files which are not completely written yet.
+   *
+   * @return true if files are pending
+   *
+   * @author Kevin Otto
+   */
+  public boolean hasPendingFiles() {
+    return !pending.isEmpty();
+  }
+
+  /**
+   * Adds a new or changed file to the pending files, if it is an AB1 file which wasn't returned
+   * yet.
+   *
+   * @author Kevin Otto
+   */
+  private void notice(File file) {
+    if (ignored.contains(file) || !SequenceReader.isAb1File(file)) {
+      return;
+    }
+    PendingFile entry = pending.get(file);
+    if (entry == null) {
+      pending.put(file, new PendingFile(file));
+    } else {
+      entry.update();
+    }
+  }
+
+  /**
+   * Removes the ignored files of a folder which don't exist anymore, because their delete events
+   * may have been lost.
+   *
+   * @author Kevin Otto
+   */
+  private void forgetDeleted(File folder) {
+    Iterator<File> iterator = ignored.iterator();
+    while (iterator.hasNext()) {
+      File file = iterator.next();
+      if (folder.equals(file.getParentFile()) && !file.isFile()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all pending files which didn't change for the settle time.
+   *
+   * @return the removed files
+   *
+   * @author Kevin Otto
+   */
+  private LinkedList<File> settledFiles() {
+    LinkedList<File> settled = new LinkedList<File>();
+    Iterator<Map.Entry<File, PendingFile>> iterator = pending.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<File, PendingFile> entry = iterator.next();
+      File file = entry.getKey();
+      if (!file.isFile()) {
+        // the file was deleted or renamed
+        iterator.remove();
+      } else if (!entry.getValue().update() && entry.getValue().isSettled(settleMillis)) {
+        iterator.remove();
+        ignored.add(file);
+        settled.add(file);
+      }
+    }
+    return settled;
+  }
+
+  /**
+   * Stops watching the folders.
+   *
+   * @author Kevin Otto
+   */
+  @Override
+  public void close() throws IOException {
+    service.close();
+  }
+
+  /**
+   * The state of a file which is possibly still written.
+   *
+   * @author Kevin Otto
+   */
+  private static class PendingFile {
+
+    private final File file;
+
+    private long length;
+
+    private long lastModified;
+
+    /**
+     * The time of the last change of the file, in milliseconds.
+     */
+    private long lastChange;
+
+    private PendingFile(File file) {
+      this.file = file;
+      length = file.length();
+      lastModified = file.lastModified();
+      lastChange = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks if the file changed since the last call.
+     *
+     * @return true if the file changed
+     */
+    private boolean update() {
+      long newLength = file.length();
+      long newLastModified = file.lastModified();
+      if (newLength == length && newLastModified == lastModified) {
+        return false;
+      }
+      length = newLength;
+      lastModified = newLastModified;
+      lastChange = System.currentTimeMillis();
+      return true;
+    }
+
+    /**
+     * Checks if the file is not empty and didn't change for the given time.
+     */
+    private boolean isSettled(long settleMillis) {
+      return length > 0 && System.currentTimeMillis() - lastChange >= settleMillis;
+    }
+  }
+}
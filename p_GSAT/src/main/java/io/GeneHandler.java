@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import analysis.Gene;
+import analysis.GeneIndex;
 import exceptions.DuplicateGeneException;
 
 /**
@@ -26,6 +27,12 @@ public class GeneHandler {
    */
   private static ArrayList<Gene> geneList;
 
+  /**
+   * K-mer index over all known genes, used for the automatic gene recognition. It is rebuilt
+   * whenever the genes are read, i.e. also after adding or deleting a gene.
+   */
+  private static GeneIndex geneIndex;
+
   /**
    * Path where the gene data will be stored.
    */
@@ -409,6 +416,7 @@ public class GeneHandler {
 
     geneReader.close();
 
+    geneIndex = new GeneIndex(geneList);
   }
 
   /**
@@ -467,6 +475,10 @@ public class GeneHandler {
     return geneList;
   }
 
+  public static GeneIndex getGeneIndex() {
+    return geneIndex;
+  }
+
   public static void setPath(String path) {
     GeneHandler.path = path;
   }
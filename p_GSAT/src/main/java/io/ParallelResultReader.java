@@ -0,0 +1,226 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import analysis.AnalysedSequence;
+
+/**
+ * This class reads many CSV result files with several threads, e.g. the files of the separate files
+ * mode where every read has its own file. Each file is parsed completely by one thread with a
+ * {@link ResultFileReader}, so rows with problematic comments are skipped like before. The results
+ * are returned in the order of the given files and, within a file, in the order of the rows, so the
+ * order doesn't depend on the number of threads.
+ * <p>
+ * Only a few files (twice the number of threads) are parsed ahead of the file which is currently
+ * returned, so the memory needed doesn't depend on the number of files. Files larger than
+ * {@link #STREAM_BYTES}, e.g. the single result file of a run, are not parsed ahead but streamed
+ * row by row when they are reached, so the memory needed doesn't depend on the size of the files
+ * either. Reading errors are thrown as {@link UncheckedIOException}s.
+ * </p>
+ *
+ * @see FileRetriever#openResults(String, int)
+ *
+ * @author Ben Kohr
+ */
+public class ParallelResultReader implements Iterator<AnalysedSequence>, Closeable {
+
+  /**
+   * The number of files parsed ahead per thread.
+   */
+  private static final int FILES_PER_THREAD = 2;
+
+  /**
+   * Files with more bytes are streamed by the calling thread instead of being parsed ahead.
+   */
+  public static final long STREAM_BYTES = 1024 * 1024;
+
+  /**
+   * The threads which parse the files.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The files which were not submitted yet.
+   */
+  private final Iterator<File> files;
+
+  /**
+   * The parsed (or currently parsed) files, in the order of the files. Large files which are
+   * streamed have no parsed results, their entries are null.
+   */
+  private final LinkedList<Future<LinkedList<AnalysedSequence>>> parsed =
+      new LinkedList<Future<LinkedList<AnalysedSequence>>>();
+
+  /**
+   * The large files which are streamed, in the order of their null entries in {@link #parsed}.
+   */
+  private final LinkedList<File> streamed = new LinkedList<File>();
+
+  /**
+   * The maximal number of files parsed ahead.
+   */
+  private final int window;
+
+  /**
+   * The remaining results of the current file.
+   */
+  private Iterator<AnalysedSequence> current = Collections.emptyIterator();
+
+  /**
+   * The reader of the current file if it is streamed, otherwise null.
+   */
+  private ResultFileReader stream;
+
+  /**
+   * Starts parsing the given files.
+   *
+   * @param files the result files, the results are returned in this order
+   * @param threads the number of threads which parse files at the same time
+   *
+   * @author Ben Kohr
+   */
+  public ParallelResultReader(List<File> files, int threads) {
+    threads = Math.max(1, threads);
+    this.files = files.iterator();
+    window = threads * FILES_PER_THREAD;
+    executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "result reader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    submit();
+  }
+
+  /**
+   * Submits files until the window is full.
+   */
+  private void submit() {
+    while (parsed.size() < window && files.hasNext()) {
+      File file = files.next();
+      if (file.length() > STREAM_BYTES) {
+        parsed.add(null);
+        streamed.add(file);
+      } else {
+        parsed.add(executor.submit(() -> parse(file)));
+      }
+    }
+  }
+
+  /**
+   * Parses all rows of one file.
+   *
+   * @author Ben Kohr
+   */
+  private static LinkedList<AnalysedSequence> parse(File file) throws IOException {
+    LinkedList<AnalysedSequence> sequences = new LinkedList<AnalysedSequence>();
+    try (ResultFileReader reader = new ResultFileReader(Collections.singletonList(file))) {
+      while (reader.hasNext()) {
+        sequences.add(reader.next());
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return sequences;
+  }
+
+  /**
+   * Checks if there are more usable results. It waits until the next file is parsed.
+   *
+   * @return true if {@link #next()} returns another result
+   *
+   * @throws UncheckedIOException if a file can't be read
+   *
+   * @author Ben Kohr
+   */
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      closeStream();
+      if (parsed.isEmpty()) {
+        return false;
+      }
+      Future<LinkedList<AnalysedSequence>> file = parsed.removeFirst();
+      submit();
+      if (file == null) {
+        // the following files are parsed while this one is streamed
+        stream = new ResultFileReader(Collections.singletonList(streamed.removeFirst()));
+        current = stream;
+        continue;
+      }
+      try {
+        current = file.get().iterator();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedIOException(new InterruptedIOException("Reading was interrupted."));
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw new UncheckedIOException((IOException) e.getCause());
+        }
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw (RuntimeException) e.getCause();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the next usable result.
+   *
+   * @return the result of the next row
+   *
+   * @throws NoSuchElementException if there are no more results
+   * @throws UncheckedIOException if a file can't be read
+   *
+   * @author Ben Kohr
+   */
+  @Override
+  public AnalysedSequence next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /**
+   * Stops parsing. The remaining files are not read anymore.
+   *
+   * @author Ben Kohr
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    parsed.clear();
+    streamed.clear();
+    closeStream();
+    current = Collections.emptyIterator();
+  }
+
+  /**
+   * Closes the reader of the streamed file, if there is one.
+   */
+  private void closeStream() {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        // the file was read completely or isn't needed anymore
+      }
+      stream = null;
+    }
+  }
+}
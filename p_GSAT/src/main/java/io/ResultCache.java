@@ -0,0 +1,284 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class stores analysis results on disk, so a file which was already analysed with the same
+ * gene(s) and parameters doesn't have to be analysed again. The entries are addressed by keys which
+ * are computed from their content (e.g. hex encoded digests), every entry is stored in its own
+ * file. The cache is bounded by the total size of its entries: if it grows larger, the least
+ * recently used entries are deleted.
+ * <p>
+ * The order of use is taken from the modification times of the entry files, so it is kept over
+ * restarts of the program. An entry is written to a temporary file first and then moved, so other
+ * program instances using the same folder never read half written entries.
+ * </p>
+ *
+ * @see analysis.AnalysisPipeline#analyseSequence(analysis.AnalysedSequence, analysis.Gene,
+ *      analysis.AnalysisContext)
+ *
+ * @author Kevin Otto
+ */
+public class ResultCache {
+
+  /**
+   * The default folder of the cache, next to the default configuration file.
+   */
+  public static final File DEFAULT_FOLDER = new File(
+      System.getProperty("user.home") + File.separator + "gsat" + File.separator + "cache");
+
+  /**
+   * The file ending of the entry files.
+   */
+  private static final String ENDING = ".result";
+
+  /**
+   * The caches which were opened in this program, the keys are their folders. Runs using the same
+   * folder share one cache, so the entries are only listed once.
+   */
+  private static final HashMap<File, ResultCache> openCaches = new HashMap<File, ResultCache>();
+
+  /**
+   * The folder of the entry files.
+   */
+  private final File folder;
+
+  /**
+   * The maximal total size of the entries in bytes.
+   */
+  private long maxBytes;
+
+  /**
+   * The sizes of the entries, ordered from the least to the most recently used entry.
+   */
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f,
+      true);
+
+  /**
+   * The total size of the entries in bytes.
+   */
+  private long size;
+
+  private long hits;
+
+  private long misses;
+
+  private long evictions;
+
+  /**
+   * Opens the cache in the given folder and lists its entries. The folder is created if necessary.
+   *
+   * @param folder the folder of the entry files
+   * @param maxBytes the maximal total size of the entries in bytes
+   *
+   * @author Kevin Otto
+   */
+  public ResultCache(File folder, long maxBytes) {
+    this.folder = folder;
+    this.maxBytes = maxBytes;
+    folder.mkdirs();
+
+    File[] files = folder.listFiles((dir, name) -> name.endsWith(ENDING));
+    if (files != null) {
+      // the least recently used entries come first
+      Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+      for (File file : files) {
+        String name = file.getName();
+        entries.put(name.substring(0, name.length() - ENDING.length()), file.length());
+        size += file.length();
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Returns the cache in the given folder. A cache which was already opened in this program is
+   * reused, the maximal size is set to the given one.
+   *
+   * @param folder the folder of the entry files
+   * @param maxBytes the maximal total size of the entries in bytes
+   * @return the cache
+   *
+   * @author Kevin Otto
+   */
+  public static ResultCache open(File folder, long maxBytes) {
+    File key = folder.getAbsoluteFile();
+    synchronized (openCaches) {
+      ResultCache cache = openCaches.get(key);
+      if (cache == null) {
+        cache = new ResultCache(key, maxBytes);
+        openCaches.put(key, cache);
+      } else {
+        cache.setMaxBytes(maxBytes);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Returns the entry with the given key and marks it as most recently used.
+   *
+   * @param key the key of the entry
+   * @return the content of the entry, or null if there is no such entry
+   *
+   * @author Kevin Otto
+   */
+  public byte[] get(String key) {
+    synchronized (this) {
+      if (entries.get(key) == null) {
+        misses++;
+        return null;
+      }
+    }
+    File file = getFile(key);
+    try {
+      byte[] content = Files.readAllBytes(file.toPath());
+      // the modification time keeps the order of use over restarts
+      file.setLastModified(System.currentTimeMillis());
+      synchronized (this) {
+        hits++;
+      }
+      return content;
+    } catch (IOException e) {
+      // the entry was deleted, e.g. by another program instance
+      remove(key);
+      synchronized (this) {
+        misses++;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Stores an entry and deletes the least recently used entries if the cache gets too large.
+   * Entries larger than the cache are not stored.
+   *
+   * @param key the key of the entry
+   * @param content the content of the entry
+   *
+   * @author Kevin Otto
+   */
+  public void put(String key, byte[] content) {
+    if (content.length > getMaxBytes()) {
+      return;
+    }
+    File file = getFile(key);
+    try {
+      File temporary = File.createTempFile("entry", ".tmp", folder);
+      Files.write(temporary.toPath(), content);
+      Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the result is just not cached
+      return;
+    }
+    synchronized (this) {
+      Long old = entries.put(key, (long) content.length);
+      size += content.length - (old == null ? 0 : old);
+      evict();
+    }
+  }
+
+  /**
+   * Removes an entry from the cache.
+   *
+   * @param key the key of the entry
+   *
+   * @author Kevin Otto
+   */
+  public void remove(String key) {
+    synchronized (this) {
+      Long old = entries.remove(key);
+      if (old != null) {
+        size -= old;
+      }
+    }
+    getFile(key).delete();
+  }
+
+  /**
+   * Removes all entries from the cache.
+   *
+   * @author Kevin Otto
+   */
+  public synchronized void clear() {
+    for (String key : entries.keySet()) {
+      getFile(key).delete();
+    }
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache isn't too large anymore.
+   *
+   * @author Kevin Otto
+   */
+  private synchronized void evict() {
+    Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+    while (size > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Long> entry = iterator.next();
+      getFile(entry.getKey()).delete();
+      size -= entry.getValue();
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  private File getFile(String key) {
+    return new File(folder, key + ENDING);
+  }
+
+  // GETTERs and SETTERs:
+
+  public File getFolder() {
+    return folder;
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Sets the maximal total size of the entries and deletes entries if the cache is too large now.
+   *
+   * @param maxBytes the maximal size in bytes
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  public synchronized boolean contains(String key) {
+    return entries.containsKey(key);
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+}
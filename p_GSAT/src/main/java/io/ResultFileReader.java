@@ -0,0 +1,391 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import analysis.AnalysedSequence;
+
+/**
+ * This class reads CSV result files one row after another and converts the rows into
+ * AnalysedSequences when they are requested. Only the current row is held in memory, so result
+ * folders of any size can be read. The rows are split into fields without creating a String per
+ * line or per field: the characters of the row are stored in a reused buffer and only the fields
+ * which are needed are converted into Strings.
+ * <p>
+ * The first row of every file (the column names) and rows with problematic comments are skipped.
+ * As the methods of {@link Iterator} can't throw IOExceptions, reading errors are thrown as
+ * {@link UncheckedIOException}s.
+ * </p>
+ *
+ * @see FileRetriever#openResults(String)
+ *
+ * @author Ben Kohr
+ */
+public class ResultFileReader implements Iterator<AnalysedSequence>, Closeable {
+
+  /**
+   * The separator of the columns.
+   */
+  private static final char SEPARATOR_CHAR = ConfigHandler.SEPARATOR_CHAR;
+
+  /**
+   * The files which are read one after another.
+   */
+  private final Iterator<File> files;
+
+  /**
+   * The reader of the current file, or null if there is no open file.
+   */
+  private Reader reader;
+
+  /**
+   * Characters read from the current file which were not processed yet.
+   */
+  private final char[] buffer = new char[8192];
+
+  private int position;
+
+  private int limit;
+
+  /**
+   * Indicates whether a line feed directly following a carriage return has to be skipped.
+   */
+  private boolean skipLineFeed;
+
+  /**
+   * The characters of the current row (without line separator).
+   */
+  private char[] row = new char[1024];
+
+  private int rowLength;
+
+  /**
+   * The start positions of the trimmed fields of the current row.
+   */
+  private int[] starts = new int[16];
+
+  /**
+   * The end positions (exclusive) of the trimmed fields of the current row.
+   */
+  private int[] ends = new int[16];
+
+  private int fieldCount;
+
+  /**
+   * The next sequence, or null if it still has to be read.
+   */
+  private AnalysedSequence next;
+
+  /**
+   * Creates a reader for the given CSV result files. The files are opened when they are reached.
+   *
+   * @param files the result files
+   *
+   * @author Ben Kohr
+   */
+  public ResultFileReader(List<File> files) {
+    this.files = files.iterator();
+  }
+
+  /**
+   * Checks if there are more usable results.
+   *
+   * @return true if {@link #next()} returns another result
+   *
+   * @throws UncheckedIOException if a file can't be read
+   *
+   * @author Ben Kohr
+   */
+  @Override
+  public boolean hasNext() {
+    try {
+      while (next == null) {
+        if (!nextRow()) {
+          return false;
+        }
+        next = convertRowToSequence();
+      }
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the next usable result.
+   *
+   * @return the result of the next row
+   *
+   * @throws NoSuchElementException if there are no more results
+   * @throws UncheckedIOException if a file can't be read
+   *
+   * @author Ben Kohr
+   */
+  @Override
+  public AnalysedSequence next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    AnalysedSequence result = next;
+    next = null;
+    return result;
+  }
+
+  /**
+   * Closes the current file. The remaining files are not read anymore.
+   *
+   * @author Ben Kohr
+   */
+  @Override
+  public void close() throws IOException {
+    while (files.hasNext()) {
+      files.next();
+    }
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
+  }
+
+  /**
+   * Reads the next row (which is not the first row of a file and not empty) and splits it into
+   * fields.
+   *
+   * @return false if all files are read
+   *
+   * @author Ben Kohr
+   */
+  private boolean nextRow() throws IOException {
+    while (true) {
+      if (reader == null) {
+        if (!files.hasNext()) {
+          return false;
+        }
+        reader = new FileReader(files.next());
+        position = 0;
+        limit = 0;
+        skipLineFeed = false;
+        // the first row contains the column names
+        if (!readLine()) {
+          close(reader);
+          continue;
+        }
+      }
+      if (!readLine()) {
+        close(reader);
+        continue;
+      }
+      if (rowLength > 0) {
+        split();
+        return true;
+      }
+    }
+  }
+
+  private void close(Reader finished) throws IOException {
+    finished.close();
+    reader = null;
+  }
+
+  /**
+   * Reads the characters of the next line of the current file into the row buffer.
+   *
+   * @return false if the end of the file is reached
+   *
+   * @author Ben Kohr
+   */
+  private boolean readLine() throws IOException {
+    rowLength = 0;
+    boolean read = false;
+    while (true) {
+      if (position == limit) {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return read;
+        }
+      }
+      char c = buffer[position++];
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (c == '\n') {
+          continue;
+        }
+      }
+      read = true;
+      if (c == '\n') {
+        return true;
+      }
+      if (c == '\r') {
+        skipLineFeed = true;
+        return true;
+      }
+      if (rowLength == row.length) {
+        char[] larger = new char[row.length * 2];
+        System.arraycopy(row, 0, larger, 0, rowLength);
+        row = larger;
+      }
+      row[rowLength++] = c;
+    }
+  }
+
+  /**
+   * Finds the trimmed fields of the current row.
+   *
+   * @author Ben Kohr
+   */
+  private void split() {
+    fieldCount = 0;
+    int start = 0;
+    for (int i = 0; i <= rowLength; i++) {
+      if (i == rowLength || row[i] == SEPARATOR_CHAR) {
+        if (fieldCount == starts.length) {
+          int[] largerStarts = new int[starts.length * 2];
+          int[] largerEnds = new int[ends.length * 2];
+          System.arraycopy(starts, 0, largerStarts, 0, fieldCount);
+          System.arraycopy(ends, 0, largerEnds, 0, fieldCount);
+          starts = largerStarts;
+          ends = largerEnds;
+        }
+        int end = i;
+        // trim like String.trim()
+        while (start < end && row[start] <= ' ') {
+          start++;
+        }
+        while (end > start && row[end - 1] <= ' ') {
+          end--;
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+        start = i + 1;
+      }
+    }
+  }
+
+  /**
+   * Returns a trimmed field of the current row.
+   *
+   * @param index the index of the field
+   * @return the field, or an empty String if the row has less fields
+   */
+  private String getField(int index) {
+    if (index >= fieldCount) {
+      return "";
+    }
+    return new String(row, starts[index], ends[index] - starts[index]);
+  }
+
+  /**
+   * Converts the current row into an AnalysedSequence object by placing the information into the
+   * corresponding fields.
+   *
+   * @return An AnaylsedSequence object containing the information of the row, or null if the row
+   *         contains problematic comments
+   *
+   * @author Ben Kohr
+   */
+  private AnalysedSequence convertRowToSequence() {
+
+    String comments = getField(6);
+    if (FileSaver.areCommentsProblematic(comments)) {
+      return null;
+    }
+
+    AnalysedSequence sequence = new AnalysedSequence();
+
+    sequence.setFileName(getField(0));
+    sequence.setReferencedGene(GeneHandler.checkGene(getField(1), getField(2)));
+
+    addMutations(sequence, 3);
+    addMutations(sequence, 14);
+
+    String hisTag = getField(4);
+    if (hisTag.equals("none") || hisTag.isEmpty()) {
+      sequence.setHisTagPosition(-1);
+    } else {
+      sequence.setHisTagPosition(Integer.parseInt(hisTag));
+    }
+
+    sequence.setManuallyChecked(isYes(getField(5)));
+
+    sequence.setComments(comments);
+    sequence.setResearcher(getField(7));
+    sequence.setAddingDate(getField(8));
+    // missing numbers keep their default values
+    if (!getField(9).isEmpty()) {
+      sequence.setAvgQuality(Integer.parseInt(getField(9)));
+    }
+    if (!getField(10).isEmpty()) {
+      sequence.setTrimPercentage(Double.parseDouble(getField(10)));
+    }
+    sequence.setSequence(getField(11));
+    sequence.setPrimer(getField(12));
+
+    // field 13 contains the mutations again
+
+    return sequence;
+  }
+
+  /**
+   * Adds the comma separated mutations of a field to the sequence.
+   *
+   * @author Ben Kohr
+   */
+  private void addMutations(AnalysedSequence sequence, int index) {
+    if (index >= fieldCount) {
+      return;
+    }
+    int end = ends[index];
+    int start = starts[index];
+    for (int i = start; i <= end; i++) {
+      if (i == end || row[i] == ',') {
+        int from = start;
+        int to = i;
+        while (from < to && row[from] <= ' ') {
+          from++;
+        }
+        while (to > from && row[to - 1] <= ' ') {
+          to--;
+        }
+        if (to > from) {
+          sequence.addMutation(new String(row, from, to - from));
+        }
+        start = i + 1;
+      }
+    }
+  }
+
+  /**
+   * This method checks if a String indicating 'yes' is written into the given field text. This is
+   * necessary to determine the database value for the field 'manually checked'.
+   *
+   * @param answer The String to be checked
+   *
+   * @return Does this String indicate 'yes'?
+   *
+   * @author Ben Kohr
+   */
+  private static boolean isYes(String answer) {
+
+    answer = answer.toLowerCase();
+
+    String[] yesPossibilities = new String[] {"yes", "y", "true", "ok", "okay", "ja"};
+
+    for (String possibility : yesPossibilities) {
+      if (answer.equals(possibility)) {
+        return true;
+      }
+    }
+    return false;
+
+  }
+}
@@ -0,0 +1,226 @@
+package io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class writes the lines of a result file during an analysis run. Unlike a new
+ * {@link FileWriter} per line, the file is opened once and the lines are buffered. The buffer is
+ * written to the file when it is full, when the last write was more than {@link #FLUSH_MILLIS}
+ * ago and when the writer is closed, so other programs see the results with a short delay only.
+ * <p>
+ * Optionally, the lines are written by a dedicated writer thread. Then writing a line only puts it
+ * into a queue, so the analysis never waits for the disk (unless the queue is full). The writer
+ * thread also writes the buffer if no lines arrived for {@link #FLUSH_MILLIS}. Errors of the writer
+ * thread are thrown by the next call of {@link #write(String)} or {@link #close()}.
+ * </p>
+ *
+ * @see FileSaver#storeResultsLocally(String, analysis.AnalysedSequence, analysis.AnalysisContext)
+ *
+ * @author Ben Kohr
+ */
+public class ResultFileWriter implements Closeable {
+
+  /**
+   * The size of the buffer in chars.
+   */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The maximal time in milliseconds written lines stay in the buffer.
+   */
+  public static final long FLUSH_MILLIS = 1000;
+
+  /**
+   * The maximal number of lines waiting for the writer thread.
+   */
+  private static final int QUEUE_SIZE = 1024;
+
+  /**
+   * Marks the end of the lines for the writer thread.
+   */
+  private static final String END = new String();
+
+  private final Writer writer;
+
+  /**
+   * The lines waiting for the writer thread, or null if there is no writer thread.
+   */
+  private final BlockingQueue<String> queue;
+
+  private final Thread thread;
+
+  /**
+   * Indicates whether lines were written since the buffer was written to the file.
+   */
+  private boolean dirty;
+
+  /**
+   * The time of the last writing of the buffer, in milliseconds.
+   */
+  private long lastFlush = System.currentTimeMillis();
+
+  /**
+   * The first error of the writer thread, or null.
+   */
+  private volatile IOException failure;
+
+  private volatile boolean closed;
+
+  /**
+   * Opens a result file.
+   *
+   * @param file the result file
+   * @param header the first line of a new file, or null if the lines are appended to an existing
+   *        file
+   * @param writerThread true if the lines shall be written by a dedicated writer thread
+   *
+   * @throws IOException if the file can't be opened or the header can't be written
+   *
+   * @author Ben Kohr
+   */
+  public ResultFileWriter(File file, String header, boolean writerThread) throws IOException {
+    writer = new BufferedWriter(new FileWriter(file, header == null), BUFFER_SIZE);
+    if (header != null) {
+      writer.write(header);
+      dirty = true;
+    }
+
+    if (writerThread) {
+      queue = new ArrayBlockingQueue<String>(QUEUE_SIZE);
+      thread = new Thread(this::drain, "result writer " + file.getName());
+      thread.setDaemon(true);
+      thread.start();
+    } else {
+      queue = null;
+      thread = null;
+    }
+  }
+
+  /**
+   * Writes a line (or several lines) into the result file.
+   *
+   * @param lines the text to write, including the line separator(s)
+   *
+   * @throws IOException if the file is closed or writing fails
+   *
+   * @author Ben Kohr
+   */
+  public void write(String lines) throws IOException {
+    checkFailure();
+    // close() sets closed under this lock, so no line is queued after the end mark
+    synchronized (this) {
+      if (closed) {
+        throw new IOException("The result file is already closed.");
+      }
+      if (queue == null) {
+        append(lines);
+        return;
+      }
+      try {
+        // the writer thread doesn't need the lock, so it makes room while this thread waits
+        queue.put(lines);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Writing the results was interrupted.");
+      }
+    }
+  }
+
+  /**
+   * Writes the remaining lines into the file and closes it. Closing a closed writer has no effect.
+   *
+   * @throws IOException if writing or closing fails
+   *
+   * @author Ben Kohr
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    try {
+      if (thread != null) {
+        try {
+          queue.put(END);
+          thread.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Writing the results was interrupted.");
+        }
+      }
+    } finally {
+      writer.close();
+    }
+    checkFailure();
+  }
+
+  /**
+   * Writes lines into the buffer and the buffer into the file if it is older than
+   * {@link #FLUSH_MILLIS}.
+   *
+   * @author Ben Kohr
+   */
+  private void append(String lines) throws IOException {
+    writer.write(lines);
+    dirty = true;
+    if (System.currentTimeMillis() - lastFlush >= FLUSH_MILLIS) {
+      flushBuffer();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    writer.flush();
+    dirty = false;
+    lastFlush = System.currentTimeMillis();
+  }
+
+  /**
+   * The writer thread: writes the queued lines until the end mark. After an error, the remaining
+   * lines are discarded, so writing threads don't block.
+   *
+   * @author Ben Kohr
+   */
+  private void drain() {
+    try {
+      while (true) {
+        String lines = dirty ? queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS) : queue.take();
+        if (lines == END) {
+          return;
+        }
+        if (failure != null) {
+          continue;
+        }
+        try {
+          if (lines == null) {
+            // no lines arrived for a while
+            flushBuffer();
+          } else {
+            append(lines);
+          }
+        } catch (IOException e) {
+          failure = e;
+        }
+      }
+    } catch (InterruptedException e) {
+      failure = new InterruptedIOException("Writing the results was interrupted.");
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,347 @@
+package io;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import analysis.Sequence;
+
+/**
+ * This class changes the structure of the gsat database without dropping it. Every change is a
+ * migration with a version number. The applied migrations are stored in the table schema_version,
+ * so every migration is applied once and all of them in the order of their versions.
+ * <p>
+ * MySQL commits every change of the structure immediately, so a migration can't be rolled back if
+ * it fails halfway. Therefore, every step checks whether it is still necessary and a failed
+ * migration is simply applied again the next time. New migrations are appended to
+ * {@link #MIGRATIONS} with the next version, applied migrations must not be changed.
+ * </p>
+ *
+ * @see DatabaseConnection#createDatabase()
+ * @see DatabaseConnection#setDatabaseConnection(String, String, int, String)
+ *
+ * @author Lovis Heindrich
+ */
+public class SchemaMigrations {
+
+  /**
+   * A change of the database structure.
+   */
+  private interface Step {
+    void apply(Connection conn) throws SQLException;
+  }
+
+  /**
+   * A step and its version.
+   */
+  private static class Migration {
+
+    private final int version;
+
+    private final String description;
+
+    private final Step step;
+
+    private Migration(int version, String description, Step step) {
+      this.version = version;
+      this.description = description;
+      this.step = step;
+    }
+  }
+
+  /**
+   * The migrations in the order of their versions. The indexes cover the conditions of the query
+   * methods of {@link DatabaseConnection}. The names of the genes and the genes of the sequences
+   * are already covered by the first columns of the unique digest indexes.
+   */
+  private static final List<Migration> MIGRATIONS = Arrays.asList(
+      new Migration(1, "digests of genes and sequences", SchemaMigrations::addDigests),
+      new Migration(2, "index of the mutations of a sequence",
+          conn -> addIndex(conn, "mutations", "INDEX mutations_sequence (sequence, mutation)")),
+      new Migration(3, "indexes of the date and researcher of a sequence", conn -> {
+        addIndex(conn, "sequences", "INDEX sequences_date (date)");
+        addIndex(conn, "sequences", "INDEX sequences_researcher (researcher)");
+      }),
+      new Migration(4, "index of the researcher names",
+          conn -> addIndex(conn, "researchers", "INDEX researchers_name (name)")));
+
+  /**
+   * Only one program at a time migrates the database.
+   */
+  private static final String LOCK = "gsat_migration";
+
+  /**
+   * The time in seconds to wait for another program which migrates the database.
+   */
+  private static final int LOCK_TIMEOUT = 60;
+
+  /**
+   * The number of rows whose digests are computed together.
+   */
+  private static final int DIGEST_ROWS = 1000;
+
+  /**
+   * Applies all migrations which were not applied to the database yet.
+   *
+   * @param conn A connection with the gsat database selected.
+   *
+   * @return The version of the database after the migrations.
+   *
+   * @throws SQLException Error while changing the database (the migrations before were applied).
+   *
+   * @author Lovis Heindrich
+   */
+  public static int migrate(Connection conn) throws SQLException {
+    Statement stmt = conn.createStatement();
+    stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version "
+        + "(version INTEGER unsigned NOT NULL, description VARCHAR(200), applied DATETIME, "
+        + "PRIMARY KEY(version))");
+
+    ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK + "', " + LOCK_TIMEOUT + ")");
+    if (!rs.next() || rs.getInt(1) != 1) {
+      stmt.close();
+      throw new SQLException("The database is migrated by another program.");
+    }
+
+    try {
+      // the version is read after locking, another program may have migrated the database
+      int version = getVersion(conn);
+      for (Migration migration : MIGRATIONS) {
+        if (migration.version <= version) {
+          continue;
+        }
+        migration.step.apply(conn);
+
+        PreparedStatement pstmt = conn.prepareStatement(
+            "INSERT INTO schema_version (version, description, applied) VALUES (?, ?, NOW())");
+        pstmt.setInt(1, migration.version);
+        pstmt.setString(2, migration.description);
+        pstmt.executeUpdate();
+        pstmt.close();
+        version = migration.version;
+      }
+      return version;
+    } finally {
+      stmt.executeQuery("SELECT RELEASE_LOCK('" + LOCK + "')");
+      stmt.close();
+    }
+  }
+
+  /**
+   * Returns the version of the database, i.e. the highest version of the applied migrations.
+   *
+   * @param conn A connection with the gsat database selected.
+   *
+   * @return The version, 0 if no migration was applied.
+   *
+   * @throws SQLException Error while reading the versions.
+   *
+   * @author Lovis Heindrich
+   */
+  public static int getVersion(Connection conn) throws SQLException {
+    Statement stmt = conn.createStatement();
+    ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version");
+    int version = 0;
+    if (rs.next()) {
+      version = rs.getInt(1);
+    }
+    stmt.close();
+    return version;
+  }
+
+  /**
+   * Returns the version of the last migration, which databases have after {@link #migrate}.
+   *
+   * @return The latest version.
+   */
+  public static int getLatestVersion() {
+    return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+  }
+
+  /**
+   * Migration 1: Adds the digest columns and their unique indexes. The digests of the stored genes
+   * and sequences are computed here. Rows which are duplicates according to the unique indexes are
+   * merged before the indexes are added.
+   *
+   * @see analysis.Sequence#getDigest()
+   *
+   * @author Lovis Heindrich
+   */
+  private static void addDigests(Connection conn) throws SQLException {
+    for (String table : new String[] {"genes", "sequences"}) {
+      if (!exists(conn, "columns", table, "column_name", "digest")) {
+        // existing rows get an empty digest
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate(
+            "ALTER TABLE " + table + " ADD digest CHAR(64) CHARACTER SET ascii NOT NULL");
+        stmt.close();
+      }
+
+      // the rows are read in the order of their ids, every chunk starts after the last one
+      PreparedStatement select = conn.prepareStatement("SELECT id, sequence FROM " + table
+          + " WHERE id > ? AND digest = '' ORDER BY id LIMIT " + DIGEST_ROWS);
+      PreparedStatement update =
+          conn.prepareStatement("UPDATE " + table + " SET digest = ? WHERE id = ?");
+      int lastId = 0;
+      boolean found = true;
+      while (found) {
+        found = false;
+        select.setInt(1, lastId);
+        ResultSet rs = select.executeQuery();
+        while (rs.next()) {
+          lastId = rs.getInt(1);
+          update.setString(1, Sequence.computeDigest(rs.getString(2)));
+          update.setInt(2, lastId);
+          update.addBatch();
+          found = true;
+        }
+        if (found) {
+          update.executeBatch();
+        }
+      }
+      select.close();
+      update.close();
+    }
+
+    // only the first 100 characters of the organism are indexed, genes without an organism are
+    // never duplicates
+    if (!exists(conn, "statistics", "genes", "index_name", "genes_digest")) {
+      List<int[]> duplicates = findDuplicates(conn, "SELECT d.id, k.id FROM genes d JOIN "
+          + "(SELECT MIN(id) AS id, name, LEFT(organism, 100) AS organism, digest FROM genes "
+          + "WHERE organism IS NOT NULL GROUP BY name, LEFT(organism, 100), digest "
+          + "HAVING COUNT(*) > 1) k ON d.name = k.name "
+          + "AND LEFT(d.organism, 100) = k.organism AND d.digest = k.digest AND d.id > k.id");
+      mergeDuplicates(conn, duplicates, "DELETE FROM genes WHERE id = ?",
+          "UPDATE sequences SET gene = ? WHERE gene = ?");
+      addIndex(conn, "genes", "UNIQUE INDEX genes_digest (name, organism(100), digest)");
+    }
+
+    // the genes are merged first, their sequences may be duplicates afterwards
+    if (!exists(conn, "statistics", "sequences", "index_name", "sequences_digest")) {
+      List<int[]> duplicates = findDuplicates(conn, "SELECT d.id, k.id FROM sequences d JOIN "
+          + "(SELECT MIN(id) AS id, gene, name, digest FROM sequences "
+          + "WHERE gene IS NOT NULL GROUP BY gene, name, digest HAVING COUNT(*) > 1) k "
+          + "ON d.gene = k.gene AND d.name = k.name AND d.digest = k.digest AND d.id > k.id");
+      // the mutations which the kept sequence already has are not moved
+      mergeDuplicates(conn, duplicates, "DELETE FROM sequences WHERE id = ?",
+          "DELETE d FROM mutations d JOIN mutations k ON k.mutation = d.mutation "
+              + "WHERE k.sequence = ? AND d.sequence = ?",
+          "UPDATE mutations SET sequence = ? WHERE sequence = ?");
+      addIndex(conn, "sequences", "UNIQUE INDEX sequences_digest (gene, name, digest)");
+    }
+  }
+
+  /**
+   * Finds rows which are duplicates of other rows.
+   *
+   * @param conn A connection with the gsat database selected.
+   * @param query A query which returns the id of every duplicate and the id of the row which is
+   *        kept instead.
+   *
+   * @return The pairs of the duplicate and the kept row.
+   *
+   * @throws SQLException Error while executing the query.
+   *
+   * @author Lovis Heindrich
+   */
+  private static List<int[]> findDuplicates(Connection conn, String query) throws SQLException {
+    List<int[]> duplicates = new ArrayList<int[]>();
+    Statement stmt = conn.createStatement();
+    ResultSet rs = stmt.executeQuery(query);
+    while (rs.next()) {
+      duplicates.add(new int[] {rs.getInt(1), rs.getInt(2)});
+    }
+    stmt.close();
+    return duplicates;
+  }
+
+  /**
+   * Merges duplicates into the rows which are kept. The references to the duplicates are changed
+   * first and the duplicates are deleted afterwards, so a merge which failed halfway is completed
+   * by the next migration.
+   *
+   * @param conn A connection with the gsat database selected.
+   * @param duplicates The pairs of the duplicate and the kept row.
+   * @param delete The statement which deletes a duplicate, its parameter is the duplicate.
+   * @param moves The statements which change the references to a duplicate, in their order. Their
+   *        parameters are the kept row and the duplicate.
+   *
+   * @throws SQLException Error while merging the rows.
+   *
+   * @author Lovis Heindrich
+   */
+  private static void mergeDuplicates(Connection conn, List<int[]> duplicates, String delete,
+      String... moves) throws SQLException {
+    if (duplicates.isEmpty()) {
+      return;
+    }
+    for (String move : moves) {
+      PreparedStatement pstmt = conn.prepareStatement(move);
+      for (int[] duplicate : duplicates) {
+        pstmt.setInt(1, duplicate[1]);
+        pstmt.setInt(2, duplicate[0]);
+        pstmt.addBatch();
+      }
+      pstmt.executeBatch();
+      pstmt.close();
+    }
+
+    PreparedStatement pstmt = conn.prepareStatement(delete);
+    for (int[] duplicate : duplicates) {
+      pstmt.setInt(1, duplicate[0]);
+      pstmt.addBatch();
+    }
+    pstmt.executeBatch();
+    pstmt.close();
+  }
+
+  /**
+   * Adds an index to a table, unless the table already has an index with the same name.
+   *
+   * @param conn A connection with the gsat database selected.
+   * @param table The table.
+   * @param definition The definition of the index, e.g. "INDEX name (column)".
+   *
+   * @throws SQLException Error while adding the index.
+   *
+   * @author Lovis Heindrich
+   */
+  private static void addIndex(Connection conn, String table, String definition)
+      throws SQLException {
+    // the name is the word before the columns
+    String[] words = definition.substring(0, definition.indexOf('(')).trim().split(" ");
+    if (exists(conn, "statistics", table, "index_name", words[words.length - 1])) {
+      return;
+    }
+    Statement stmt = conn.createStatement();
+    stmt.executeUpdate("ALTER TABLE " + table + " ADD " + definition);
+    stmt.close();
+  }
+
+  /**
+   * Checks whether a column or an index of a table of the current database exists.
+   *
+   * @param view The view of information_schema, "columns" or "statistics".
+   * @param table The table.
+   * @param field The field of the view which contains the name.
+   * @param name The name of the column or index.
+   *
+   * @author Lovis Heindrich
+   */
+  private static boolean exists(Connection conn, String view, String table, String field,
+      String name) throws SQLException {
+    PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM information_schema." + view
+        + " WHERE table_schema = DATABASE() AND table_name = ? AND " + field + " = ? LIMIT 1");
+    pstmt.setString(1, table);
+    pstmt.setString(2, name);
+    ResultSet rs = pstmt.executeQuery();
+    boolean exists = rs.next();
+    pstmt.close();
+    return exists;
+  }
+}
@@ -4,14 +4,14 @@ import java.io.File;
 import java.io.IOException;
 import java.util.LinkedList;
 
-import org.biojava.bio.program.abi.ABITrace;
-import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.symbol.IllegalSymbolException;
+import org.jcvi.jillion.trace.chromat.ChannelGroup;
 import org.jcvi.jillion.trace.chromat.ChromatogramFactory;
 import org.jcvi.jillion.trace.chromat.abi.AbiChromatogram;
 
 import analysis.AnalysedSequence;
 import analysis.Pair;
+import analysis.TraceData;
 import exceptions.FileReadingException;
 import exceptions.MissingPathException;
 import exceptions.PathUsage;
@@ -65,7 +65,8 @@ public class SequenceReader {
   /**
    * Overload taking an input file Parses one AB1 file (the only one or the next one in the list)
    * into a sequence. If possible, deletes the first entry of the list. Note: There's no method to
-   * read in several files at once, because the files is analyzed one by one.
+   * read in several files at once, because the files is analyzed one by one. If it is configured,
+   * the file is read with the memory mapped {@link AbifReader}, otherwise with Jillion.
    * 
    * @param file The file object modeling the AB1 file to be converted into a sequence
    * 
@@ -80,12 +81,24 @@ public class SequenceReader {
   public static AnalysedSequence convertFileIntoSequence(File file)
       throws FileReadingException, IOException, MissingPathException, IllegalSymbolException {
 
-    if (path == null) {
+    // the file is given, so the configured path is not needed
+    if (file == null) {
       throw new MissingPathException(PathUsage.READING);
     }
 
     File referencedFile = file;
 
+    if (ConfigHandler.isMappedAb1Reader()) {
+      AbifReader reader = new AbifReader(referencedFile);
+      AnalysedSequence parsedSequence = new AnalysedSequence(reader.getBases(),
+          ConfigHandler.getResearcher(), referencedFile.getName(), reader.getQualities());
+      parsedSequence.setTraces(new TraceData(referencedFile, reader.getChannelA(),
+          reader.getChannelC(), reader.getChannelG(), reader.getChannelT(),
+          reader.getBaseCalls()));
+      return parsedSequence;
+    }
+
+    // the file is parsed only once, the chromatogram also contains the traces and base calls
     AbiChromatogram abifile = (AbiChromatogram) ChromatogramFactory.create(referencedFile);
 
     String sequence = abifile.getNucleotideSequence().toString();
@@ -99,13 +112,14 @@ public class SequenceReader {
     AnalysedSequence parsedSequence = new AnalysedSequence(sequence, ConfigHandler.getResearcher(),
         referencedFile.getName(), qualitiesInt);
 
-    ABITrace myTrace = new ABITrace(referencedFile);
-
-    parsedSequence.setChannelA(myTrace.getTrace(DNATools.a()));
-    parsedSequence.setChannelC(myTrace.getTrace(DNATools.c()));
-    parsedSequence.setChannelG(myTrace.getTrace(DNATools.g()));
-    parsedSequence.setChannelT(myTrace.getTrace(DNATools.t()));
-    parsedSequence.setBaseCalls(myTrace.getBasecalls());
+    // the traces are only softly referenced, they are read again from the file if necessary
+    ChannelGroup channels = abifile.getChannelGroup();
+    parsedSequence.setTraces(new TraceData(referencedFile,
+        channels.getAChannel().getPositionSequence().toArray(),
+        channels.getCChannel().getPositionSequence().toArray(),
+        channels.getGChannel().getPositionSequence().toArray(),
+        channels.getTChannel().getPositionSequence().toArray(),
+        abifile.getPeakSequence().toArray()));
 
     return parsedSequence;
   }
@@ -119,6 +133,21 @@ public class SequenceReader {
    * @author Kevin Otto
    */
   public static Pair<LinkedList<File>, LinkedList<File>> listFiles() {
+    return listFiles(path);
+  }
+
+
+  /**
+   * Returns a list of all AB1 files in the given folder (or the given file, if the path points to
+   * an AB1 file). The path of this class is not changed, so this can be used by several analysis
+   * runs at the same time.
+   * 
+   * @param path the folder or the AB1 file
+   * 
+   * @return A Pair containing a list of readable .ab1 files and a list of all other files.
+   * @author Kevin Otto
+   */
+  public static Pair<LinkedList<File>, LinkedList<File>> listFiles(String path) {
 
     // get list of all files and Pathes in given path
 
@@ -144,11 +173,8 @@ public class SequenceReader {
     if (allFiles != null && allFiles.length > 0) {
       for (int fileId = 0; fileId <= lastId; fileId++) {
         File activeFile = allFiles[fileId];
-        String fileName = activeFile.getName();
-        String fileEnding = fileName.split("\\.")[fileName.split("\\.").length - 1];
         // if it is a File and the fileending is abi or ab1 add file
-        if (activeFile.isFile()
-            && (fileEnding.toLowerCase().equals("ab1") || fileEnding.toLowerCase().equals("abi"))) {
+        if (isAb1File(activeFile)) {
           ab1Files.add(activeFile);
         } else if (!"config.ini".equals(activeFile.getName())) {
           oddFiles.add(activeFile);
@@ -159,6 +185,23 @@ public class SequenceReader {
   }
 
 
+  /**
+   * Checks if the given file is an AB1 file, i.e. an existing file with the ending .ab1 or .abi
+   * (ignoring case). The content of the file is not checked.
+   * 
+   * @param file the file to check
+   * 
+   * @return true if the file is an AB1 file
+   * @author Kevin Otto
+   */
+  public static boolean isAb1File(File file) {
+    String fileName = file.getName();
+    String fileEnding = fileName.split("\\.")[fileName.split("\\.").length - 1];
+    return file.isFile()
+        && (fileEnding.toLowerCase().equals("ab1") || fileEnding.toLowerCase().equals("abi"));
+  }
+
+
   /**
    * Discards the current path and files.
    * 
@@ -0,0 +1,164 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+
+import org.biojava.bio.program.abi.ABITrace;
+import org.biojava.bio.seq.DNATools;
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.jcvi.jillion.trace.chromat.ChannelGroup;
+import org.jcvi.jillion.trace.chromat.Chromatogram;
+import org.jcvi.jillion.trace.chromat.ChromatogramFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import analysis.AnalysedSequence;
+import exceptions.FileReadingException;
+import exceptions.MissingPathException;
+import io.AbifReader;
+import io.ConfigHandler;
+import io.SequenceReader;
+
+/**
+ * This class checks that the memory mapped AB1 parser reads the same data as Jillion and BioJava.
+ *
+ * @author Lovis Heindrich
+ */
+public class AbifReaderTests {
+
+  /**
+   * Returns all AB1 files of the test plates.
+   */
+  private static LinkedList<File> testFiles() {
+    LinkedList<File> files = new LinkedList<File>();
+    for (String folder : new String[] {"Forward", "Reverse"}) {
+      File path = new File("resources/ab1/Tk_Gs40Hits/" + folder);
+      files.addAll(SequenceReader.listFiles(path.getAbsolutePath()).first);
+    }
+    files.addAll(
+        SequenceReader.listFiles(new File("resources/ab1/Tk40Hits050215").getAbsolutePath()).first);
+    return files;
+  }
+
+  /**
+   * Converts an array of 16 bit numbers like the readers of this project do.
+   */
+  private static int[] toInt(short[] values) {
+    int[] result = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      result[i] = values[i];
+    }
+    return result;
+  }
+
+  @After
+  public void resetReader() {
+    ConfigHandler.setMappedAb1Reader(false);
+  }
+
+  /**
+   * Compares bases, qualities, traces and base calls with the Jillion chromatogram.
+   * 
+   * @throws IOException
+   */
+  @Test
+  public void testParityWithJillion() throws IOException {
+    LinkedList<File> files = testFiles();
+    assertTrue(files.size() > 20);
+    for (File file : files) {
+      AbifReader reader = new AbifReader(file);
+      Chromatogram chromatogram = ChromatogramFactory.create(file);
+
+      assertEquals(chromatogram.getNucleotideSequence().toString(), reader.getBases());
+      byte[] qualities = chromatogram.getQualitySequence().toArray();
+      assertEquals(qualities.length, reader.getQualities().length);
+      for (int i = 0; i < qualities.length; i++) {
+        assertEquals(qualities[i], reader.getQualities()[i]);
+      }
+      ChannelGroup channels = chromatogram.getChannelGroup();
+      assertArrayEquals(toInt(channels.getAChannel().getPositionSequence().toArray()),
+          reader.getChannelA());
+      assertArrayEquals(toInt(channels.getCChannel().getPositionSequence().toArray()),
+          reader.getChannelC());
+      assertArrayEquals(toInt(channels.getGChannel().getPositionSequence().toArray()),
+          reader.getChannelG());
+      assertArrayEquals(toInt(channels.getTChannel().getPositionSequence().toArray()),
+          reader.getChannelT());
+      assertArrayEquals(toInt(chromatogram.getPeakSequence().toArray()), reader.getBaseCalls());
+    }
+  }
+
+  /**
+   * Compares the traces and base calls with the BioJava ABITrace.
+   * 
+   * @throws IOException
+   * @throws IllegalSymbolException
+   */
+  @Test
+  public void testParityWithBioJava() throws IOException, IllegalSymbolException {
+    for (File file : testFiles()) {
+      AbifReader reader = new AbifReader(file);
+      ABITrace trace = new ABITrace(file);
+
+      assertArrayEquals(trace.getTrace(DNATools.a()), reader.getChannelA());
+      assertArrayEquals(trace.getTrace(DNATools.c()), reader.getChannelC());
+      assertArrayEquals(trace.getTrace(DNATools.g()), reader.getChannelG());
+      assertArrayEquals(trace.getTrace(DNATools.t()), reader.getChannelT());
+      assertArrayEquals(trace.getBasecalls(), reader.getBaseCalls());
+    }
+  }
+
+  /**
+   * Checks that SequenceReader creates the same sequences with both readers.
+   * 
+   * @throws FileReadingException
+   * @throws IOException
+   * @throws MissingPathException
+   * @throws IllegalSymbolException
+   */
+  @Test
+  public void testSequenceReaderSetting()
+      throws FileReadingException, IOException, MissingPathException, IllegalSymbolException {
+    for (File file : testFiles()) {
+      ConfigHandler.setMappedAb1Reader(false);
+      AnalysedSequence jillion = SequenceReader.convertFileIntoSequence(file);
+      ConfigHandler.setMappedAb1Reader(true);
+      AnalysedSequence mapped = SequenceReader.convertFileIntoSequence(file);
+
+      assertEquals(jillion.getSequence(), mapped.getSequence());
+      assertEquals(jillion.getFileName(), mapped.getFileName());
+      assertEquals(jillion.getResearcher(), mapped.getResearcher());
+      assertArrayEquals(jillion.getQuality(), mapped.getQuality());
+      assertArrayEquals(jillion.getChannelA(), mapped.getChannelA());
+      assertArrayEquals(jillion.getChannelC(), mapped.getChannelC());
+      assertArrayEquals(jillion.getChannelG(), mapped.getChannelG());
+      assertArrayEquals(jillion.getChannelT(), mapped.getChannelT());
+      assertArrayEquals(jillion.getBaseCalls(), mapped.getBaseCalls());
+    }
+  }
+
+  /**
+   * Checks that a corrupt file leads to an IOException.
+   * 
+   * @throws FileReadingException
+   * @throws MissingPathException
+   * @throws IllegalSymbolException
+   */
+  @Test
+  public void testCorruptFile()
+      throws FileReadingException, MissingPathException, IllegalSymbolException {
+    ConfigHandler.setMappedAb1Reader(true);
+    try {
+      SequenceReader.convertFileIntoSequence(new File("resources/ab1/corrupt.ab1"));
+      fail();
+    } catch (IOException e) {
+      assertEquals("The file corrupt.ab1 is no AB1 file.", e.getMessage());
+    }
+  }
+}
@@ -8,20 +8,33 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.biojava.bio.symbol.IllegalSymbolException;
 import org.junit.Test;
 
 import analysis.AnalysedSequence;
+import analysis.AnalysisContext;
 import analysis.Gene;
+import analysis.GeneIndex;
 import analysis.MutationAnalysis;
+import analysis.PackedNucleotides;
+import analysis.QualityAnalysis;
 import analysis.Sequence;
+import analysis.StagedPipeline;
 import analysis.StringAnalysis;
 import exceptions.CorruptedSequenceException;
 import exceptions.DissimilarGeneException;
 import exceptions.FileReadingException;
 import exceptions.MissingPathException;
 import exceptions.UndefinedTypeOfMutationException;
+import gui.GUIUtils;
+import io.ProblematicComment;
 import io.SequenceReader;
 
 /**
@@ -146,6 +159,37 @@ public class AnalysisTests {
 
   }
 
+  /**
+   * Test if translating all three reading frames at once gives the same amino acids as translating
+   * every frame on its own
+   *
+   * @author bluemlj
+   */
+  @Test
+  public void translateReadingFrames() {
+    String[] frames = StringAnalysis.translateReadingFrames("ATGNCCAAATAAGG");
+    assertEquals("MXK#", frames[0]);
+    assertEquals("XPNK", frames[1]);
+    assertEquals("XQIR", frames[2]);
+
+    Random random = new Random(6);
+    for (int length = 0; length < 30; length++) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+        builder.append("ACGTacgtN".charAt(random.nextInt(9)));
+      }
+      String nucleotides = builder.toString();
+      frames = StringAnalysis.translateReadingFrames(nucleotides);
+      for (int frame = 0; frame < 3; frame++) {
+        int end = frame + Math.max(0, (length - frame) / 3) * 3;
+        String expected = end > frame
+            ? StringAnalysis.codonsToAminoAcids(nucleotides.substring(frame, end)) : "";
+        assertEquals(expected, frames[frame]);
+      }
+    }
+    assertEquals("MetSTOP", StringAnalysis.codonsToAminoAcids("atgTGA", false));
+  }
+
   /********************
    * Test for reportDifferences()
    ************************************/
@@ -488,6 +532,138 @@ public class AnalysisTests {
 
     result = StringAnalysis.findRightGene(testSeq2, testDatabase);
     assertTrue(result.getId() == (genc.getId()));
+
+    // sequences without seeds are compared with all genes of the index
+    GeneIndex index = new GeneIndex(testDatabase);
+    result = StringAnalysis.findRightGene(testSeq, index);
+    assertTrue(result.getId() == (gena.getId()));
+    assertEquals(0, index.getPrunedCandidates());
+  }
+
+  /**
+   * Test if the k-mer index finds the same gene as a comparison with all genes and prunes the
+   * remaining genes
+   *
+   * @author bluemlj
+   */
+  @Test
+  public void testFindingGeneWithIndex() {
+    Random random = new Random(4);
+    ArrayList<Gene> testDatabase = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      testDatabase.add(new Gene(randomNucleotides(random, 600), i, "testGen" + i, "Jannis"));
+    }
+    GeneIndex index = new GeneIndex(testDatabase);
+
+    for (int i = 0; i < 30; i++) {
+      String read = randomNucleotides(random, 40)
+          + mutate(random, testDatabase.get(i).getSequence(), 20) + randomNucleotides(random, 40);
+      AnalysedSequence testSeq = new AnalysedSequence(read, "Jannis", "toAnalyse", null);
+
+      Gene result = StringAnalysis.findRightGene(testSeq, index);
+      assertEquals(StringAnalysis.findRightGene(testSeq, testDatabase), result);
+      assertEquals(i, result.getId());
+    }
+    assertEquals(30 * 30, index.getPrunedCandidates() + index.getScoredCandidates());
+    assertTrue(index.getScoredCandidates() <= 30 * GeneIndex.MAX_CANDIDATES);
+  }
+
+  /**
+   * Analyses thousands of reads of two runs with different parameters concurrently and checks that
+   * every result equals the result of a serial analysis, i.e. the runs don't change each other's
+   * parameters or results.
+   * 
+   * @see analysis.AnalysisContext
+   * @author jannis blueml
+   */
+  @Test
+  public void testConcurrentAnalysisContexts() throws InterruptedException, ExecutionException {
+    Random random = new Random(8);
+    ArrayList<Gene> genes = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      // genes without stop codons, so the reads are not cut off early
+      StringBuilder gene = new StringBuilder("ATG");
+      while (gene.length() < 300) {
+        String codon = randomNucleotides(random, 3);
+        if (!codon.equals("TAA") && !codon.equals("TAG") && !codon.equals("TGA")) {
+          gene.append(codon);
+        }
+      }
+      genes.add(new Gene(gene.append("TAA").toString(), i, "testGen" + i, "Jannis"));
+    }
+
+    AnalysisContext strict = new AnalysisContext();
+    strict.setGeneIndex(new GeneIndex(genes));
+    AnalysisContext lenient = new AnalysisContext();
+    lenient.setGeneIndex(new GeneIndex(genes));
+    lenient.setAvgApproximationStart(15);
+    lenient.setAvgApproximationEnd(10);
+    lenient.setBreakcounter(4);
+    lenient.setNumAverageNucleotides(8);
+    lenient.setLinearSpaceAlignment(true);
+
+    int reads = 2000;
+    String[] nucleotides = new String[reads];
+    int[][] qualities = new int[reads][];
+    for (int i = 0; i < reads; i++) {
+      String read = mutate(random, genes.get(random.nextInt(genes.size())).getSequence(),
+          random.nextInt(6));
+      nucleotides[i] = randomNucleotides(random, random.nextInt(30)) + read;
+      qualities[i] = new int[nucleotides[i].length()];
+      for (int j = 0; j < qualities[i].length; j++) {
+        qualities[i][j] = random.nextInt(25) > 0 ? 25 + random.nextInt(35) : random.nextInt(25);
+      }
+    }
+    int[] trace = new int[400];
+
+    AnalysedSequence[] serial = new AnalysedSequence[reads];
+    for (int i = 0; i < reads; i++) {
+      serial[i] = new AnalysedSequence(nucleotides[i], "Jannis", "read" + i, qualities[i].clone());
+      setChannels(serial[i], trace);
+      GUIUtils.analyseSequence(serial[i], null, i % 2 == 0 ? strict : lenient);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    LinkedList<Future<AnalysedSequence>> concurrent = new LinkedList<>();
+    for (int i = 0; i < reads; i++) {
+      int read = i;
+      concurrent.add(executor.submit(() -> {
+        AnalysedSequence sequence = new AnalysedSequence(nucleotides[read], "Jannis",
+            "read" + read, qualities[read].clone());
+        setChannels(sequence, trace);
+        GUIUtils.analyseSequence(sequence, null, read % 2 == 0 ? strict : lenient);
+        return sequence;
+      }));
+    }
+    int problematic = 0;
+    try {
+      for (int i = 0; i < reads; i++) {
+        AnalysedSequence result = concurrent.removeFirst().get();
+        assertEquals(serial[i].getReferencedGene(), result.getReferencedGene());
+        assertEquals(serial[i].getSequence(), result.getSequence());
+        assertEquals(serial[i].getOffset(), result.getOffset());
+        assertEquals(serial[i].getTrimPercentage(), result.getTrimPercentage(), 0);
+        assertEquals(serial[i].getMutations(), result.getMutations());
+        assertEquals(serial[i].getComments(), result.getComments());
+        assertEquals(serial[i].getProblematicComments(), result.getProblematicComments());
+        assertEquals(serial[i].isReadingFrameError(), result.isReadingFrameError());
+        if (!serial[i].getProblematicComments().isEmpty()) {
+          problematic++;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(problematic < reads / 10);
+    // the runs really used different parameters
+    boolean differentTrimming = false;
+    for (int i = 0; i < reads && !differentTrimming; i++) {
+      AnalysedSequence sequence =
+          new AnalysedSequence(nucleotides[i], "Jannis", "read" + i, qualities[i]);
+      differentTrimming = !Arrays.equals(QualityAnalysis.findLowQuality(sequence, strict),
+          QualityAnalysis.findLowQuality(sequence, lenient));
+    }
+    assertTrue(differentTrimming);
   }
 
   @Test
@@ -624,6 +800,43 @@ public class AnalysisTests {
 
   }
 
+  /**
+   * This test checks if the packed nucleotides behave like the Strings they represent, also for
+   * letters that are not nucleotides.
+   *
+   * @author Kevin Otto
+   */
+  @Test
+  public void testPackedNucleotides() {
+    Random random = new Random(5);
+    for (int length = 0; length < 40; length++) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+        builder.append("ACGTACGTNx".charAt(random.nextInt(10)));
+      }
+      String sequence = builder.toString();
+      PackedNucleotides packed = new PackedNucleotides(sequence);
+
+      assertEquals(sequence, packed.toString());
+      assertEquals(length, packed.length());
+      assertEquals(new StringBuilder(sequence).reverse().toString(), packed.reverse().toString());
+      assertEquals(new Gene("", 0, "Test", null).getComplementarySequence(sequence),
+          packed.complement().toString());
+      for (int i = 0; i < length; i++) {
+        assertEquals(sequence.charAt(i), packed.charAt(i));
+      }
+
+      int begin = random.nextInt(length + 1);
+      int end = begin + random.nextInt(length - begin + 1);
+      PackedNucleotides part = packed.substring(begin, end);
+      assertEquals(sequence.substring(begin, end), part.toString());
+      assertEquals(new PackedNucleotides(sequence.substring(begin, end)), part);
+      assertEquals(new PackedNucleotides(sequence.substring(begin, end)).hashCode(),
+          part.hashCode());
+      assertEquals(packed, packed.reverse().reverse());
+    }
+  }
+
   /**
    * This test checks the Levenshtein algorythm by putting in one empty and one normal String
    * 
@@ -657,6 +870,188 @@ public class AnalysisTests {
     assertTrue(levenMatrix[0][0] == 0);
   }
 
+  /**
+   * This test checks the bit-parallel Levenshtein algorythm against the full matrix for random
+   * nucleotide Strings (also longer than one block of 64 characters) and some special Strings
+   *
+   * @author Kevin Otto
+   */
+  @Test
+  public void testBitParallelLevenshtein() {
+    Random random = new Random(1999);
+    for (int run = 0; run < 300; run++) {
+      String first = randomNucleotides(random, random.nextInt(300));
+      String second = random.nextBoolean() ? mutate(random, first, random.nextInt(40))
+          : randomNucleotides(random, random.nextInt(300));
+      int[][] matrix = StringAnalysis.calculateLevenshteinMatrix(first, second);
+      int expected = StringAnalysis.getLevenshteinIndex(matrix);
+      assertEquals(expected, StringAnalysis.calculateLevenshteinIndexBitParallel(first, second));
+      assertEquals(expected, StringAnalysis.getLevenshteinIndex(first, second));
+    }
+
+    String[][] special = {{"", ""}, {"", "Hallo"}, {"hallo", "bonjour"}, {"ACGTN", "NNNNN"},
+        {randomNucleotides(random, 64), randomNucleotides(random, 128)},
+        {randomNucleotides(random, 65), randomNucleotides(random, 63)}, {"äöA", "Aö"}};
+    for (String[] pair : special) {
+      int[][] matrix = StringAnalysis.calculateLevenshteinMatrix(pair[0], pair[1]);
+      int expected = StringAnalysis.getLevenshteinIndex(matrix);
+      assertEquals(expected, StringAnalysis.calculateLevenshteinIndexBitParallel(pair[0], pair[1]));
+    }
+  }
+
+  /**
+   * This test checks the banded Levenshtein algorythm against the full matrix for random
+   * nucleotide Strings and several maximal distances
+   *
+   * @author Kevin Otto
+   */
+  @Test
+  public void testBandedLevenshtein() {
+    Random random = new Random(42);
+    for (int run = 0; run < 500; run++) {
+      String first = randomNucleotides(random, random.nextInt(60));
+      String second = randomNucleotides(random, random.nextInt(60));
+      int expected = StringAnalysis.getLevenshteinIndex(first, second);
+
+      for (int maxDistance = 0; maxDistance <= 60; maxDistance += 3) {
+        int result = StringAnalysis.getLevenshteinIndex(first, second, maxDistance);
+        if (expected <= maxDistance) {
+          assertEquals(expected, result);
+        } else {
+          assertEquals(maxDistance + 1, result);
+        }
+      }
+    }
+  }
+
+  /**
+   * This test checks that the similarity with lower bound is the same as without bound, if it is
+   * better than the bound
+   *
+   * @author Kevin Otto
+   */
+  @Test
+  public void testBandedSimilarity() {
+    Random random = new Random(7);
+    for (int run = 0; run < 500; run++) {
+      String first = randomNucleotides(random, 1 + random.nextInt(80));
+      String second = mutate(random, first, random.nextInt(20));
+      double expected = StringAnalysis.checkSimilarity(first, second);
+
+      for (double lowerBound = 0; lowerBound < 100; lowerBound += 12.5) {
+        double result = StringAnalysis.checkSimilarity(first, second, lowerBound);
+        if (expected > lowerBound) {
+          assertEquals(expected, result, 0);
+        } else {
+          assertTrue(result <= lowerBound);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a random String of nucleotides
+   */
+  private static String randomNucleotides(Random random, int length) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      builder.append("ACGT".charAt(random.nextInt(4)));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Sets the same (shared) trace for all four channels of a sequence
+   */
+  private static void setChannels(AnalysedSequence sequence, int[] trace) {
+    sequence.setChannelA(trace);
+    sequence.setChannelC(trace);
+    sequence.setChannelG(trace);
+    sequence.setChannelT(trace);
+  }
+
+  /**
+   * Applies the given number of random substitutions, insertions and deletions to a String
+   */
+  private static String mutate(Random random, String original, int mutations) {
+    StringBuilder builder = new StringBuilder(original);
+    for (int i = 0; i < mutations && builder.length() > 0; i++) {
+      int position = random.nextInt(builder.length());
+      switch (random.nextInt(3)) {
+        case 0:
+          builder.setCharAt(position, "ACGT".charAt(random.nextInt(4)));
+          break;
+        case 1:
+          builder.insert(position, "ACGT".charAt(random.nextInt(4)));
+          break;
+        default:
+          builder.deleteCharAt(position);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Test if the linear space variant of reportDifferences gives the same differences as the matrix
+   * variant, for the fixtures of the reportDifferences tests and for long random Strings
+   * 
+   * @author Kevin Otto
+   */
+  @Test
+  public void testDifferencesLinearSpace() {
+    String[][] fixtures = {{"hallo", "hallxo"}, {"hallo", "allo"}, {"helllo", "hello"},
+        {"hellox", "hello"}, {"", "hello"}, {"hello", ""}, {"helo", "hello"}, {"ello", "hello"},
+        {"hell", "hello"}, {"helxo", "hello"}, {"", ""}};
+    for (String[] fixture : fixtures) {
+      assertEquals(MutationAnalysis.reportDifferences(fixture[0], fixture[1]),
+          MutationAnalysis.reportDifferencesLinearSpace(fixture[0], fixture[1]));
+    }
+
+    Random random = new Random(5);
+    for (int run = 0; run < 50; run++) {
+      String gene = StringAnalysis.codonsToAminoAcids(randomNucleotides(random, 3 * 400));
+      String sequence = mutate(random, gene, random.nextInt(30));
+      if (random.nextBoolean()) {
+        sequence = sequence.substring(random.nextInt(sequence.length() / 4));
+      }
+      assertEquals(MutationAnalysis.reportDifferences(gene, sequence),
+          MutationAnalysis.reportDifferencesLinearSpace(gene, sequence));
+      assertEquals(MutationAnalysis.reportDifferences(sequence, gene),
+          MutationAnalysis.reportDifferencesLinearSpace(sequence, gene));
+    }
+  }
+
+  /**
+   * Test if the mutation fixtures give the same mutations if linear space alignment is activated
+   * 
+   * @author Kevin Otto
+   */
+  @Test
+  public void testFindingMutationsLinearSpace()
+      throws CorruptedSequenceException, UndefinedTypeOfMutationException {
+    String[][] fixtures = {{"ATGTTTCCCCAA", "ATGTTATTTCCC"}, {"ATGTTTCCCCAA", "ATGTTACCA"},
+        {"ATGTTAGGGCCC", "ATGTTGGGGCCC"}, {"ATGCAAGTTCTAGGGCCC", "ATGCAAGTCCTAGGGCCC"},
+        {"TATTTTTATCCCCCC", "TATTATCCCCCC"}, {"ATGTTCTTATTTTAA", "ATGTTCTTTTAA"},
+        {"TATTAT", "TATTTCTAT"}, {"ATGCCCAAATAA", "ATGCCCGGGAAATAA"},
+        {"TTTTTTTTT", "TTTTTATTT"}, {"ATGCCCCACCCCTAA", "ATGCCCCCCCCCTAA"}};
+    AnalysisContext matrix = new AnalysisContext();
+    matrix.setLinearSpaceAlignment(false);
+    AnalysisContext linearSpace = new AnalysisContext();
+    linearSpace.setLinearSpaceAlignment(true);
+
+    for (String[] fixture : fixtures) {
+      Gene gene = new Gene(fixture[0], 0, "testGen1", "Jannis");
+      AnalysedSequence matrixSeq = new AnalysedSequence(fixture[1], "Jannis", "toAnalyse", null);
+      matrixSeq.setReferencedGene(gene);
+      AnalysedSequence linearSeq = new AnalysedSequence(fixture[1], "Jannis", "toAnalyse", null);
+      linearSeq.setReferencedGene(gene);
+
+      MutationAnalysis.findMutations(matrixSeq, matrix);
+      MutationAnalysis.findMutations(linearSeq, linearSpace);
+      assertEquals(matrixSeq.getMutations(), linearSeq.getMutations());
+    }
+  }
+
   @Test
   public void testSilentMutationFinding()
       throws CorruptedSequenceException, UndefinedTypeOfMutationException {
@@ -796,4 +1191,124 @@ public class AnalysisTests {
     assertTrue(testSequence.getComments().contains("There are possible plasmidmixes at the positions 2, 3, 8, "));
   }
 
+  /**
+   * This test runs the staged pipeline over many files. The results have to be stored in the order
+   * of the files, and never more reads than the capacity of the pipeline may be between reading
+   * and storing.
+   * 
+   * @throws InterruptedException
+   */
+  @Test
+  public void testStagedPipelineBackpressure() throws InterruptedException {
+    LinkedList<File> folder = SequenceReader
+        .listFiles(new File("resources/ab1/Tk40Hits050215").getAbsolutePath()).first;
+    LinkedList<File> files = new LinkedList<File>();
+    for (int i = 0; i < 3; i++) {
+      files.addAll(folder);
+    }
+    files.add(new File("resources/ab1/corrupt.ab1"));
+
+    AnalysisContext context = new AnalysisContext();
+    context.setGeneIndex(new GeneIndex(new ArrayList<Gene>()));
+    Gene gene = new Gene("ATGAAAGCAGCCTAA", 0, "testGen", "Jannis");
+    StagedPipeline pipeline = new StagedPipeline(context, 4, 6);
+
+    AtomicInteger read = new AtomicInteger();
+    int[] maxInFlight = new int[1];
+    LinkedList<String> stored = new LinkedList<String>();
+    pipeline.setReadListener(sequence -> read.incrementAndGet());
+    String error = pipeline.run(files, gene, (file, sequence, analysisError) -> {
+      maxInFlight[0] = Math.max(maxInFlight[0], read.get() - stored.size());
+      stored.add(sequence.getFileName());
+      return null;
+    });
+
+    assertEquals(null, error);
+    assertEquals(files.size(), stored.size());
+    for (int i = 0; i < files.size(); i++) {
+      assertEquals(files.get(i).getName(), stored.get(i));
+    }
+    assertTrue(maxInFlight[0] <= pipeline.getCapacity());
+    assertTrue(pipeline.getMaxReadQueueDepth() <= pipeline.getCapacity());
+    assertTrue(pipeline.getMaxAnalysedQueueDepth() <= pipeline.getCapacity());
+  }
+
+  /**
+   * This test checks that the staged pipeline stops reading if the writer returns an error.
+   * 
+   * @throws InterruptedException
+   */
+  @Test
+  public void testStagedPipelineStopsOnError() throws InterruptedException {
+    LinkedList<File> files = SequenceReader
+        .listFiles(new File("resources/ab1/Tk40Hits050215").getAbsolutePath()).first;
+
+    AnalysisContext context = new AnalysisContext();
+    context.setGeneIndex(new GeneIndex(new ArrayList<Gene>()));
+    Gene gene = new Gene("ATGAAAGCAGCCTAA", 0, "testGen", "Jannis");
+    StagedPipeline pipeline = new StagedPipeline(context, 2, 3);
+
+    AtomicInteger read = new AtomicInteger();
+    AtomicInteger stored = new AtomicInteger();
+    pipeline.setReadListener(sequence -> read.incrementAndGet());
+    String error = pipeline.run(files, gene,
+        (file, sequence, analysisError) -> stored.incrementAndGet() == 5 ? "stop" : null);
+
+    assertEquals("stop", error);
+    assertEquals(5, stored.get());
+    // one more read may be started while the writer stops
+    assertTrue(read.get() <= 5 + pipeline.getCapacity() + 1);
+  }
+
+  /**
+   * This test checks that a failing read listener only marks the read as failed and doesn't stop
+   * the staged pipeline.
+   * 
+   * @throws InterruptedException
+   */
+  @Test
+  public void testStagedPipelineListenerError() throws InterruptedException {
+    LinkedList<File> files = SequenceReader
+        .listFiles(new File("resources/ab1/Tk40Hits050215").getAbsolutePath()).first;
+
+    AnalysisContext context = new AnalysisContext();
+    context.setGeneIndex(new GeneIndex(new ArrayList<Gene>()));
+    Gene gene = new Gene("ATGAAAGCAGCCTAA", 0, "testGen", "Jannis");
+    StagedPipeline pipeline = new StagedPipeline(context, 2, 3);
+
+    AtomicInteger failed = new AtomicInteger();
+    pipeline.setReadListener(sequence -> {
+      throw new AssertionError("listener");
+    });
+    String error = pipeline.run(files, gene, (file, sequence, analysisError) -> {
+      if (sequence.getProblematicComments()
+          .contains(ProblematicComment.ERROR_DURING_ANALYSIS_OCCURRED)) {
+        failed.incrementAndGet();
+      }
+      return null;
+    });
+
+    assertEquals(null, error);
+    assertEquals(files.size(), failed.get());
+  }
+
+  /**
+   * This test checks that the digest of a sequence only depends on the normalized nucleotides and
+   * that it is computed again when the nucleotides change.
+   */
+  @Test
+  public void testSequenceDigest() {
+    AnalysedSequence sequence = new AnalysedSequence("aat cgt\n", "Jannis", "digest", null);
+    Gene gene = new Gene("AATCGT", 0, "testGene", "Jannis");
+
+    assertEquals(Sequence.computeDigest("AATCGT"), sequence.getDigest());
+    assertEquals(64, sequence.getDigest().length());
+    assertEquals(gene.getDigest(), sequence.getDigest());
+
+    sequence.setSequence("AATCGA");
+    assertTrue(!gene.getDigest().equals(sequence.getDigest()));
+    assertEquals(Sequence.computeDigest("AATCGA"), sequence.getDigest());
+    assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+        Sequence.computeDigest(""));
+  }
 }
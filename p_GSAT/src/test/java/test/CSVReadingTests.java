@@ -3,8 +3,10 @@ package test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.LinkedList;
 
 import org.junit.After;
@@ -14,6 +16,8 @@ import analysis.AnalysedSequence;
 import exceptions.DuplicateGeneException;
 import io.FileRetriever;
 import io.GeneHandler;
+import io.ParallelResultReader;
+import io.ResultFileReader;
 
 public class CSVReadingTests {
 
@@ -184,4 +188,121 @@ public class CSVReadingTests {
 
   }
 
+  /**
+   * This test reads a large result file with the streaming reader. Rows are returned one after
+   * another, Windows line separators, empty rows and rows without the last columns are accepted
+   * and problematic rows are skipped.
+   * 
+   * @throws IOException
+   * @throws DuplicateGeneException
+   */
+  @Test
+  public void testStreamingLargeFile() throws IOException, DuplicateGeneException {
+    GeneHandler.addGene("FSA1", "AATAAT", "ecoli", "comment");
+    File folder = Files.createTempDirectory("gsat_reading").toFile();
+    File file = new File(folder, "large.csv");
+    int rows = 20000;
+    try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+      writer.write("file name; gene; gene organism; mutations\r\n");
+      for (int i = 0; i < rows; i++) {
+        writer.write("s" + i + ".ab1; FSA1; ecoli; A" + i + "R (CGC), K2N; none; yes; c; r; "
+            + "04/03/17; 3; 22; ATC; none; A" + i + "R; +1E4 (ATC)\r\n");
+        if (i % 1000 == 0) {
+          writer.write("\r\n");
+          writer.write("p.ab1; FSA1; ecoli; ; ; ; "
+              + "An error during the analysis process occurred. ; ; ; ; ; ; ; \r\n");
+        }
+      }
+      // the last columns are missing
+      writer.write("short.ab1; FSA1; ecoli; ; ; no; c; r\r\n");
+      writer.write("last.ab1; FSA1; ecoli; ; 3; no; c; r; 04/03/17; 3; 22; ATC; none");
+    }
+
+    int count = 0;
+    try (ResultFileReader reader = FileRetriever.openResults(folder.getPath())) {
+      while (reader.hasNext()) {
+        AnalysedSequence sequence = reader.next();
+        if (count < rows) {
+          assertEquals("s" + count + ".ab1", sequence.getFileName());
+          assertEquals(3, sequence.getMutations().size());
+          assertEquals("A" + count + "R (CGC)", sequence.getMutations().getFirst());
+          assertEquals("+1E4 (ATC)", sequence.getMutations().getLast());
+          assertTrue(sequence.isManuallyChecked());
+        } else if (count == rows) {
+          // the numbers are missing as well
+          assertEquals("short.ab1", sequence.getFileName());
+          assertEquals(-1, sequence.getHisTagPosition());
+          assertEquals(0, sequence.getAvgQuality());
+        } else {
+          assertEquals("last.ab1", sequence.getFileName());
+          assertTrue(sequence.getMutations().isEmpty());
+          assertEquals(3, sequence.getHisTagPosition());
+          assertEquals("none", sequence.getPrimer());
+        }
+        count++;
+      }
+    } finally {
+      file.delete();
+      folder.delete();
+    }
+    assertEquals(rows + 2, count);
+  }
+
+  /**
+   * This test reads many result files with several threads. The results have to be returned in the
+   * same order as by the sequential reader, problematic rows are skipped. A large file among them
+   * is streamed instead of being parsed ahead.
+   * 
+   * @throws IOException
+   * @throws DuplicateGeneException
+   */
+  @Test
+  public void testParallelReading() throws IOException, DuplicateGeneException {
+    GeneHandler.addGene("FSA1", "AATAAT", "ecoli", "comment");
+    File folder = Files.createTempDirectory("gsat_reading").toFile();
+    try {
+      for (int i = 0; i < 200; i++) {
+        try (BufferedWriter writer =
+            Files.newBufferedWriter(new File(folder, "plate_" + i + ".csv").toPath())) {
+          writer.write("file name; gene; gene organism; mutations\n");
+          for (int j = 0; j < i % 4; j++) {
+            writer.write("s" + i + "_" + j + ".ab1; FSA1; ecoli; A" + j + "R (CGC); none; yes; c; "
+                + "r; 04/03/17; 3; 22; ATC; none; A" + j + "R; \n");
+          }
+          writer.write("p" + i + ".ab1; FSA1; ecoli; ; ; ; "
+              + "An error during the analysis process occurred. ; ; ; ; ; ; ; \n");
+        }
+      }
+      File large = new File(folder, "plate_50_all.csv");
+      try (BufferedWriter writer = Files.newBufferedWriter(large.toPath())) {
+        writer.write("file name; gene; gene organism; mutations\n");
+        for (int j = 0; j < 12000; j++) {
+          writer.write("l" + j + ".ab1; FSA1; ecoli; A" + j + "R (CGC); none; yes; c; "
+              + "r; 04/03/17; 3; 22; ATC; none; A" + j + "R; \n");
+        }
+      }
+      assertTrue(large.length() > ParallelResultReader.STREAM_BYTES);
+
+      LinkedList<AnalysedSequence> expected =
+          FileRetriever.convertFilesToSequences(folder.getPath());
+      assertEquals(12300, expected.size());
+      LinkedList<String> names = new LinkedList<String>();
+      try (ParallelResultReader reader = FileRetriever.openResults(folder.getPath(), 4)) {
+        while (reader.hasNext()) {
+          AnalysedSequence sequence = reader.next();
+          names.add(sequence.getFileName());
+          assertEquals(1, sequence.getMutations().size());
+        }
+      }
+      assertEquals(expected.size(), names.size());
+      for (AnalysedSequence sequence : expected) {
+        assertEquals(sequence.getFileName(), names.removeFirst());
+      }
+    } finally {
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+      folder.delete();
+    }
+  }
 }
@@ -0,0 +1,159 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+
+import io.ConnectionPool;
+
+/**
+ * This class tests the pool of database connections. No database is needed, the connections are
+ * simulated.
+ *
+ * @author Lovis Heindrich
+ */
+public class ConnectionPoolTests {
+
+  /**
+   * The number of selected schemas of all simulated connections.
+   */
+  private final AtomicInteger catalogs = new AtomicInteger();
+
+  /**
+   * Creates a data source of simulated connections, which only know whether they are closed.
+   */
+  private DataSource dataSource() {
+    return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {DataSource.class}, (source, method, args) -> {
+          if (!method.getName().equals("getConnection")) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          boolean[] closed = new boolean[1];
+          return Proxy.newProxyInstance(getClass().getClassLoader(),
+              new Class<?>[] {Connection.class}, (connection, call, values) -> {
+                switch (call.getName()) {
+                  case "close":
+                    closed[0] = true;
+                    return null;
+                  case "isClosed":
+                    return closed[0];
+                  case "isValid":
+                    return !closed[0];
+                  case "getAutoCommit":
+                    return true;
+                  case "setCatalog":
+                    catalogs.incrementAndGet();
+                    return null;
+                  case "hashCode":
+                    return System.identityHashCode(connection);
+                  case "equals":
+                    return connection == values[0];
+                  default:
+                    throw new UnsupportedOperationException(call.getName());
+                }
+              });
+        });
+  }
+
+  /**
+   * This test checks that released connections are reused and the schema is only selected once per
+   * connection.
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testReuse() throws SQLException {
+    ConnectionPool pool = new ConnectionPool(dataSource(), "gsat", 2, 60000);
+    Connection first = pool.borrow();
+    pool.bindSchema(first);
+    pool.bindSchema(first);
+    pool.release(first);
+
+    Connection second = pool.borrow();
+    assertSame(first, second);
+    pool.bindSchema(second);
+    assertEquals(1, catalogs.get());
+
+    Connection third = pool.borrow();
+    assertNotSame(first, third);
+    assertEquals(2, pool.getOpenCount());
+    pool.release(second);
+    pool.release(third);
+
+    assertEquals(2, pool.getCreated());
+    assertEquals(1, pool.getReused());
+    assertEquals(2, pool.getIdleCount());
+
+    // the schema has to be selected again, e.g. after it was created again
+    pool.unbindSchema();
+    Connection fourth = pool.borrow();
+    pool.bindSchema(fourth);
+    assertEquals(2, catalogs.get());
+
+    pool.close();
+    assertEquals(1, pool.getOpenCount());
+    pool.release(fourth);
+    assertTrue(fourth.isClosed());
+    assertEquals(0, pool.getOpenCount());
+  }
+
+  /**
+   * This test checks that idle and broken connections are closed.
+   *
+   * @throws SQLException
+   */
+  @Test
+  public void testEviction() throws SQLException {
+    ConnectionPool pool = new ConnectionPool(dataSource(), "gsat", 2, 0);
+    Connection first = pool.borrow();
+    pool.release(first);
+    assertTrue(first.isClosed());
+    assertEquals(0, pool.getOpenCount());
+
+    pool = new ConnectionPool(dataSource(), "gsat", 2, 60000);
+    Connection broken = pool.borrow();
+    broken.close();
+    pool.release(broken);
+    assertEquals(0, pool.getOpenCount());
+    assertNotSame(broken, pool.borrow());
+  }
+
+  /**
+   * This test checks that no more connections than allowed are opened. A thread waits until a
+   * connection is released.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMaxSize() throws Exception {
+    ConnectionPool pool = new ConnectionPool(dataSource(), "gsat", 1, 60000);
+    Connection first = pool.borrow();
+
+    Connection[] borrowed = new Connection[1];
+    Thread thread = new Thread(() -> {
+      try {
+        borrowed[0] = pool.borrow();
+      } catch (SQLException e) {
+        // borrowed stays empty
+      }
+    });
+    thread.start();
+    Thread.sleep(200);
+    assertTrue(thread.isAlive());
+
+    pool.release(first);
+    thread.join(5000);
+    assertSame(first, borrowed[0]);
+    assertEquals(1, pool.getCreated());
+  }
+}
@@ -0,0 +1,172 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import core.ConsoleVersion;
+import core.WatchVersion;
+import io.ConfigHandler;
+import io.FolderWatcher;
+import io.GeneHandler;
+
+/**
+ * This class tests the watching of folders for new AB1 files and the watch mode.
+ *
+ * @author Kevin Otto
+ */
+public class FolderWatcherTests {
+
+  private File source;
+
+  private File destination;
+
+  private String configPath;
+
+  private String genePath;
+
+  @Before
+  public void createFolders() throws IOException {
+    source = Files.createTempDirectory("gsat_watch_source").toFile();
+    destination = Files.createTempDirectory("gsat_watch_destination").toFile();
+    configPath = ConfigHandler.getPath();
+    genePath = GeneHandler.getPath();
+  }
+
+  @After
+  public void deleteFolders() {
+    for (File folder : new File[] {source, destination}) {
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+      folder.delete();
+    }
+    ConfigHandler.setPath(configPath);
+    GeneHandler.setPath(genePath);
+  }
+
+  /**
+   * This test checks that a new AB1 file is returned only once and only after it was completely
+   * written. Other files are ignored.
+   *
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  @Test
+  public void testSettledFiles() throws IOException, InterruptedException {
+    try (FolderWatcher watcher = new FolderWatcher(Arrays.asList(source), 500)) {
+      File read = new File(source, "read.ab1");
+      try (FileOutputStream output = new FileOutputStream(read)) {
+        output.write(new byte[100]);
+        output.flush();
+        Files.write(new File(source, "notes.txt").toPath(), new byte[10]);
+
+        // the file is still written
+        assertTrue(watcher.poll(100, TimeUnit.MILLISECONDS).isEmpty());
+        assertTrue(watcher.hasPendingFiles());
+        output.write(new byte[100]);
+      }
+      Files.write(new File(source, "second.ABI").toPath(), new byte[10]);
+
+      LinkedList<File> files = new LinkedList<File>();
+      long end = System.currentTimeMillis() + 10000;
+      while (files.size() < 2 && System.currentTimeMillis() < end) {
+        files.addAll(watcher.poll(100, TimeUnit.MILLISECONDS));
+      }
+      assertEquals(Arrays.asList(read, new File(source, "second.ABI")), files);
+      assertEquals(200, read.length());
+
+      // changes of returned files are ignored
+      Files.write(read.toPath(), new byte[300]);
+      assertTrue(watcher.poll(1000, TimeUnit.MILLISECONDS).isEmpty());
+      assertTrue(!watcher.hasPendingFiles());
+    }
+  }
+
+  /**
+   * This test checks that files which existed before the watching started are ignored, until they
+   * are deleted and written again.
+   *
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  @Test
+  public void testExistingFiles() throws IOException, InterruptedException {
+    File old = new File(source, "old.ab1");
+    Files.write(old.toPath(), new byte[10]);
+    try (FolderWatcher watcher = new FolderWatcher(Arrays.asList(source), 200)) {
+      Files.write(old.toPath(), new byte[20]);
+      assertTrue(watcher.poll(1000, TimeUnit.MILLISECONDS).isEmpty());
+      assertTrue(!watcher.hasPendingFiles());
+
+      Files.delete(old.toPath());
+      watcher.poll(200, TimeUnit.MILLISECONDS);
+      Files.write(old.toPath(), new byte[30]);
+
+      LinkedList<File> files = new LinkedList<File>();
+      long end = System.currentTimeMillis() + 10000;
+      while (files.isEmpty() && System.currentTimeMillis() < end) {
+        files.addAll(watcher.poll(100, TimeUnit.MILLISECONDS));
+      }
+      assertEquals(Arrays.asList(old), files);
+    }
+  }
+
+  /**
+   * This test checks that a folder which doesn't exist can't be watched.
+   */
+  @Test(expected = IOException.class)
+  public void testMissingFolder() throws IOException {
+    new FolderWatcher(Arrays.asList(new File(source, "missing")), 500).close();
+  }
+
+  /**
+   * This test runs the watch mode and copies AB1 files into the watched folder. Their results have
+   * to be stored while the watch mode is running.
+   *
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  @Test
+  public void testWatchVersion() throws IOException, InterruptedException {
+    AtomicInteger exitCode = new AtomicInteger(-1);
+    Thread watching = new Thread(() -> exitCode.set(WatchVersion.startWatchVersion(new String[] {
+        "--source", source.getAbsolutePath(), "--destination", destination.getAbsolutePath(),
+        "--gene", "FSA", "--threads", "2", "--name", "watched", "--settle", "200", "--config",
+        "resources/lh_config/config.txt", "--genes", "resources/GeneData/Genes.txt", "--cache",
+        "no"})));
+    watching.start();
+
+    // wait until the folder is watched
+    Thread.sleep(1000);
+    File forward = new File("resources/ab1/Tk_Gs40Hits/Forward");
+    for (String name : new String[] {"95EI60.ab1", "95EI61.ab1"}) {
+      Files.copy(new File(forward, name).toPath(), new File(source, name).toPath());
+    }
+
+    File results = new File(destination, "watched.csv");
+    long end = System.currentTimeMillis() + 20000;
+    while ((!results.exists() || Files.readAllLines(results.toPath()).size() < 3)
+        && System.currentTimeMillis() < end) {
+      Thread.sleep(100);
+    }
+    WatchVersion.stopWatchVersion();
+    watching.join(10000);
+
+    assertEquals(ConsoleVersion.BATCH_SUCCESS, exitCode.get());
+    // the header and one line per file
+    assertEquals(3, Files.readAllLines(results.toPath()).size());
+  }
+}
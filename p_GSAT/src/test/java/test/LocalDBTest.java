@@ -26,6 +26,7 @@ import exceptions.UnknownConfigFieldException;
 import io.ConfigHandler;
 import io.DatabaseConnection;
 import io.PrimerHandler;
+import io.SchemaMigrations;
 
 // import com.mysql.cj.jdbc.MysqlDataSource;
 
@@ -446,6 +447,192 @@ public class LocalDBTest {
     DatabaseConnection.pushAllData(sequences);
   }
 
+  @Ignore
+  @Test
+  public void testBatchUpload() throws SQLException, DatabaseConnectionException {
+    DatabaseConnection.setDatabaseConnection(user, pass, port, server);
+    DatabaseConnection.createDatabase();
+    Gene gene1 = new Gene("aaatttggg", 0, "fsa1", "Lovis Heindrich", "fsa", "comment1");
+    LinkedList<AnalysedSequence> sequences = new LinkedList<AnalysedSequence>();
+
+    // more sequences than one batch, each one twice
+    for (int i = 0; i < 1200; i++) {
+      AnalysedSequence sequence =
+          new AnalysedSequence("aataataat", i % 2 == 0 ? "Lovis Heindrich" : "Kevin Otto",
+              "Sequence" + (i % 600), null);
+      sequence.setMutations(new LinkedList<String>(Arrays.asList("t5a", "t6a", "t5a")));
+      sequence.setReferencedGene(gene1);
+      sequences.add(sequence);
+    }
+    DatabaseConnection.pushAllData(sequences);
+    // pushing again doesn't change anything
+    DatabaseConnection.pushAllData(sequences);
+
+    ArrayList<AnalysedSequence> sequenceList = DatabaseConnection.pullAllSequences();
+    assertEquals(600, sequenceList.size());
+    for (AnalysedSequence sequence : sequenceList) {
+      assertEquals(2, sequence.getMutations().size());
+    }
+    assertEquals(1, DatabaseConnection.pullAllGenes().size());
+    assertEquals(2, DatabaseConnection.pullResearcher().size());
+
+    // reset db
+    DatabaseConnection.createDatabase();
+  }
+
+  @Ignore
+  @Test
+  public void testPullSequencesSharedGene() throws SQLException, DatabaseConnectionException {
+    DatabaseConnection.setDatabaseConnection(user, pass, port, server);
+    DatabaseConnection.createDatabase();
+    Gene gene1 = new Gene("aaatttggg", 0, "fsa1", "Lovis Heindrich", "fsa", "comment1");
+    Gene gene2 = new Gene("gggtttaaa", 0, "fsa2", "Kevin Otto", "fsa", "comment2");
+    LinkedList<AnalysedSequence> sequences = new LinkedList<AnalysedSequence>();
+    for (int i = 0; i < 10; i++) {
+      AnalysedSequence sequence = new AnalysedSequence("aataataat",
+          i < 5 ? "Lovis Heindrich" : "Kevin Otto", "Sequence" + i, null);
+      sequence.setMutations(new LinkedList<String>(Arrays.asList("t" + i + "a", "g1c")));
+      sequence.setReferencedGene(i % 2 == 0 ? gene1 : gene2);
+      sequences.add(sequence);
+    }
+    DatabaseConnection.pushAllData(sequences);
+
+    ArrayList<AnalysedSequence> pulled =
+        DatabaseConnection.pullCustomSequences(null, null, "Kevin Otto", "fsa1");
+    assertEquals(2, pulled.size());
+    assertEquals("Sequence6", pulled.get(0).getFileName());
+    assertEquals("Kevin Otto", pulled.get(0).getResearcher());
+    assertEquals(Arrays.asList("t6a", "g1c"), pulled.get(0).getMutations());
+    // the gene is only pulled once
+    assertTrue(pulled.get(0).getReferencedGene() == pulled.get(1).getReferencedGene());
+    assertEquals("Lovis Heindrich", pulled.get(0).getReferencedGene().getResearcher());
+
+    assertEquals(10, DatabaseConnection.pullAllSequences().size());
+
+    // reset db
+    DatabaseConnection.createDatabase();
+  }
+
+  @Ignore
+  @Test
+  public void testMigrations() throws SQLException, DatabaseConnectionException {
+    DatabaseConnection.setDatabaseConnection(user, pass, port, server);
+    DatabaseConnection.createDatabase();
+    conn = localConnection();
+    assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.getVersion(conn));
+
+    // a migration which failed halfway is applied again
+    stmt = conn.createStatement();
+    stmt.executeUpdate("ALTER TABLE sequences DROP INDEX sequences_researcher");
+    stmt.executeUpdate("DELETE FROM schema_version WHERE version > 2");
+    assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.migrate(conn));
+    assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.migrate(conn));
+    rs = stmt.executeQuery("SELECT * FROM information_schema.statistics WHERE "
+        + "table_schema = 'gsat' AND index_name = 'sequences_researcher'");
+    assertTrue(rs.next());
+    conn.close();
+
+    // reset db
+    DatabaseConnection.createDatabase();
+  }
+
+  /**
+   * NOT A TEST (compares the query plans and times of the pull methods without and with the
+   * indexes of the migrations)
+   *
+   * @throws SQLException
+   * @throws DatabaseConnectionException
+   */
+  @Ignore
+  @Test
+  public void benchmarkIndexes() throws SQLException, DatabaseConnectionException {
+    DatabaseConnection.setDatabaseConnection(user, pass, port, server);
+    DatabaseConnection.createDatabase();
+    Gene gene1 = new Gene("aaatttggg", 0, "fsa1", "Lovis Heindrich", "fsa", "comment1");
+    Gene gene2 = new Gene("gggtttaaa", 0, "fsa2", "Kevin Otto", "fsa", "comment2");
+    LinkedList<AnalysedSequence> sequences = new LinkedList<AnalysedSequence>();
+    for (int i = 0; i < 20000; i++) {
+      AnalysedSequence sequence =
+          new AnalysedSequence("aataataat", "Researcher" + (i % 50), "Sequence" + i, null);
+      sequence.setMutations(new LinkedList<String>(Arrays.asList("t" + i % 9 + "a", "g1c")));
+      sequence.setReferencedGene(i % 2 == 0 ? gene1 : gene2);
+      sequences.add(sequence);
+    }
+    DatabaseConnection.pushAllData(sequences);
+
+    // remove the indexes of the migrations after the digests
+    conn = localConnection();
+    stmt = conn.createStatement();
+    stmt.executeUpdate("ALTER TABLE mutations DROP INDEX mutations_sequence");
+    stmt.executeUpdate("ALTER TABLE sequences DROP INDEX sequences_date, "
+        + "DROP INDEX sequences_researcher");
+    stmt.executeUpdate("ALTER TABLE researchers DROP INDEX researchers_name");
+    stmt.executeUpdate("DELETE FROM schema_version WHERE version > 1");
+    benchmarkQueries("without indexes");
+
+    // applies the migrations
+    DatabaseConnection.setDatabaseConnection(user, pass, port, server);
+    assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.getVersion(conn));
+    benchmarkQueries("with indexes");
+    conn.close();
+
+    // reset db
+    DatabaseConnection.createDatabase();
+  }
+
+  /**
+   * Prints the plans of the queries of the pull methods and the times of the pull methods.
+   */
+  private void benchmarkQueries(String title) throws SQLException, DatabaseConnectionException {
+    System.out.println("--- " + title);
+    String[] queries = {"SELECT id FROM researchers WHERE name = 'Researcher7'",
+        "SELECT * FROM sequences WHERE researcher = 8",
+        "SELECT * FROM sequences WHERE date BETWEEN CURDATE() AND CURDATE()",
+        "SELECT * FROM sequences WHERE gene = 1 AND researcher = 8",
+        "SELECT mutation FROM mutations WHERE sequence IN (1, 2, 3) ORDER BY sequence, id"};
+    for (String query : queries) {
+      rs = stmt.executeQuery("EXPLAIN " + query);
+      while (rs.next()) {
+        System.out.println(query + ": type=" + rs.getString("type") + ", key="
+            + rs.getString("key") + ", rows=" + rs.getString("rows"));
+      }
+    }
+
+    java.sql.Date today = new java.sql.Date(System.currentTimeMillis());
+    for (int run = 0; run < 2; run++) {
+      // the first run warms up the caches
+      long start = System.nanoTime();
+      for (int i = 0; i < 20; i++) {
+        DatabaseConnection.pullAllSequencesPerResearcher("Researcher" + i);
+      }
+      long researcher = System.nanoTime();
+      DatabaseConnection.pullAllSequencesPerPeriod(today, today);
+      long period = System.nanoTime();
+      for (int i = 0; i < 20; i++) {
+        DatabaseConnection.pullCustomSequences(null, null, "Researcher" + i, "fsa1");
+      }
+      long custom = System.nanoTime();
+      if (run == 1) {
+        System.out.println("per researcher: " + (researcher - start) / 20000000 + " ms, "
+            + "per period: " + (period - researcher) / 1000000 + " ms, custom: "
+            + (custom - period) / 20000000 + " ms");
+      }
+    }
+  }
+
+  /**
+   * Opens a connection to the local gsat database.
+   */
+  private Connection localConnection() throws SQLException {
+    MysqlDataSource dataSource = new MysqlDataSource();
+    dataSource.setUser(user);
+    dataSource.setPassword(pass);
+    dataSource.setPort(port);
+    dataSource.setServerName(server);
+    dataSource.setDatabaseName("gsat");
+    return dataSource.getConnection();
+  }
+
   @Ignore
   @Test
   public void testDatabaseConnectionConnect() throws DatabaseConnectionException, SQLException {
@@ -1,19 +1,26 @@
 package test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.LinkedList;
+import java.util.List;
 
+import org.biojava.bio.program.abi.ABITrace;
+import org.biojava.bio.seq.DNATools;
 import org.biojava.bio.symbol.IllegalSymbolException;
 import org.junit.Before;
 import org.junit.Test;
 
 import analysis.AnalysedSequence;
 import analysis.Pair;
+import analysis.ReadSnapshot;
+import analysis.TraceData;
 import exceptions.FileReadingException;
 import exceptions.MissingPathException;
 import io.SequenceReader;
@@ -110,6 +117,197 @@ public class ReadingTests {
     assertEquals(parsedSequence.getSequence().toLowerCase(), correctSequence.toLowerCase());
   }
 
+  /**
+   * This test checks that the traces and base calls are the same as the ones read with the BioJava
+   * ABITrace, which was used before the files were parsed only once.
+   * 
+   * @throws FileReadingException
+   * @throws IOException
+   * @throws MissingPathException
+   * @throws IllegalSymbolException
+   */
+  @Test
+  public void readTracesTest()
+      throws FileReadingException, IOException, MissingPathException, IllegalSymbolException {
+    File folder = new File(new File("resources/ab1/Tk_Gs40Hits/Forward/").getAbsolutePath());
+    for (File file : SequenceReader.listFiles(folder.getAbsolutePath()).first) {
+      AnalysedSequence parsedSequence = SequenceReader.convertFileIntoSequence(file);
+      ABITrace trace = new ABITrace(file);
+
+      assertArrayEquals(trace.getTrace(DNATools.a()), parsedSequence.getChannelA());
+      assertArrayEquals(trace.getTrace(DNATools.c()), parsedSequence.getChannelC());
+      assertArrayEquals(trace.getTrace(DNATools.g()), parsedSequence.getChannelG());
+      assertArrayEquals(trace.getTrace(DNATools.t()), parsedSequence.getChannelT());
+      assertArrayEquals(trace.getBasecalls(), parsedSequence.getBaseCalls());
+      assertEquals(trace.getSequence().seqString().toUpperCase(), parsedSequence.getSequence());
+    }
+  }
+
+  /**
+   * This test checks that traces which are loaded lazily from the AB1 file are the same as the
+   * traces read together with the sequence.
+   * 
+   * @throws FileReadingException
+   * @throws IOException
+   * @throws MissingPathException
+   * @throws IllegalSymbolException
+   */
+  @Test
+  public void lazyTracesTest()
+      throws FileReadingException, IOException, MissingPathException, IllegalSymbolException {
+    File file =
+        new File(new File("resources/ab1/Tk_Gs40Hits/Forward/95EI61.ab1").getAbsolutePath());
+    AnalysedSequence parsedSequence = SequenceReader.convertFileIntoSequence(file);
+    assertEquals(file, parsedSequence.getTraces().getSource());
+
+    TraceData lazy = new TraceData(file);
+    assertArrayEquals(parsedSequence.getChannelA(), lazy.get(TraceData.CHANNEL_A));
+    assertArrayEquals(parsedSequence.getChannelC(), lazy.get(TraceData.CHANNEL_C));
+    assertArrayEquals(parsedSequence.getChannelG(), lazy.get(TraceData.CHANNEL_G));
+    assertArrayEquals(parsedSequence.getChannelT(), lazy.get(TraceData.CHANNEL_T));
+    assertArrayEquals(parsedSequence.getBaseCalls(), lazy.get(TraceData.BASE_CALLS));
+
+    // changing one trace keeps the others
+    AnalysedSequence sequence = new AnalysedSequence("ACGT", "", "", new int[4]);
+    sequence.setTraces(lazy);
+    sequence.setChannelA(new int[] {1, 2});
+    assertArrayEquals(new int[] {1, 2}, sequence.getChannelA());
+    assertArrayEquals(parsedSequence.getChannelT(), sequence.getChannelT());
+
+    // a missing file is reported on every access
+    TraceData missing = new TraceData(new File("missing.ab1"));
+    for (int i = 0; i < 2; i++) {
+      try {
+        missing.get(TraceData.CHANNEL_A);
+        fail("The traces of a missing file must not be returned.");
+      } catch (UncheckedIOException e) {
+        assertTrue(e.getMessage().contains("missing.ab1"));
+      }
+    }
+  }
+
+  /**
+   * This test checks that a snapshot taken after reading gives the same read as reading the file
+   * again, even if the sequence was trimmed in the meantime.
+   * 
+   * @throws FileReadingException
+   * @throws IOException
+   * @throws MissingPathException
+   * @throws IllegalSymbolException
+   */
+  @Test
+  public void readSnapshotTest()
+      throws FileReadingException, IOException, MissingPathException, IllegalSymbolException {
+    File folder = new File(new File("resources/ab1/Tk_Gs40Hits/Reverse/").getAbsolutePath());
+    LinkedList<ReadSnapshot> snapshots = new LinkedList<ReadSnapshot>();
+    for (File file : SequenceReader.listFiles(folder.getAbsolutePath()).first) {
+      AnalysedSequence sequence = SequenceReader.convertFileIntoSequence(file);
+      snapshots.add(new ReadSnapshot(sequence));
+      sequence.reverseQuality();
+      sequence.trimSequence(10, 100);
+      sequence.trimQualityArray(10, 100);
+    }
+
+    List<AnalysedSequence> sequences = ReadSnapshot.asSequences(snapshots);
+    assertEquals(snapshots.size(), sequences.size());
+    for (int i = 0; i < sequences.size(); i++) {
+      AnalysedSequence read = SequenceReader.convertFileIntoSequence(
+          new File(folder, snapshots.get(i).getFileName()));
+      AnalysedSequence restored = sequences.get(i);
+
+      assertTrue(restored == sequences.get(i));
+      assertEquals(read.getFileName(), restored.getFileName());
+      assertEquals(read.getSequence(), restored.getSequence());
+      assertArrayEquals(read.getQuality(), restored.getQuality());
+      assertArrayEquals(read.getChannelA(), restored.getChannelA());
+      assertArrayEquals(read.getChannelT(), restored.getChannelT());
+      assertArrayEquals(read.getBaseCalls(), restored.getBaseCalls());
+    }
+  }
+
+  /**
+   * This test checks that qualities and traces are stored compactly without losing values, also if
+   * a value doesn't fit into the compact storage.
+   */
+  @Test
+  public void compactStorageTest() {
+    AnalysedSequence sequence = new AnalysedSequence("ACGT", "", "", new int[] {0, 40, 128, 255});
+    assertArrayEquals(new int[] {0, 40, 128, 255}, sequence.getQuality());
+    assertEquals(255, sequence.getQuality(3));
+    assertEquals(4, sequence.getQualityLength());
+
+    // values which don't fit into a byte are kept as they are, the arrays aren't shared
+    int[] wide = {-1, 300, 5, 6};
+    sequence.setQuality(wide);
+    wide[0] = 7;
+    sequence.getQuality()[1] = 8;
+    assertArrayEquals(new int[] {-1, 300, 5, 6}, sequence.getQuality());
+    sequence.reverseQuality();
+    assertArrayEquals(new int[] {6, 5, 300, -1}, sequence.getQuality());
+    assertEquals(6, new ReadSnapshot(sequence).toSequence().getQuality(0));
+    assertEquals(300, new ReadSnapshot(sequence).toSequence().getQuality(2));
+
+    sequence.setChannelA(new int[] {-32768, 0, 32767});
+    sequence.setChannelC(new int[] {70000, 1});
+    assertArrayEquals(new int[] {-32768, 0, 32767}, sequence.getChannelA());
+    assertArrayEquals(new int[] {70000, 1}, sequence.getChannelC());
+  }
+
+  /**
+   * This test checks the memory retained by the reads of a larger batch. With qualities stored as
+   * bytes and traces as shorts, a read of the test files needs less than half of the memory it
+   * needed with int arrays.
+   * 
+   * @throws FileReadingException
+   * @throws IOException
+   * @throws MissingPathException
+   * @throws IllegalSymbolException
+   */
+  @Test
+  public void memoryFootprintTest()
+      throws FileReadingException, IOException, MissingPathException, IllegalSymbolException {
+    File folder = new File(new File("resources/ab1/Tk40Hits050215/").getAbsolutePath());
+    LinkedList<File> files = SequenceReader.listFiles(folder.getAbsolutePath()).first;
+
+    // the size of the same reads with qualities and traces stored as ints
+    long intBytes = 0;
+    for (File file : files) {
+      AnalysedSequence sequence = SequenceReader.convertFileIntoSequence(file);
+      intBytes += 4L * (sequence.getQualityLength() + sequence.getChannelA().length
+          + sequence.getChannelC().length + sequence.getChannelG().length
+          + sequence.getChannelT().length + sequence.getBaseCalls().length);
+    }
+
+    Runtime runtime = Runtime.getRuntime();
+    long before = usedMemory(runtime);
+    LinkedList<AnalysedSequence> reads = new LinkedList<AnalysedSequence>();
+    int copies = 5;
+    for (int i = 0; i < copies; i++) {
+      for (File file : files) {
+        reads.add(SequenceReader.convertFileIntoSequence(file));
+      }
+    }
+    long retained = usedMemory(runtime) - before;
+
+    // the traces are only softly referenced, they must not be discarded during this test
+    for (AnalysedSequence read : reads) {
+      assertTrue(read.getTraces().get(TraceData.CHANNEL_A) != null);
+    }
+    long perRead = retained / reads.size();
+    long perIntRead = intBytes / files.size();
+    assertTrue("retained " + perRead + " bytes per read", perRead < perIntRead * 6 / 10);
+  }
+
+  /**
+   * Returns the used heap after a garbage collection.
+   */
+  private static long usedMemory(Runtime runtime) {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
   /**
    * This tests checks if it is possible to read a correct DNA Sequence from an .abi file (Userstory
    * 003 - Expected behavior)
@@ -1,17 +1,24 @@
 package test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.LinkedList;
+import java.util.List;
 
+import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import core.ConsoleVersion;
+import io.ConfigHandler;
+import io.GeneHandler;
+import io.SequenceReader;
 
 /**
  * This class tests the writing of reports.
@@ -25,6 +32,9 @@ public class ReportTests {
   private static LinkedList<File> oddFiles1 = new LinkedList<File>();
   private static LinkedList<File> oddFiles2 = new LinkedList<File>();
 
+  private static String configPath = ConfigHandler.getPath();
+  private static String genePath = GeneHandler.getPath();
+
   @BeforeClass
   public static void setupSequences() {
 
@@ -157,4 +167,87 @@ public class ReportTests {
     assertEquals(expectedString, builder.toString());
   }
 
+  /**
+   * Restores the paths changed by the batch mode and removes its results.
+   */
+  @After
+  public void cleanUp() {
+    ConfigHandler.setPath(configPath);
+    GeneHandler.setPath(genePath);
+    File batch = new File("reporttests/batch");
+    if (batch.listFiles() != null) {
+      for (File file : batch.listFiles()) {
+        file.delete();
+      }
+    }
+    batch.delete();
+  }
+
+  /**
+   * This test runs the batch mode with one and with several threads. Both runs must store the
+   * results of all files in the same order.
+   * 
+   * @throws IOException
+   * 
+   * @see ConsoleVersion#startBatchVersion(String[])
+   * 
+   * @author Kevin Otto
+   */
+  @Test
+  public void testBatchVersion() throws IOException {
+    String source = new File("resources/ab1/Tk_Gs40Hits/Forward").getAbsolutePath();
+    int files = SequenceReader.listFiles(source).first.size();
+
+    for (String threads : new String[] {"1", "4"}) {
+      int exitCode = ConsoleVersion.startBatchVersion(new String[] {"--source", source,
+          "--destination", "reporttests/batch", "--gene", "FSA", "--threads", threads, "--name",
+          "threads" + threads, "--config", "resources/lh_config/config.txt", "--genes",
+          "resources/GeneData/Genes.txt", "--cache", "no"});
+      assertEquals(ConsoleVersion.BATCH_SUCCESS, exitCode);
+    }
+
+    List<String> serial = Files.readAllLines(new File("reporttests/batch/threads1.csv").toPath());
+    List<String> parallel =
+        Files.readAllLines(new File("reporttests/batch/threads4.csv").toPath());
+    assertEquals(serial, parallel);
+
+    // the header and one line per file
+    assertEquals(files + 1, serial.size());
+    assertTrue(new File("reporttests/batch/report.txt").exists());
+  }
+
+  /**
+   * This test checks that the batch mode doesn't analyse anything if the arguments are invalid.
+   * 
+   * @see ConsoleVersion#startBatchVersion(String[])
+   * 
+   * @author Kevin Otto
+   */
+  @Test
+  public void testBatchVersionInvalidArguments() {
+    String genes = "resources/GeneData/Genes.txt";
+    String config = "resources/lh_config/config.txt";
+    String source = "resources/ab1/Tk_Gs40Hits/Forward";
+
+    // missing destination
+    assertEquals(ConsoleVersion.BATCH_INVALID_ARGUMENTS,
+        ConsoleVersion.startBatchVersion(new String[] {"--source", source}));
+    // unknown option
+    assertEquals(ConsoleVersion.BATCH_INVALID_ARGUMENTS, ConsoleVersion.startBatchVersion(
+        new String[] {"--source", source, "--destination", "reporttests/batch", "--fast", "y"}));
+    // missing value
+    assertEquals(ConsoleVersion.BATCH_INVALID_ARGUMENTS, ConsoleVersion.startBatchVersion(
+        new String[] {"--source", source, "--destination", "reporttests/batch", "--gene"}));
+    // unknown gene
+    assertEquals(ConsoleVersion.BATCH_INVALID_ARGUMENTS,
+        ConsoleVersion.startBatchVersion(new String[] {"--source", source, "--destination",
+            "reporttests/batch", "--gene", "unknown", "--config", config, "--genes", genes}));
+    // no threads
+    assertEquals(ConsoleVersion.BATCH_INVALID_ARGUMENTS,
+        ConsoleVersion.startBatchVersion(new String[] {"--source", source, "--destination",
+            "reporttests/batch", "--threads", "0", "--config", config, "--genes", genes}));
+
+    assertTrue(!new File("reporttests/batch/gsat_results.csv").exists());
+  }
+
 }
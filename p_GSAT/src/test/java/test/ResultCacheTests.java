@@ -0,0 +1,168 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.biojava.bio.symbol.IllegalSymbolException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import analysis.AnalysedSequence;
+import analysis.AnalysisContext;
+import analysis.AnalysisPipeline;
+import analysis.Gene;
+import exceptions.FileReadingException;
+import exceptions.MissingPathException;
+import io.FileSaver;
+import io.GeneHandler;
+import io.ResultCache;
+import io.SequenceReader;
+
+/**
+ * This class tests the cache of analysis results.
+ *
+ * @author Kevin Otto
+ */
+public class ResultCacheTests {
+
+  private static final File FORWARD = new File("resources/ab1/Tk_Gs40Hits/Forward");
+
+  private File folder;
+
+  private File destination;
+
+  @Before
+  public void createFolders() throws IOException {
+    folder = Files.createTempDirectory("gsat_cache").toFile();
+    destination = Files.createTempDirectory("gsat_cache_results").toFile();
+    GeneHandler.readGenes("resources/GeneData/Genes.txt");
+  }
+
+  @After
+  public void deleteFolders() {
+    for (File directory : new File[] {folder, destination}) {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  /**
+   * Analyses the given files and stores the results in one result file.
+   *
+   * @return the lines of the result file
+   */
+  private List<String> analyse(AnalysisContext context, Gene gene, String name, String... files)
+      throws FileReadingException, IOException, MissingPathException, IllegalSymbolException {
+    context.setLocalPath(destination);
+    context.setSeparateFiles(false);
+    context.setDestinationFileName(name);
+    for (String file : files) {
+      AnalysedSequence sequence = SequenceReader.convertFileIntoSequence(new File(FORWARD, file));
+      assertEquals(null, AnalysisPipeline.analyseSequence(sequence, gene, context));
+      FileSaver.storeResultsLocally(file, sequence, context);
+    }
+    FileSaver.closeResults(context);
+    return Files.readAllLines(new File(destination, name + ".csv").toPath());
+  }
+
+  private AnalysisContext cachedContext() {
+    AnalysisContext context = new AnalysisContext();
+    context.setResultCache(new ResultCache(folder, 1024 * 1024));
+    return context;
+  }
+
+  /**
+   * This test checks that results taken from the cache are the same as analysed results, with a
+   * given gene and with automatic gene recognition.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCachedResults() throws Exception {
+    String[] files = {"95EI60.ab1", "95EI61.ab1", "95EI62.ab1"};
+    for (Gene gene : new Gene[] {GeneHandler.getGene("FSA"), null}) {
+      AnalysisContext uncached = new AnalysisContext();
+      uncached.setResultCache(null);
+      List<String> expected = analyse(uncached, gene, "uncached", files);
+
+      AnalysisContext first = cachedContext();
+      assertEquals(expected, analyse(first, gene, "first", files));
+      assertEquals(0, first.getCacheHits());
+      assertEquals(files.length, first.getCacheMisses());
+
+      AnalysisContext second = cachedContext();
+      assertEquals(expected, analyse(second, gene, "second", files));
+      assertEquals(files.length, second.getCacheHits());
+      assertEquals(0, second.getCacheMisses());
+
+      for (File file : destination.listFiles()) {
+        file.delete();
+      }
+      new ResultCache(folder, 1024 * 1024).clear();
+    }
+  }
+
+  /**
+   * This test checks that a result is analysed again if a parameter or the gene changes.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testChangedParameters() throws Exception {
+    analyse(cachedContext(), GeneHandler.getGene("FSA"), "first", "95EI60.ab1");
+
+    AnalysisContext changed = cachedContext();
+    changed.setBreakcounter(changed.getBreakcounter() + 1);
+    analyse(changed, GeneHandler.getGene("FSA"), "parameter", "95EI60.ab1");
+    assertEquals(1, changed.getCacheMisses());
+
+    AnalysisContext otherGene = cachedContext();
+    analyse(otherGene, GeneHandler.getGene("EC DERA"), "gene", "95EI60.ab1");
+    assertEquals(1, otherGene.getCacheMisses());
+
+    AnalysisContext same = cachedContext();
+    analyse(same, GeneHandler.getGene("FSA"), "same", "95EI60.ab1");
+    assertEquals(1, same.getCacheHits());
+  }
+
+  /**
+   * This test checks that the least recently used entries are deleted if the cache gets too large
+   * and that the order of use is kept when the cache is opened again.
+   */
+  @Test
+  public void testEviction() {
+    ResultCache cache = new ResultCache(folder, 250);
+    cache.put("a", new byte[100]);
+    cache.put("b", new byte[100]);
+    assertEquals(100, cache.get("a").length);
+    cache.put("c", new byte[100]);
+
+    assertTrue(cache.contains("a"));
+    assertTrue(!cache.contains("b"));
+    assertTrue(cache.contains("c"));
+    assertEquals(200, cache.getSize());
+    assertEquals(1, cache.getEvictions());
+    assertEquals(null, cache.get("b"));
+    assertEquals(2, folder.listFiles().length);
+
+    // larger entries than the cache are not stored
+    cache.put("d", new byte[300]);
+    assertTrue(!cache.contains("d"));
+
+    // a is older than c now
+    new File(folder, "a.result").setLastModified(System.currentTimeMillis() - 60000);
+    ResultCache reopened = new ResultCache(folder, 150);
+    assertTrue(!reopened.contains("a"));
+    assertArrayEquals(new byte[100], reopened.get("c"));
+    assertEquals(1, reopened.getHits());
+  }
+}
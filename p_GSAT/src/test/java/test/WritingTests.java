@@ -1,5 +1,6 @@
 package test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -8,6 +9,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -19,11 +22,17 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import analysis.AnalysedSequence;
+import analysis.AnalysisContext;
 import analysis.Gene;
 import exceptions.MissingPathException;
 import exceptions.UndefinedTypeOfMutationException;
+import gui.GUIUtils;
+import io.ConfigHandler;
 import io.FileSaver;
+import io.GeneHandler;
 import io.ProblematicComment;
+import io.ResultFileWriter;
+import io.SequenceReader;
 
 /**
  * This class tests the behavior of the communication with the database and all associated behavior.
@@ -609,4 +618,119 @@ public class WritingTests {
 
   }
 
+  /**
+   * This test checks whether analysing sequences in parallel writes exactly the same result file
+   * as analysing them one after another.
+   * 
+   * @see GUIUtils#runAnalysis(LinkedList, String, String, java.util.function.DoubleConsumer)
+   * 
+   * @author Ben Kohr
+   */
+  @Test
+  public void testParallelAnalysisOutput() throws Exception {
+    GeneHandler.readGenes(new File("resources/GeneData/Genes.txt").getAbsolutePath());
+    FileSaver.setSeparateFiles(false);
+    FileSaver.setLocalPath(path);
+
+    int threads = ConfigHandler.getAnalysisThreads();
+    boolean cache = ConfigHandler.isResultCache();
+    LinkedList<Double> progress = new LinkedList<Double>();
+    try {
+      // the second run must not take the results of the first one from the cache
+      ConfigHandler.setResultCache(false);
+      ConfigHandler.setAnalysisThreads(1);
+      GUIUtils.runAnalysis(readSequences(), "-1", "sequential", value -> {
+      });
+      ConfigHandler.setAnalysisThreads(4);
+      GUIUtils.runAnalysis(readSequences(), "-1", "parallel", value -> progress.add(value));
+    } finally {
+      ConfigHandler.setAnalysisThreads(threads);
+      ConfigHandler.setResultCache(cache);
+    }
+
+    byte[] sequential = Files.readAllBytes(Paths.get(path + "sequential.csv"));
+    byte[] parallel = Files.readAllBytes(Paths.get(path + "parallel.csv"));
+    new File(path + "sequential.csv").delete();
+    new File(path + "parallel.csv").delete();
+    assertTrue(sequential.length > 0);
+    assertArrayEquals(sequential, parallel);
+
+    // the progress is reported once per sequence and only increases
+    assertEquals(readSequences().size(), progress.size());
+    for (int i = 1; i < progress.size(); i++) {
+      assertTrue(progress.get(i - 1) < progress.get(i));
+    }
+    assertEquals(1.0, progress.getLast(), 0);
+  }
+
+  /**
+   * This test checks that a run keeps its result file open until it is closed and that the file
+   * written by a writer thread is the same as the file written directly. With a writer thread, the
+   * lines are written to the file even if the run doesn't close it for a while.
+   * 
+   * @see FileSaver#closeResults(AnalysisContext)
+   * 
+   * @author Ben Kohr
+   */
+  @Test
+  public void testSessionResultFile() throws Exception {
+    Gene gene = new Gene("ATGAAA", 0, "FSA", "Jonas", "bacteria", "");
+    LinkedList<AnalysedSequence> sequences = new LinkedList<AnalysedSequence>();
+    for (int i = 0; i < 50; i++) {
+      AnalysedSequence sequence =
+          new AnalysedSequence("ATGAAC", "Jonas", "session" + i + ".ab1", new int[] {1, 2, 3});
+      sequence.setReferencedGene(gene);
+      sequence.addMutation("K2N");
+      sequences.add(sequence);
+    }
+
+    byte[][] files = new byte[2][];
+    for (boolean writerThread : new boolean[] {false, true}) {
+      AnalysisContext context = new AnalysisContext();
+      context.setLocalPath(new File(path));
+      context.setSeparateFiles(false);
+      context.setDestinationFileName("session");
+      context.setWriterThread(writerThread);
+      for (AnalysedSequence sequence : sequences) {
+        FileSaver.storeResultsLocally(sequence.getFileName(), sequence, context);
+      }
+      assertTrue(context.getResultWriter() != null);
+      FileSaver.closeResults(context);
+      assertEquals(null, context.getResultWriter());
+      // closing again has no effect
+      FileSaver.closeResults(context);
+      files[writerThread ? 1 : 0] = Files.readAllBytes(Paths.get(path + "session.csv"));
+    }
+    assertArrayEquals(files[0], files[1]);
+    assertEquals(sequences.size() + 1,
+        Files.readAllLines(Paths.get(path + "session.csv")).size());
+
+    // the writer thread writes the buffer when no more lines arrive
+    AnalysisContext context = new AnalysisContext();
+    context.setLocalPath(new File(path));
+    context.setSeparateFiles(false);
+    context.setDestinationFileName("session");
+    context.setWriterThread(true);
+    FileSaver.storeResultsLocally("session0", sequences.getFirst(), context);
+    long end = System.currentTimeMillis() + 10 * ResultFileWriter.FLUSH_MILLIS;
+    while (Files.readAllLines(Paths.get(path + "session.csv")).size() < 2
+        && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+    }
+    assertEquals(2, Files.readAllLines(Paths.get(path + "session.csv")).size());
+    FileSaver.closeResults(context);
+    new File(path + "session.csv").delete();
+  }
+
+  /**
+   * Reads all AB1 files of a test folder.
+   */
+  private static LinkedList<AnalysedSequence> readSequences() throws Exception {
+    SequenceReader.configurePath("resources/ab1/Tk_Gs40Hits/Forward");
+    LinkedList<AnalysedSequence> sequences = new LinkedList<AnalysedSequence>();
+    for (File file : SequenceReader.listFiles().first) {
+      sequences.add(SequenceReader.convertFileIntoSequence(file));
+    }
+    return sequences;
+  }
 }